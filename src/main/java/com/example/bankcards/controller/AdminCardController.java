@@ -0,0 +1,74 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.BulkCardRequest;
+import com.example.bankcards.dto.BulkCardResultDTO;
+import com.example.bankcards.dto.CardPageDTO;
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.service.CardBulkAction;
+import com.example.bankcards.service.CardBulkResult;
+import com.example.bankcards.service.CardBulkService;
+import com.example.bankcards.service.CardPage;
+import com.example.bankcards.service.CardSearchFilter;
+import com.example.bankcards.service.CardService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/admin/cards")
+@RequiredArgsConstructor
+public class AdminCardController {
+
+    private final CardService cardService;
+    private final CardBulkService bulkService;
+
+    // ADMIN: Поиск карт всех пользователей; страница продолжается курсором next
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CardPageDTO> searchCards(
+            @RequestParam(required = false) BankCard.CardStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate expiresFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate expiresTo,
+            @RequestParam(required = false) BigDecimal minBalance,
+            @RequestParam(required = false) BigDecimal maxBalance,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        CardPage page = cardService.searchCards(
+                new CardSearchFilter(status, expiresFrom, expiresTo, minBalance, maxBalance, userId), cursor, size);
+        return ResponseEntity.ok(new CardPageDTO(page.getItems(), page.getNext()));
+    }
+
+    // ADMIN: Массовая блокировка по списку id или фильтру; истёкшие карты пропускаются
+    @PostMapping("/block")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkCardResultDTO> blockCards(@RequestBody BulkCardRequest request) {
+        return ResponseEntity.ok(apply(CardBulkAction.BLOCK, request));
+    }
+
+    // ADMIN: Массовая активация; карты с истёкшим сроком не активируются
+    @PostMapping("/activate")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkCardResultDTO> activateCards(@RequestBody BulkCardRequest request) {
+        return ResponseEntity.ok(apply(CardBulkAction.ACTIVATE, request));
+    }
+
+    // ADMIN: Массовое удаление; карты с историей переводов и шардированные не удаляются
+    @PostMapping("/delete")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkCardResultDTO> deleteCards(@RequestBody BulkCardRequest request) {
+        return ResponseEntity.ok(apply(CardBulkAction.DELETE, request));
+    }
+
+    private BulkCardResultDTO apply(CardBulkAction action, BulkCardRequest request) {
+        CardBulkResult result = bulkService.apply(action, request.getCardIds(), new CardSearchFilter(
+                request.getStatus(), request.getExpiresFrom(), request.getExpiresTo(),
+                request.getMinBalance(), request.getMaxBalance(), request.getUserId()));
+        return new BulkCardResultDTO(result.getMatched(), result.getAffected());
+    }
+}
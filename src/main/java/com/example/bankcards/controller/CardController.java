@@ -1,20 +1,37 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BalanceDTO;
+import com.example.bankcards.dto.BalanceShardRequest;
 import com.example.bankcards.dto.CardCreateRequest;
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.StatementDTO;
 import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.CardMonthlyRollup;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.service.CardImportService;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.service.EncryptionService;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.StatementService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/cards")
@@ -23,6 +40,9 @@ public class CardController {
 
     private final CardService cardService;
     private final EncryptionService encryptionService;
+    private final LedgerService ledgerService;
+    private final StatementService statementService;
+    private final CardImportService importService;
 
     // ADMIN: Создание карты
     @PostMapping
@@ -35,12 +55,23 @@ public class CardController {
         return ResponseEntity.ok(card);
     }
 
+    // ADMIN: Массовый выпуск карт из CSV userId,cardNumber,expiry. Файл читается по мере загрузки,
+    // в ответ потоком идёт NDJSON: ошибки строк, прогресс после каждой пачки и итог
+    @PostMapping(value = "/import", consumes = "text/csv", produces = "application/x-ndjson")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> importCards(InputStream csv) {
+        StreamingResponseBody body = out -> importService.importCards(csv, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
     // USER: Получение своих карт (с пагинацией)
     @GetMapping
     public ResponseEntity<Page<CardDTO>> getUserCards(
             @AuthenticationPrincipal UserDetails userDetails,
             Pageable pageable) {
-        Long userId = ((User) userDetails).getId();
+        Long userId = ((UserPrincipal) userDetails).getId();
         Page<CardDTO> cards = cardService.getUserCards(userId, pageable)
                 .map(this::convertToDTO);
         return ResponseEntity.ok(cards);
@@ -51,7 +82,7 @@ public class CardController {
     public ResponseEntity<CardDTO> getCardById(
             @PathVariable Long id,
             @AuthenticationPrincipal UserDetails userDetails) {
-        User user = (User) userDetails;
+        User user = ((UserPrincipal) userDetails).getUser();
         CardDTO card = convertToDTO(cardService.getCardById(id));
 
         // Проверка принадлежности карты (для USER)
@@ -63,6 +94,41 @@ public class CardController {
         return ResponseEntity.ok(card);
     }
 
+    // ADMIN/USER: Баланс карты по журналу проводок, в том числе на прошлый момент времени
+    @GetMapping("/{id}/balance")
+    public ResponseEntity<BalanceDTO> getCardBalance(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        // Принципал — UserPrincipal из JwtAuthenticationFilter, сущность User лежит внутри
+        User user = ((UserPrincipal) userDetails).getUser();
+
+        // Проверка принадлежности карты (для USER)
+        if (user.getRole() == Role.USER && !cardService.isCardOwnedByUser(id, user.getId())) {
+            return ResponseEntity.status(403).build();
+        }
+
+        LocalDateTime moment = at != null ? at : LocalDateTime.now();
+        return ResponseEntity.ok(new BalanceDTO(id, ledgerService.getBalance(id, moment), moment));
+    }
+
+    // ADMIN/USER: Месячные выписки карты, от новых к старым
+    @GetMapping("/{id}/statements")
+    public ResponseEntity<List<StatementDTO>> getCardStatements(
+            @PathVariable Long id,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        User user = ((UserPrincipal) userDetails).getUser();
+
+        // Проверка принадлежности карты (для USER)
+        if (user.getRole() == Role.USER && !cardService.isCardOwnedByUser(id, user.getId())) {
+            return ResponseEntity.status(403).build();
+        }
+
+        return ResponseEntity.ok(statementService.getStatements(id).stream()
+                .map(this::convertToDTO)
+                .toList());
+    }
+
     // ADMIN: Блокировка карты
     @PutMapping("/{id}/block")
     @PreAuthorize("hasRole('ADMIN')")
@@ -76,7 +142,7 @@ public class CardController {
     public ResponseEntity<Void> requestBlockCard(
             @PathVariable Long id,
             @AuthenticationPrincipal UserDetails userDetails) {
-        User user = (User) userDetails;
+        User user = ((UserPrincipal) userDetails).getUser();
 
         // Проверка принадлежности карты
         if (!cardService.isCardOwnedByUser(id, user.getId())) {
@@ -96,6 +162,22 @@ public class CardController {
         return ResponseEntity.ok().build();
     }
 
+    // ADMIN: Разделение баланса горячей карты на слоты
+    @PutMapping("/{id}/shards")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> shardBalance(@PathVariable Long id, @Valid @RequestBody BalanceShardRequest request) {
+        cardService.shardBalance(id, request.getShards());
+        return ResponseEntity.ok().build();
+    }
+
+    // ADMIN: Возврат баланса карты в одну колонку
+    @DeleteMapping("/{id}/shards")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> mergeBalanceShards(@PathVariable Long id) {
+        cardService.mergeBalanceShards(id);
+        return ResponseEntity.ok().build();
+    }
+
     // ADMIN: Удаление карты
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
@@ -107,11 +189,25 @@ public class CardController {
     private CardDTO convertToDTO(BankCard card) {
         return new CardDTO(
                 card.getId(),
-                encryptionService.maskCardNumber(card.getEncryptedNumber()),
+                card.getLast4() != null
+                        ? encryptionService.maskLast4(card.getLast4())
+                        : encryptionService.maskCardNumber(card.getEncryptedNumber()),
                 card.getExpiryDate(),
-                card.getStatus(),
-                card.getBalance(),
+                card.getEffectiveStatus(),
+                card.getShardCount() > 0 ? cardService.getCardBalance(card.getId()) : card.getBalance(),
                 card.getUser().getId()
         );
     }
+
+    private StatementDTO convertToDTO(CardMonthlyRollup rollup) {
+        return new StatementDTO(
+                rollup.getCardId(),
+                YearMonth.from(rollup.getMonth()),
+                rollup.getTotalIn(),
+                rollup.getTotalOut(),
+                rollup.getTxCount(),
+                rollup.getOpeningBalance(),
+                rollup.getClosingBalance()
+        );
+    }
 }
@@ -1,17 +1,34 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransferItemDTO;
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
 import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.dto.TransactionPageDTO;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.Transaction;
-import com.example.bankcards.entity.User;
-import com.example.bankcards.service.CardService;
+import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.service.BatchTransferResult;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.service.TransactionExportFormat;
+import com.example.bankcards.service.TransactionExportService;
+import com.example.bankcards.service.TransactionFeedService;
+import com.example.bankcards.service.TransactionPage;
 import com.example.bankcards.service.TransactionService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -21,38 +38,101 @@ import java.util.stream.Collectors;
 public class TransactionController {
 
     private final TransactionService transactionService;
-    private final CardService cardService;
+    private final IdempotencyService idempotencyService;
+    private final TransactionExportService exportService;
+    private final TransactionFeedService feedService;
 
     @PostMapping("/transfer")
     public ResponseEntity<TransactionDTO> transfer(
             @RequestBody TransferRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @AuthenticationPrincipal UserDetails userDetails) {
-        User user = (User) userDetails;
+        Long userId = ((UserPrincipal) userDetails).getId();
 
-        // Проверка принадлежности карт пользователю
-        if (!cardService.isCardOwnedByUser(request.getFromCardId(), user.getId()) ||
-                !cardService.isCardOwnedByUser(request.getToCardId(), user.getId())) {
-            return ResponseEntity.status(403).build();
+        // Принадлежность карт пользователю проверяется в сервисе, без отдельных запросов
+        if (idempotencyKey == null) {
+            return ResponseEntity.ok(convertToDTO(transactionService.transferBetweenOwnCards(
+                    userId,
+                    request.getFromCardId(),
+                    request.getToCardId(),
+                    request.getAmount()
+            )));
         }
 
-        TransactionDTO transaction = convertToDTO(transactionService.transferBetweenOwnCards(
-                request.getFromCardId(),
-                request.getToCardId(),
-                request.getAmount()
-        ));
+        // Повтор с тем же ключом возвращает уже выполненный перевод
+        TransactionDTO transaction = idempotencyService.execute(userId, idempotencyKey, request, () ->
+                convertToDTO(transactionService.transferBetweenOwnCards(
+                        userId,
+                        request.getFromCardId(),
+                        request.getToCardId(),
+                        request.getAmount(),
+                        idempotencyKey
+                )));
 
         return ResponseEntity.ok(transaction);
     }
 
-    @GetMapping
-    public ResponseEntity<List<TransactionDTO>> getUserTransactions(
+    // Пакет переводов в одной транзакции БД с результатом по каждому элементу
+    @PostMapping("/transfer/batch")
+    public ResponseEntity<BatchTransferResponse> transferBatch(
+            @Valid @RequestBody BatchTransferRequest request,
             @AuthenticationPrincipal UserDetails userDetails) {
-        User user = (User) userDetails;
-        List<TransactionDTO> transactions = transactionService.getUserTransactions(user.getId())
+        // Принципал — UserPrincipal из JwtAuthenticationFilter, сущность User лежит внутри
+        Long userId = ((UserPrincipal) userDetails).getId();
+        List<BatchTransferItemDTO> results = transactionService
+                .transferBatch(userId, request.getTransfers(), request.getMode())
                 .stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
-        return ResponseEntity.ok(transactions);
+
+        int succeeded = (int) results.stream()
+                .filter(result -> result.getStatus() == BatchTransferResult.Status.SUCCEEDED)
+                .count();
+        return ResponseEntity.ok(new BatchTransferResponse(succeeded, results.size() - succeeded, results));
+    }
+
+    // История переводов постранично: next из ответа передаётся в cursor для следующей страницы
+    @GetMapping
+    public ResponseEntity<TransactionPageDTO> getUserTransactions(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) Long cardId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        Long userId = ((UserPrincipal) userDetails).getId();
+        TransactionPage page = transactionService.getUserTransactions(userId, cardId, from, to, cursor, size);
+        return ResponseEntity.ok(new TransactionPageDTO(page.getItems(), page.getNext()));
+    }
+
+    // Полная история одним файлом: строки пишутся в ответ по мере чтения из БД, а не собираются в памяти
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUserTransactions(
+            @RequestParam(defaultValue = "csv") String format,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        TransactionExportFormat exportFormat = TransactionExportFormat.fromValue(format);
+        Long userId = ((UserPrincipal) userDetails).getId();
+
+        StreamingResponseBody body = out -> exportService.export(userId, exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("transactions." + exportFormat.getExtension())
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+    // Новые переводы пользователя по мере коммита вместо опроса GET /api/transactions.
+    // При переподключении Last-Event-ID (или lastEventId для клиентов, не умеющих задавать заголовки)
+    // досылает пропущенное
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamUserTransactions(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(required = false) String lastEventId,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        Long userId = ((UserPrincipal) userDetails).getId();
+        return feedService.subscribe(userId, lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
     }
 
     private TransactionDTO convertToDTO(Transaction transaction) {
@@ -64,4 +144,13 @@ public class TransactionController {
                 transaction.getReceiverCard().getId()
         );
     }
-}
\ No newline at end of file
+
+    private BatchTransferItemDTO convertToDTO(BatchTransferResult result) {
+        return new BatchTransferItemDTO(
+                result.getIndex(),
+                result.getStatus(),
+                result.getTransaction() != null ? convertToDTO(result.getTransaction()) : null,
+                result.getError()
+        );
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class BalanceDTO {
+    private Long cardId;
+    private BigDecimal balance;
+    private LocalDateTime at;
+}
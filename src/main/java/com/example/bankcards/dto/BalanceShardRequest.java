@@ -0,0 +1,12 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+
+@Data
+public class BalanceShardRequest {
+    @Min(value = 2, message = "At least 2 shards are required")
+    @Max(value = 64, message = "At most 64 shards are allowed")
+    private int shards;
+}
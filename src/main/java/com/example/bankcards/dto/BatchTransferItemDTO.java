@@ -0,0 +1,14 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.service.BatchTransferResult;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BatchTransferItemDTO {
+    private int index;
+    private BatchTransferResult.Status status;
+    private TransactionDTO transaction;
+    private String error;
+}
@@ -0,0 +1,20 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.service.BatchTransferMode;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchTransferRequest {
+    @NotNull(message = "Batch mode is required")
+    private BatchTransferMode mode = BatchTransferMode.ALL_OR_NOTHING;
+
+    @NotEmpty(message = "Batch must contain at least one transfer")
+    @Size(max = 1000, message = "Batch must contain at most 1000 transfers")
+    private List<@Valid TransferRequest> transfers;
+}
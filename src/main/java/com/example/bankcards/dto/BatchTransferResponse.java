@@ -0,0 +1,14 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BatchTransferResponse {
+    private int succeeded;
+    private int failed;
+    private List<BatchTransferItemDTO> results;
+}
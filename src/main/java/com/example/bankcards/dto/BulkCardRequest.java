@@ -0,0 +1,20 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.BankCard;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+// Либо cardIds, либо фильтр с теми же условиями, что у GET /api/admin/cards
+@Data
+public class BulkCardRequest {
+    private List<Long> cardIds;
+    private BankCard.CardStatus status;
+    private LocalDate expiresFrom;
+    private LocalDate expiresTo;
+    private BigDecimal minBalance;
+    private BigDecimal maxBalance;
+    private Long userId;
+}
@@ -0,0 +1,32 @@
+package com.example.bankcards.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Строка NDJSON-отчёта о загрузке карт: ошибка строки файла, прогресс после пачки или итог
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CardImportEventDTO {
+    private Type type;
+    private Long line;
+    private String message;
+    private Long processed;
+    private Long issued;
+    private Long failed;
+
+    public static CardImportEventDTO error(long line, String message) {
+        return new CardImportEventDTO(Type.ERROR, line, message, null, null, null);
+    }
+
+    public static CardImportEventDTO progress(Type type, long processed, long issued, long failed) {
+        return new CardImportEventDTO(type, null, null, processed, issued, failed);
+    }
+
+    public enum Type {
+        ERROR, PROGRESS, SUMMARY
+    }
+}
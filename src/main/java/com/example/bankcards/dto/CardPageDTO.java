@@ -0,0 +1,13 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class CardPageDTO {
+    private List<CardDTO> items;
+    private String next;
+}
@@ -0,0 +1,19 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+
+@Data
+@AllArgsConstructor
+public class StatementDTO {
+    private Long cardId;
+    private YearMonth month;
+    private BigDecimal totalIn;
+    private BigDecimal totalOut;
+    private long count;
+    private BigDecimal openingBalance;
+    private BigDecimal closingBalance;
+}
@@ -0,0 +1,46 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Баланс карты с учётом проводок всех транзакций с tx_id меньше txHorizon; все они созданы не позже asOf
+@Entity
+@Table(name = "card_balance_snapshots",
+        uniqueConstraints = @UniqueConstraint(name = "uk_card_balance_snapshots_card_tx_horizon", columnNames = {"card_id", "tx_horizon"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "card_balance_snapshots_seq")
+    @SequenceGenerator(name = "card_balance_snapshots_seq", sequenceName = "card_balance_snapshots_seq", allocationSize = 50)
+    private Long id;
+
+    // Снимки производны от журнала и удаляются вместе с картой
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "card_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private BankCard card;
+
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal balance;
+
+    @Column(name = "as_of", nullable = false)
+    private LocalDateTime asOf;
+
+    // Граница транзакций, до которой учтены проводки; у начального снимка карты — 0
+    @Column(name = "tx_horizon", nullable = false)
+    private Long txHorizon;
+}
@@ -19,13 +19,24 @@ import java.time.LocalDate;
 @Builder
 public class BankCard {
 
+    // Последовательность с шагом 50 (pooled): IDENTITY отключает пакетные вставки Hibernate
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bank_cards_seq")
+    @SequenceGenerator(name = "bank_cards_seq", sequenceName = "bank_cards_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "encrypted_number", nullable = false, columnDefinition = "TEXT")
     private String encryptedNumber;  // Зашифрованный номер карты
 
+    // Последние 4 цифры в открытом виде: маска строится без расшифровки номера.
+    // NULL — карта выпущена до появления колонки и ещё не обработана CardNumberBackfillJob
+    @Column(name = "last4", length = 4)
+    private String last4;
+
+    // Слепой индекс номера: HMAC-SHA256 с отдельным ключом, hex. Уникален, поиск по номеру — одна проба индекса
+    @Column(name = "number_hash", length = 64, unique = true)
+    private String numberHash;
+
     @Column(name = "expiry_date", nullable = false)
     private LocalDate expiryDate;
 
@@ -40,12 +51,20 @@ public class BankCard {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-    // Автоматическая проверка статуса при загрузке
-    @PostLoad
-    public void checkStatus() {
-        if (expiryDate.isBefore(LocalDate.now())) {
-            this.status = CardStatus.EXPIRED;
-        }
+    // Число слотов в card_balance_shards; 0 — весь баланс в колонке balance.
+    // У шардированной карты баланс — сумма колонки balance и всех слотов
+    @Column(name = "shard_count", nullable = false)
+    private int shardCount;
+
+    // Оптимистическая блокировка: UPDATE проверяет, что строку никто не изменил с момента чтения
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    // Статус с учётом срока действия без изменения сущности: между полуночью и проходом
+    // CardExpirySweepJob у истёкшей карты в БД ещё может стоять прежний статус
+    public CardStatus getEffectiveStatus() {
+        return expiryDate != null && expiryDate.isBefore(LocalDate.now()) ? CardStatus.EXPIRED : status;
     }
 
     public enum CardStatus {
@@ -0,0 +1,40 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.math.BigDecimal;
+
+// Слот баланса горячей карты: зачисления распределяются по слотам и не ждут друг друга на одной строке
+@Entity
+@Table(name = "card_balance_shards",
+        uniqueConstraints = @UniqueConstraint(name = "uk_card_balance_shards_card_slot", columnNames = {"card_id", "slot"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CardBalanceShard {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "card_balance_shards_seq")
+    @SequenceGenerator(name = "card_balance_shards_seq", sequenceName = "card_balance_shards_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "card_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private BankCard card;
+
+    @Column(nullable = false)
+    private int slot;
+
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal balance;
+}
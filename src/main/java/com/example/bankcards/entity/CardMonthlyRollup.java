@@ -0,0 +1,60 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Итоги карты за месяц: обновляются вместе с каждым переводом, выписка не читает transactions
+@Entity
+@Table(name = "card_monthly_rollup")
+@IdClass(CardMonthlyRollup.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CardMonthlyRollup {
+
+    // Естественный ключ (карта, месяц): по нему же работает upsert ON CONFLICT
+    @Id
+    @Column(name = "card_id")
+    private Long cardId;
+
+    // Первое число месяца
+    @Id
+    @Column(name = "month")
+    private LocalDate month;
+
+    @Column(name = "total_in", nullable = false, precision = 15, scale = 2)
+    private BigDecimal totalIn;
+
+    @Column(name = "total_out", nullable = false, precision = 15, scale = 2)
+    private BigDecimal totalOut;
+
+    @Column(name = "tx_count", nullable = false)
+    private long txCount;
+
+    @Column(name = "opening_balance", nullable = false, precision = 15, scale = 2)
+    private BigDecimal openingBalance;
+
+    @Column(name = "closing_balance", nullable = false, precision = 15, scale = 2)
+    private BigDecimal closingBalance;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private Long cardId;
+        private LocalDate month;
+    }
+}
@@ -1,6 +1,6 @@
 package com.example.bankcards.entity;
 
-
+import com.example.bankcards.dto.TransactionDTO;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
@@ -13,6 +13,58 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "transactions")
+@SqlResultSetMapping(name = "TransactionDTO", classes = @ConstructorResult(
+        targetClass = TransactionDTO.class,
+        columns = {
+                @ColumnResult(name = "id", type = Long.class),
+                @ColumnResult(name = "amount", type = BigDecimal.class),
+                @ColumnResult(name = "timestamp", type = LocalDateTime.class),
+                @ColumnResult(name = "sender_card_id", type = Long.class),
+                @ColumnResult(name = "receiver_card_id", type = Long.class)
+        }))
+// История пользователя одним запросом: сторона отправителя и сторона получателя идут каждая по своему индексу,
+// UNION убирает дубли переводов между своими картами. Границы по timestamp отсекают лишние месячные секции
+@NamedNativeQuery(name = "Transaction.findDtosByUserId", resultSetMapping = "TransactionDTO", query =
+        "SELECT t.id, t.amount, t.timestamp, t.sender_card_id, t.receiver_card_id " +
+        "FROM transactions t JOIN bank_cards c ON c.id = t.sender_card_id " +
+        "WHERE c.user_id = :userId AND t.timestamp >= :from AND t.timestamp < :to " +
+        "UNION " +
+        "SELECT t.id, t.amount, t.timestamp, t.sender_card_id, t.receiver_card_id " +
+        "FROM transactions t JOIN bank_cards c ON c.id = t.receiver_card_id " +
+        "WHERE c.user_id = :userId AND t.timestamp >= :from AND t.timestamp < :to " +
+        "ORDER BY timestamp DESC, id DESC")
+// Keyset-страница по картам: для каждой карты — короткий обратный проход по индексу (card_id, timestamp, id)
+// от позиции курсора, затем слияние и общий LIMIT. Стоимость не зависит от глубины страницы.
+// Сравнение пар (timestamp, id) секции не отсекает, поэтому рядом стоит простое условие timestamp <= курсора
+@NamedNativeQuery(name = "Transaction.findDtoPageByCards", resultSetMapping = "TransactionDTO", query =
+        "SELECT page.id, page.amount, page.timestamp, page.sender_card_id, page.receiver_card_id FROM (" +
+        "  SELECT s.* FROM bank_cards c CROSS JOIN LATERAL (" +
+        "    SELECT t.id, t.amount, t.timestamp, t.sender_card_id, t.receiver_card_id FROM transactions t " +
+        "    WHERE t.sender_card_id = c.id " +
+        "      AND (t.timestamp, t.id) < (:beforeTimestamp, :beforeId) " +
+        "      AND t.timestamp <= :beforeTimestamp AND t.timestamp >= :from " +
+        "    ORDER BY t.timestamp DESC, t.id DESC LIMIT :limit) s " +
+        "  WHERE c.id IN :cardIds " +
+        "  UNION " +
+        "  SELECT r.* FROM bank_cards c CROSS JOIN LATERAL (" +
+        "    SELECT t.id, t.amount, t.timestamp, t.sender_card_id, t.receiver_card_id FROM transactions t " +
+        "    WHERE t.receiver_card_id = c.id " +
+        "      AND (t.timestamp, t.id) < (:beforeTimestamp, :beforeId) " +
+        "      AND t.timestamp <= :beforeTimestamp AND t.timestamp >= :from " +
+        "    ORDER BY t.timestamp DESC, t.id DESC LIMIT :limit) r " +
+        "  WHERE c.id IN :cardIds" +
+        ") page ORDER BY page.timestamp DESC, page.id DESC LIMIT :limit")
+// Догрузка ленты после переподключения: переводы пользователя начиная с момента from в порядке (timestamp, id).
+// id выдаются блоками на узел и с порядком коммита не совпадают, поэтому продолжение идёт не по id
+@NamedNativeQuery(name = "Transaction.findDtosByUserIdSince", resultSetMapping = "TransactionDTO", query =
+        "SELECT t.id, t.amount, t.timestamp, t.sender_card_id, t.receiver_card_id " +
+        "FROM transactions t JOIN bank_cards c ON c.id = t.sender_card_id " +
+        "WHERE c.user_id = :userId AND t.timestamp >= :from " +
+        "UNION " +
+        "SELECT t.id, t.amount, t.timestamp, t.sender_card_id, t.receiver_card_id " +
+        "FROM transactions t JOIN bank_cards c ON c.id = t.receiver_card_id " +
+        "WHERE c.user_id = :userId AND t.timestamp >= :from " +
+        "ORDER BY timestamp, id LIMIT :limit")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -20,8 +72,10 @@ import java.time.LocalDateTime;
 @Builder
 public class Transaction {
 
+    // id выдаются блоками по 50, поэтому INSERT транзакций можно отправлять пакетами
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, precision = 15, scale = 2)
@@ -38,6 +92,11 @@ public class Transaction {
     @JoinColumn(name = "receiver_card_id", nullable = false)
     private BankCard receiverCard;
 
+    // Ключ из заголовка Idempotency-Key: повтор запроса клиентом не создаёт второй перевод.
+    // Уникальность ключа держит таблица transaction_idempotency_keys: в секционированной таблице её не задать
+    @Column(name = "idempotency_key", length = 64)
+    private String idempotencyKey;
+
     @PrePersist
     protected void onCreate() {
         timestamp = LocalDateTime.now();
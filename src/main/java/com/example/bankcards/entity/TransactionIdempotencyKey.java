@@ -0,0 +1,33 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Уникальность Idempotency-Key: секционированная transactions не может держать уникальный индекс без timestamp.
+// Время перевода хранится, чтобы поиск по ключу попадал в одну секцию
+@Entity
+@Table(name = "transaction_idempotency_keys")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionIdempotencyKey {
+
+    @Id
+    @Column(name = "idempotency_key", length = 64)
+    private String key;
+
+    @Column(name = "transaction_id", nullable = false)
+    private Long transactionId;
+
+    @Column(name = "transaction_timestamp", nullable = false)
+    private LocalDateTime transactionTimestamp;
+}
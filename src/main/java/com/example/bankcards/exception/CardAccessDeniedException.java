@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class CardAccessDeniedException extends ApiException {
+    public CardAccessDeniedException(String message) {
+        super(message, HttpStatus.FORBIDDEN);
+    }
+}
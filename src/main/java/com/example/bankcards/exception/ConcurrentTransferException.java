@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class ConcurrentTransferException extends ApiException {
+    public ConcurrentTransferException(String message) {
+        super(message, HttpStatus.CONFLICT);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class DuplicateCardNumberException extends ApiException {
+    public DuplicateCardNumberException(String message) {
+        super(message, HttpStatus.CONFLICT);
+    }
+}
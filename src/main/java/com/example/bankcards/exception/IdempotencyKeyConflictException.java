@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class IdempotencyKeyConflictException extends ApiException {
+    public IdempotencyKeyConflictException(String message) {
+        super(message, HttpStatus.CONFLICT);
+    }
+}
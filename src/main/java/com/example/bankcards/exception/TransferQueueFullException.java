@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class TransferQueueFullException extends ApiException {
+    public TransferQueueFullException(String message) {
+        super(message, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
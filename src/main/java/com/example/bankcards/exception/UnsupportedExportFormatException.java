@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class UnsupportedExportFormatException extends ApiException {
+    public UnsupportedExportFormatException(String message) {
+        super(message, HttpStatus.BAD_REQUEST);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.BalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+
+    Optional<BalanceSnapshot> findFirstByCardIdAndAsOfLessThanEqualOrderByTxHorizonDesc(Long cardId, LocalDateTime at);
+
+    @Query("SELECT COALESCE(MAX(s.txHorizon), 0) FROM BalanceSnapshot s")
+    long findLatestTxHorizon();
+
+    // Все транзакции с меньшим id уже завершены: их проводки больше не появятся, сколько бы ни шёл коммит
+    @Query(value = "SELECT CAST(CAST(pg_snapshot_xmin(pg_current_snapshot()) AS TEXT) AS BIGINT)", nativeQuery = true)
+    long findCompletedTxHorizon();
+
+    // Проходы снимков выполняются по одному: следующий проход строится на снимках предыдущего
+    @Modifying
+    @Query(value = "LOCK TABLE card_balance_snapshots IN SHARE ROW EXCLUSIVE MODE", nativeQuery = true)
+    void lockForRefresh();
+
+    // Новые снимки только для карт с проводками транзакций из [fromTx, horizon): у остальных хвост после снимка пуст.
+    // asOf не меньше created_at любой вошедшей проводки и не убывает от снимка к снимку
+    @Modifying
+    @Query(value = "INSERT INTO card_balance_snapshots (id, card_id, balance, as_of, tx_horizon) " +
+            "SELECT nextval('card_balance_snapshots_seq'), folded.card_id, " +
+            "       COALESCE(last.balance, 0) + folded.delta, GREATEST(folded.created_at, last.as_of), :horizon " +
+            "FROM (SELECT card_id, SUM(amount) AS delta, MAX(created_at) AS created_at FROM ledger_entries " +
+            "      WHERE tx_id >= :fromTx AND tx_id < :horizon GROUP BY card_id) folded " +
+            "LEFT JOIN LATERAL (SELECT s.balance, s.as_of FROM card_balance_snapshots s " +
+            "                   WHERE s.card_id = folded.card_id ORDER BY s.tx_horizon DESC LIMIT 1) last ON true",
+            nativeQuery = true)
+    int insertSnapshots(@Param("fromTx") long fromTx, @Param("horizon") long horizon);
+}
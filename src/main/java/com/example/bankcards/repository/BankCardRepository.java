@@ -3,18 +3,24 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.BankCard;
 import com.example.bankcards.entity.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface BankCardRepository extends JpaRepository<BankCard, Long> {
+public interface BankCardRepository extends JpaRepository<BankCard, Long>, CardSearchRepository {
 
     @Query("SELECT c FROM BankCard c WHERE c.user.id = :userId")
     Page<BankCard> findByUserId(@Param("userId") Long userId, Pageable pageable);
@@ -27,6 +33,143 @@ public interface BankCardRepository extends JpaRepository<BankCard, Long> {
             @Param("cardId") Long cardId
     );
 
-    @Query("SELECT c FROM BankCard c WHERE c.user = :user AND c.status = 'ACTIVE'")
+    @Query("SELECT c FROM BankCard c WHERE c.user = :user AND c.status = 'ACTIVE' AND c.expiryDate >= CURRENT_DATE")
     List<BankCard> findActiveCardsByUser(User user);
+
+    // SELECT ... FOR UPDATE: строка карты блокируется до конца транзакции
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM BankCard c WHERE c.id = :cardId")
+    Optional<BankCard> findByIdForUpdate(@Param("cardId") Long cardId);
+
+    // Блокировки берутся в порядке ORDER BY, поэтому пакеты с пересекающимися картами не взаимоблокируются
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM BankCard c WHERE c.id IN :cardIds ORDER BY c.id")
+    List<BankCard> findAllByIdForUpdate(@Param("cardIds") Collection<Long> cardIds);
+
+    // Карты перевода под блокировкой, кроме шардированных получателей: зачисления на них идут в слоты
+    // и не должны ждать строку карты. Шардированный отправитель блокируется — списание со слотов его и так берёт
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM BankCard c WHERE c.id IN :cardIds AND (c.shardCount = 0 OR c.id IN :senderCardIds) " +
+            "ORDER BY c.id")
+    List<BankCard> findAllForTransferForUpdate(@Param("cardIds") Collection<Long> cardIds,
+                                               @Param("senderCardIds") Collection<Long> senderCardIds);
+
+    // Списание одним запросом: 0 строк — карта чужая, неактивна или на ней не хватает средств
+    @Modifying
+    @Query(value = "UPDATE bank_cards SET balance = balance - :amount, version = version + 1 " +
+            "WHERE id = :cardId AND user_id = :userId AND status = 'ACTIVE' " +
+            "AND expiry_date >= CURRENT_DATE AND balance >= :amount", nativeQuery = true)
+    int debitIfAllowed(
+            @Param("cardId") Long cardId,
+            @Param("userId") Long userId,
+            @Param("amount") BigDecimal amount
+    );
+
+    // Зачисление одним запросом: 0 строк — карта чужая, неактивна или шардирована (зачисляется в слот)
+    @Modifying
+    @Query(value = "UPDATE bank_cards SET balance = balance + :amount, version = version + 1 " +
+            "WHERE id = :cardId AND user_id = :userId AND status = 'ACTIVE' " +
+            "AND expiry_date >= CURRENT_DATE AND shard_count = 0", nativeQuery = true)
+    int creditIfAllowed(
+            @Param("cardId") Long cardId,
+            @Param("userId") Long userId,
+            @Param("amount") BigDecimal amount
+    );
+
+    @Query("SELECT c.id FROM BankCard c ORDER BY c.id")
+    List<Long> findAllIds();
+
+    // Пачка истёкших карт одним UPDATE по частичному индексу idx_bank_cards_expiry_pending.
+    // SKIP LOCKED не ждёт карт, занятых переводами: их заберёт следующий проход.
+    // Версия увеличивается, чтобы прочитанная раньше сущность не вернула прежний статус
+    @Modifying
+    @Query(value = "UPDATE bank_cards SET status = 'EXPIRED', version = version + 1 WHERE id IN (" +
+            "SELECT id FROM bank_cards WHERE expiry_date < :today AND status <> 'EXPIRED' " +
+            "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED)", nativeQuery = true)
+    int expireBefore(@Param("today") LocalDate today, @Param("limit") int limit);
+
+    // Массовые операции: строки блокируются в порядке id, как и в переводах, поэтому с пакетами переводов
+    // взаимоблокировок нет. Условия те же, что у blockCard/activateCard: истёкшая карта не меняется
+    @Modifying
+    @Query(value = "UPDATE bank_cards SET status = 'BLOCKED', version = version + 1 WHERE id IN (" +
+            "SELECT id FROM bank_cards WHERE id IN :cardIds AND status = 'ACTIVE' AND expiry_date >= :today " +
+            "ORDER BY id FOR UPDATE)", nativeQuery = true)
+    int blockAll(@Param("cardIds") Collection<Long> cardIds, @Param("today") LocalDate today);
+
+    @Modifying
+    @Query(value = "UPDATE bank_cards SET status = 'ACTIVE', version = version + 1 WHERE id IN (" +
+            "SELECT id FROM bank_cards WHERE id IN :cardIds AND status <> 'ACTIVE' AND expiry_date >= :today " +
+            "ORDER BY id FOR UPDATE)", nativeQuery = true)
+    int activateAll(@Param("cardIds") Collection<Long> cardIds, @Param("today") LocalDate today);
+
+    // Удаляются только карты без истории: переводы и проводки остаются, а слоты хранят часть баланса
+    @Query(value = "SELECT c.id FROM bank_cards c WHERE c.id IN :cardIds AND c.shard_count = 0 " +
+            "AND NOT EXISTS (SELECT 1 FROM transactions t WHERE t.sender_card_id = c.id) " +
+            "AND NOT EXISTS (SELECT 1 FROM transactions t WHERE t.receiver_card_id = c.id) " +
+            "AND NOT EXISTS (SELECT 1 FROM ledger_entries l WHERE l.card_id = c.id) " +
+            "ORDER BY c.id FOR UPDATE", nativeQuery = true)
+    List<Long> lockDeletableIds(@Param("cardIds") Collection<Long> cardIds);
+
+    // Снимки баланса — производные данные, без них строку карты не удалить
+    @Modifying
+    @Query(value = "DELETE FROM card_balance_snapshots WHERE card_id IN :cardIds", nativeQuery = true)
+    int deleteSnapshots(@Param("cardIds") Collection<Long> cardIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM bank_cards WHERE id IN :cardIds", nativeQuery = true)
+    int deleteAllByIds(@Param("cardIds") Collection<Long> cardIds);
+
+    Optional<BankCard> findByNumberHash(String numberHash);
+
+    boolean existsByNumberHash(String numberHash);
+
+    @Query("SELECT c.numberHash FROM BankCard c WHERE c.numberHash IN :numberHashes")
+    List<String> findExistingNumberHashes(@Param("numberHashes") Collection<String> numberHashes);
+
+    // Карты, выпущенные до колонок last4 и number_hash
+    @Query("SELECT c.id FROM BankCard c WHERE c.last4 IS NULL OR c.numberHash IS NULL ORDER BY c.id")
+    List<Long> findIdsWithoutNumberColumns();
+
+    @Query("SELECT c.id AS id, c.encryptedNumber AS encryptedNumber FROM BankCard c " +
+            "WHERE c.id IN :cardIds AND (c.last4 IS NULL OR c.numberHash IS NULL)")
+    List<EncryptedNumber> findEncryptedNumbersWithoutNumberColumns(@Param("cardIds") Collection<Long> cardIds);
+
+    // Уже занятый слепой индекс не записывается: такая карта — дубль номера, она остаётся с NULL и попадает в лог.
+    // Версия увеличивается, чтобы карта, прочитанная до заполнения, не затёрла колонки при сохранении
+    @Modifying
+    @Query(value = "UPDATE bank_cards SET last4 = COALESCE(last4, :last4), " +
+            "number_hash = CASE WHEN number_hash IS NULL AND NOT EXISTS (" +
+            "SELECT 1 FROM bank_cards d WHERE d.number_hash = :numberHash) THEN :numberHash ELSE number_hash END, " +
+            "version = version + 1 " +
+            "WHERE id = :cardId AND (last4 IS NULL OR number_hash IS NULL)", nativeQuery = true)
+    int setNumberColumns(@Param("cardId") Long cardId,
+                         @Param("last4") String last4,
+                         @Param("numberHash") String numberHash);
+
+    @Query("SELECT c.id FROM BankCard c WHERE c.numberHash IS NULL ORDER BY c.id")
+    List<Long> findIdsWithoutNumberHash();
+
+    @Query("SELECT c.id FROM BankCard c WHERE c.user.id = :userId")
+    List<Long> findIdsByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT c.user.id FROM BankCard c WHERE c.id = :cardId")
+    Optional<Long> findOwnerId(@Param("cardId") Long cardId);
+
+    @Query("SELECT c.user.id AS userId, c.status AS status, c.balance AS balance, c.expiryDate AS expiryDate, " +
+            "c.shardCount AS shardCount FROM BankCard c WHERE c.id = :cardId")
+    Optional<TransferState> findTransferState(@Param("cardId") Long cardId);
+
+    interface EncryptedNumber {
+        Long getId();
+        String getEncryptedNumber();
+    }
+
+    // Состояние карты без загрузки сущности: нужно, чтобы объяснить отказ условного UPDATE
+    interface TransferState {
+        Long getUserId();
+        BankCard.CardStatus getStatus();
+        BigDecimal getBalance();
+        LocalDate getExpiryDate();
+        int getShardCount();
+    }
 }
\ No newline at end of file
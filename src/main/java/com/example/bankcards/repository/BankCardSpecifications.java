@@ -0,0 +1,75 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.CardBalanceShard;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Условия поиска карт; каждое опирается на индекс из 014-bank-cards-search-indexes
+public final class BankCardSpecifications {
+
+    private BankCardSpecifications() {
+    }
+
+    // Статус с учётом срока, как BankCard.getEffectiveStatus: до прохода CardExpirySweepJob
+    // у истёкшей карты в колонке ещё прежний статус. EXPIRED ставит только этот проход и только картам
+    // с expiry_date < today, поэтому EXPIRED — это ровно истёкший срок, по индексу (expiry_date, id)
+    public static Specification<BankCard> hasEffectiveStatus(BankCard.CardStatus status, LocalDate today) {
+        return (root, query, cb) -> status == BankCard.CardStatus.EXPIRED
+                ? cb.lessThan(root.get("expiryDate"), today)
+                : cb.and(cb.equal(root.get("status"), status), cb.greaterThanOrEqualTo(root.get("expiryDate"), today));
+    }
+
+    public static Specification<BankCard> expiresFrom(LocalDate from) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("expiryDate"), from);
+    }
+
+    public static Specification<BankCard> expiresTo(LocalDate to) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("expiryDate"), to);
+    }
+
+    // Тот же баланс, что отдаётся в CardDTO; любая из границ может быть null. Две ветки под частичные индексы:
+    // обычные карты сравниваются по колонке через (balance, id) WHERE shard_count = 0, а сумма слотов
+    // считается только для шардированных карт, которых единицы, — через (id) WHERE shard_count > 0
+    public static Specification<BankCard> balanceBetween(BigDecimal min, BigDecimal max) {
+        return (root, query, cb) -> cb.or(
+                cb.and(cb.equal(root.get("shardCount"), 0), inRange(cb, root.get("balance"), min, max)),
+                cb.and(cb.greaterThan(root.get("shardCount"), 0), inRange(cb, shardedBalance(root, query, cb), min, max)));
+    }
+
+    // Сравнение с колонкой user_id без JOIN к users
+    public static Specification<BankCard> ownedBy(Long userId) {
+        return (root, query, cb) -> cb.equal(root.get("user").get("id"), userId);
+    }
+
+    // Keyset: следующая страница начинается после последнего отданного id
+    public static Specification<BankCard> idAfter(Long id) {
+        return (root, query, cb) -> cb.greaterThan(root.get("id"), id);
+    }
+
+    private static Predicate inRange(CriteriaBuilder cb, Expression<BigDecimal> value, BigDecimal min, BigDecimal max) {
+        if (min == null) {
+            return cb.lessThanOrEqualTo(value, max);
+        }
+        if (max == null) {
+            return cb.greaterThanOrEqualTo(value, min);
+        }
+        return cb.between(value, min, max);
+    }
+
+    private static Expression<BigDecimal> shardedBalance(Root<BankCard> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+        Subquery<BigDecimal> slots = query.subquery(BigDecimal.class);
+        Root<CardBalanceShard> shard = slots.from(CardBalanceShard.class);
+        slots.select(cb.sum(shard.<BigDecimal>get("balance")))
+                .where(cb.equal(shard.get("card"), root));
+        return cb.sum(root.<BigDecimal>get("balance"), cb.coalesce(slots, BigDecimal.ZERO));
+    }
+}
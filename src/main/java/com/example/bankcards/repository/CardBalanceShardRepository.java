@@ -0,0 +1,41 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardBalanceShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CardBalanceShardRepository extends JpaRepository<CardBalanceShard, Long> {
+
+    // Зачисление в один слот: строка карты не блокируется. 0 строк — карту уже вернули в обычное представление
+    @Modifying
+    @Query(value = "UPDATE card_balance_shards SET balance = balance + :amount " +
+            "WHERE card_id = :cardId AND slot = :slot", nativeQuery = true)
+    int credit(@Param("cardId") Long cardId, @Param("slot") int slot, @Param("amount") BigDecimal amount);
+
+    // Слоты блокируются по порядку номеров, чтобы два списания с одной карты не взаимоблокировались
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM CardBalanceShard s WHERE s.card.id = :cardId ORDER BY s.slot")
+    List<CardBalanceShard> findAllByCardIdForUpdate(@Param("cardId") Long cardId);
+
+    @Query("SELECT COALESCE(SUM(s.balance), 0) FROM CardBalanceShard s WHERE s.card.id = :cardId")
+    BigDecimal sumBalance(@Param("cardId") Long cardId);
+
+    @Query("SELECT s.card.id AS cardId, SUM(s.balance) AS balance FROM CardBalanceShard s " +
+            "WHERE s.card.id IN :cardIds GROUP BY s.card.id")
+    List<ShardTotal> sumBalances(@Param("cardIds") Collection<Long> cardIds);
+
+    interface ShardTotal {
+        Long getCardId();
+        BigDecimal getBalance();
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardMonthlyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CardMonthlyRollupRepository extends JpaRepository<CardMonthlyRollup, CardMonthlyRollup.Key> {
+
+    List<CardMonthlyRollup> findAllByCardIdOrderByMonthDesc(Long cardId);
+
+    // Первая строка месяца открывается закрывающим балансом прошлого месяца карты, а у карты без итогов —
+    // текущим балансом (колонка плюс слоты) до этого перевода. Дальше строка только накапливает изменения.
+    // flushAutomatically: изменённые в сессии балансы карт должны попасть в БД раньше, чем их прочитает подзапрос
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO card_monthly_rollup AS r " +
+            "(card_id, month, total_in, total_out, tx_count, opening_balance, closing_balance) " +
+            "SELECT :cardId, :month, :totalIn, :totalOut, :txCount, o.balance, o.balance + :totalIn - :totalOut " +
+            "FROM (SELECT COALESCE(" +
+            "  (SELECT p.closing_balance FROM card_monthly_rollup p " +
+            "   WHERE p.card_id = :cardId AND p.month < :month ORDER BY p.month DESC LIMIT 1), " +
+            "  (SELECT c.balance + COALESCE((SELECT SUM(s.balance) FROM card_balance_shards s WHERE s.card_id = c.id), 0) " +
+            "   FROM bank_cards c WHERE c.id = :cardId) - :totalIn + :totalOut) AS balance) o " +
+            "ON CONFLICT (card_id, month) DO UPDATE SET " +
+            "total_in = r.total_in + EXCLUDED.total_in, " +
+            "total_out = r.total_out + EXCLUDED.total_out, " +
+            "tx_count = r.tx_count + EXCLUDED.tx_count, " +
+            "closing_balance = r.closing_balance + EXCLUDED.total_in - EXCLUDED.total_out",
+            nativeQuery = true)
+    int upsert(@Param("cardId") Long cardId,
+               @Param("month") LocalDate month,
+               @Param("totalIn") BigDecimal totalIn,
+               @Param("totalOut") BigDecimal totalOut,
+               @Param("txCount") long txCount);
+
+    @Modifying
+    @Query(value = "DELETE FROM card_monthly_rollup WHERE card_id IN :cardIds AND month >= :from", nativeQuery = true)
+    int deleteAllByCardIdsFrom(@Param("cardIds") Collection<Long> cardIds, @Param("from") LocalDate from);
+
+    // Пересчёт по истории переводов начиная с from: балансы восстанавливаются назад от текущего баланса карты,
+    // поэтому переводы, сделанные до журнала проводок, тоже учитываются. Итоги архивных месяцев не трогаются
+    @Modifying
+    @Query(value = "INSERT INTO card_monthly_rollup " +
+            "(card_id, month, total_in, total_out, tx_count, opening_balance, closing_balance) " +
+            "SELECT m.card_id, m.month, m.total_in, m.total_out, m.tx_count, " +
+            "       b.balance - SUM(m.total_in - m.total_out) OVER later, " +
+            "       b.balance - SUM(m.total_in - m.total_out) OVER later + m.total_in - m.total_out " +
+            "FROM (SELECT moves.card_id, moves.month, SUM(moves.amount_in) AS total_in, " +
+            "             SUM(moves.amount_out) AS total_out, COUNT(*) AS tx_count " +
+            "      FROM (SELECT t.receiver_card_id AS card_id, CAST(date_trunc('month', t.timestamp) AS DATE) AS month, " +
+            "                   t.amount AS amount_in, 0 AS amount_out " +
+            "            FROM transactions t WHERE t.receiver_card_id IN :cardIds AND t.timestamp >= :from " +
+            "            UNION ALL " +
+            "            SELECT t.sender_card_id, CAST(date_trunc('month', t.timestamp) AS DATE), 0, t.amount " +
+            "            FROM transactions t WHERE t.sender_card_id IN :cardIds AND t.timestamp >= :from) moves " +
+            "      GROUP BY moves.card_id, moves.month) m " +
+            "JOIN (SELECT c.id, c.balance + COALESCE((SELECT SUM(s.balance) FROM card_balance_shards s " +
+            "                                         WHERE s.card_id = c.id), 0) AS balance " +
+            "      FROM bank_cards c WHERE c.id IN :cardIds) b ON b.id = m.card_id " +
+            "WINDOW later AS (PARTITION BY m.card_id ORDER BY m.month DESC " +
+            "                 ROWS BETWEEN UNBOUNDED PRECEDING AND CURRENT ROW)",
+            nativeQuery = true)
+    int rebuild(@Param("cardIds") Collection<Long> cardIds, @Param("from") LocalDateTime from);
+}
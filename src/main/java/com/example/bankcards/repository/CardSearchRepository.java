@@ -0,0 +1,22 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.BankCard;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+// Фрагмент BankCardRepository: поиск по Specification с выборкой только нужных колонок
+public interface CardSearchRepository {
+
+    // Первые limit карт по возрастанию id; сущности и зашифрованный номер не читаются
+    List<CardRow> findRows(Specification<BankCard> specification, int limit);
+
+    // То же, но только id: пачки массовых операций
+    List<Long> findIds(Specification<BankCard> specification, int limit);
+
+    record CardRow(Long id, String last4, LocalDate expiryDate, BankCard.CardStatus status, BigDecimal balance,
+                   int shardCount, Long userId) {
+    }
+}
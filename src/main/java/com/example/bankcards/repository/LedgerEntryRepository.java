@@ -0,0 +1,24 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Repository
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    // Хвост журнала после снимка: только проводки транзакций от границы снимка, по индексу (card_id, tx_id)
+    @Query("SELECT COALESCE(SUM(e.amount), 0) FROM LedgerEntry e " +
+            "WHERE e.card.id = :cardId AND e.txId >= :fromTx AND e.createdAt <= :to")
+    BigDecimal sumSince(@Param("cardId") Long cardId,
+                        @Param("fromTx") Long fromTx,
+                        @Param("to") LocalDateTime to);
+
+    @Query("SELECT COALESCE(SUM(e.amount), 0) FROM LedgerEntry e WHERE e.card.id = :cardId AND e.createdAt <= :to")
+    BigDecimal sumUpTo(@Param("cardId") Long cardId, @Param("to") LocalDateTime to);
+}
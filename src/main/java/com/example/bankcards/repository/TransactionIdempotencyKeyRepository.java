@@ -0,0 +1,22 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.TransactionIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface TransactionIdempotencyKeyRepository extends JpaRepository<TransactionIdempotencyKey, String> {
+
+    // Обычный INSERT, а не save(): повтор ключа должен упасть на первичном ключе, а не превратиться в merge
+    @Modifying
+    @Query(value = "INSERT INTO transaction_idempotency_keys (idempotency_key, transaction_id, transaction_timestamp) " +
+            "VALUES (:key, :transactionId, :timestamp)", nativeQuery = true)
+    void insert(@Param("key") String key,
+                @Param("transactionId") Long transactionId,
+                @Param("timestamp") LocalDateTime timestamp);
+}
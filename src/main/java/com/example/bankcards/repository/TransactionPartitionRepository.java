@@ -0,0 +1,107 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.repository.TransactionSegmentRepository.SegmentRow;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Обслуживание месячных секций transactions: секция transactions_pYYYYMM хранит переводы одного месяца
+@Repository
+@RequiredArgsConstructor
+public class TransactionPartitionRepository {
+
+    private static final String PARTITION_PREFIX = "transactions_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final String ARCHIVE_SCHEMA = "transactions_archive";
+    private static final int FETCH_SIZE = 5_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // В тестовой схеме, созданной Hibernate, таблица обычная — обслуживать нечего
+    public boolean isPartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt " +
+                        "JOIN pg_class c ON c.oid = pt.partrelid " +
+                        "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                        "WHERE c.relname = 'transactions' AND n.nspname = current_schema())",
+                Boolean.class));
+    }
+
+    public List<YearMonth> findPartitionMonths() {
+        return jdbcTemplate.queryForList(
+                        "SELECT c.relname FROM pg_inherits i " +
+                                "JOIN pg_class c ON c.oid = i.inhrelid " +
+                                "JOIN pg_class p ON p.oid = i.inhparent " +
+                                "JOIN pg_namespace n ON n.oid = p.relnamespace " +
+                                "WHERE p.relname = 'transactions' AND n.nspname = current_schema() " +
+                                "AND c.relname ~ '^transactions_p[0-9]{6}$'",
+                        String.class)
+                .stream()
+                .map(name -> YearMonth.parse(name.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX))
+                .sorted()
+                .toList();
+    }
+
+    public void createPartition(YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) +
+                " PARTITION OF transactions FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" +
+                month.plusMonths(1).atDay(1) + "')");
+    }
+
+    // Отцепленная секция переезжает в архивную схему целиком: строки не копируются и не удаляются
+    @Transactional
+    public void archivePartition(YearMonth month) {
+        jdbcTemplate.execute("ALTER TABLE transactions DETACH PARTITION " + partitionName(month));
+        jdbcTemplate.execute("ALTER TABLE " + partitionName(month) + " SET SCHEMA " + ARCHIVE_SCHEMA);
+    }
+
+    public void dropArchivedPartition(YearMonth month) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + ARCHIVE_SCHEMA + "." + partitionName(month));
+    }
+
+    // Переводы месяцев без своей секции лежат в transactions_default и в сегменты не попадают
+    public LocalDateTime findOldestDefaultTimestamp() {
+        return jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM transactions_default", LocalDateTime.class);
+    }
+
+    public long countRows(YearMonth month) {
+        Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + partitionName(month), Long.class);
+        return rows != null ? rows : 0;
+    }
+
+    // Обе стороны каждого перевода секции в порядке (card_id, timestamp, id) — в этом порядке их пишет сегмент.
+    // Курсор с fetch size работает только внутри транзакции, иначе драйвер прочитает месяц целиком
+    @Transactional(readOnly = true)
+    public void forEachSegmentRow(YearMonth month, Consumer<SegmentRow> consumer) {
+        String partition = partitionName(month);
+        String sql = "SELECT card_id, timestamp, id, amount, counterpart_card_id FROM (" +
+                "SELECT sender_card_id AS card_id, timestamp, id, -amount AS amount, " +
+                "receiver_card_id AS counterpart_card_id FROM " + partition + " " +
+                "UNION ALL " +
+                "SELECT receiver_card_id, timestamp, id, amount, sender_card_id FROM " + partition +
+                ") sides ORDER BY card_id, timestamp, id";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> consumer.accept(new SegmentRow(
+                resultSet.getLong("card_id"),
+                resultSet.getObject("timestamp", LocalDateTime.class),
+                resultSet.getLong("id"),
+                resultSet.getBigDecimal("amount").movePointRight(2).longValueExact(),
+                resultSet.getLong("counterpart_card_id"))));
+    }
+
+    private static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+}
@@ -1,18 +1,49 @@
 package com.example.bankcards.repository;
 
-import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.dto.TransactionDTO;
 import com.example.bankcards.entity.Transaction;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
-import java.util.Set;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
-    @Query("SELECT t FROM Transaction t " +
-            "WHERE t.senderCard IN :cards OR t.receiverCard IN :cards")
-    List<Transaction> findByUserCards(@Param("cards") Set<BankCard> cards);
+    // Запросы истории объявлены на Transaction (@NamedNativeQuery) и сразу строят TransactionDTO
+    // Все запросы истории несут границы по timestamp: по ним PostgreSQL отсекает месячные секции
+    List<TransactionDTO> findDtoPageByCards(@Param("cardIds") Collection<Long> cardIds,
+                                            @Param("from") LocalDateTime from,
+                                            @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                            @Param("beforeId") Long beforeId,
+                                            @Param("limit") int limit);
+
+    List<TransactionDTO> findDtosByUserIdSince(@Param("userId") Long userId,
+                                               @Param("from") LocalDateTime from,
+                                               @Param("limit") int limit);
+
+    // История пользователя для выгрузки: драйвер читает строки порциями по fetch size, а не весь результат разом.
+    // Стрим нужно закрыть внутри транзакции
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(name = "Transaction.findDtosByUserId")
+    Stream<TransactionDTO> streamDtosByUserId(@Param("userId") Long userId,
+                                              @Param("from") LocalDateTime from,
+                                              @Param("to") LocalDateTime to);
+
+    // Карта отправителя подгружается сразу: по ней проверяется владелец ключа.
+    // Время перевода берётся из таблицы ключей, поэтому читается одна секция
+    @Query("SELECT t FROM Transaction t JOIN FETCH t.senderCard, TransactionIdempotencyKey k " +
+            "WHERE k.key = :key AND t.id = k.transactionId AND t.timestamp = k.transactionTimestamp")
+    Optional<Transaction> findByIdempotencyKey(@Param("key") String idempotencyKey);
 }
\ No newline at end of file
@@ -0,0 +1,297 @@
+package com.example.bankcards.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// Переводы закрытых месяцев в файлах segment-YYYYMM.seg.
+// Файл: заголовок | блоки карт | индекс карт | хвост. Каждый перевод лежит в блоках обеих карт.
+// Блок карты — колонки времени, id, суммы и карты-корреспондента, строки по возрастанию (timestamp, id),
+// числа в varint: время и id — разностями от предыдущей строки. Индекс — записи фиксированной длины
+// (card_id, строк, смещение блока) по возрастанию card_id, поиск по нему идёт двоичным поиском в отображённом файле
+@Repository
+public class TransactionSegmentRepository {
+
+    private static final int MAGIC = 0x42545347;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int INDEX_ENTRY_BYTES = 20;
+    private static final int FOOTER_BYTES = 24;
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".seg";
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final Path directory;
+    private final Map<YearMonth, ByteBuffer> mapped = new ConcurrentHashMap<>();
+    // Список месяцев читается с диска один раз и сбрасывается, когда появляется новый сегмент
+    private volatile List<YearMonth> months;
+
+    public TransactionSegmentRepository(@Value("${transactions.archive.directory:data/transaction-segments}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    // Сторона перевода для одной карты: amountCents < 0 — карта была отправителем
+    public record SegmentRow(long cardId, LocalDateTime timestamp, long id, long amountCents, long counterpartCardId) {
+    }
+
+    public boolean exists(YearMonth month) {
+        return Files.exists(segmentPath(month));
+    }
+
+    // Месяцы с сегментами, от новых к старым
+    public List<YearMonth> findMonths() {
+        List<YearMonth> cached = months;
+        if (cached == null) {
+            cached = listMonths();
+            months = cached;
+        }
+        return cached;
+    }
+
+    private List<YearMonth> listMonths() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> YearMonth.parse(name.substring(PREFIX.length(), name.length() - SUFFIX.length()), MONTH_FORMAT))
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Строки должны приходить по возрастанию (card_id, timestamp, id)
+    public SegmentWriter openWriter(YearMonth month) throws IOException {
+        Files.createDirectories(directory);
+        return new SegmentWriter(month, Files.createTempFile(directory, PREFIX, ".tmp"));
+    }
+
+    public List<SegmentRow> findByCard(YearMonth month, long cardId) {
+        if (!exists(month)) {
+            return List.of();
+        }
+        ByteBuffer segment = mapped.computeIfAbsent(month, this::map);
+        int limit = segment.limit();
+        if (segment.getInt(limit - 4) != MAGIC) {
+            throw new IllegalStateException("Corrupted transaction segment " + segmentPath(month));
+        }
+        int indexOffset = (int) segment.getLong(limit - FOOTER_BYTES);
+        int cards = segment.getInt(limit - 16);
+
+        int low = 0;
+        int high = cards - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = indexOffset + middle * INDEX_ENTRY_BYTES;
+            long middleCardId = segment.getLong(entry);
+            if (middleCardId < cardId) {
+                low = middle + 1;
+            } else if (middleCardId > cardId) {
+                high = middle - 1;
+            } else {
+                return readBlock(segment, cardId, segment.getInt(entry + 8), (int) segment.getLong(entry + 12));
+            }
+        }
+        return List.of();
+    }
+
+    private List<SegmentRow> readBlock(ByteBuffer segment, long cardId, int rows, int offset) {
+        // Каждая колонка читается своим курсором; общий буфер между потоками не сдвигается
+        int timestampBytes = segment.getInt(offset);
+        int idBytes = segment.getInt(offset + 4);
+        int amountBytes = segment.getInt(offset + 8);
+        ByteBuffer timestamps = segment.duplicate().position(offset + 12);
+        ByteBuffer ids = segment.duplicate().position(offset + 12 + timestampBytes);
+        ByteBuffer amounts = segment.duplicate().position(offset + 12 + timestampBytes + idBytes);
+        ByteBuffer counterparts = segment.duplicate().position(offset + 12 + timestampBytes + idBytes + amountBytes);
+
+        List<SegmentRow> result = new ArrayList<>(rows);
+        long micros = 0;
+        long id = 0;
+        for (int i = 0; i < rows; i++) {
+            micros += readVarLong(timestamps);
+            id += readVarLong(ids);
+            result.add(new SegmentRow(cardId, fromMicros(micros), id, readVarLong(amounts),
+                    cardId + readVarLong(counterparts)));
+        }
+        return result;
+    }
+
+    private ByteBuffer map(YearMonth month) {
+        try (FileChannel channel = FileChannel.open(segmentPath(month), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Transaction segment is larger than 2 GB: " + segmentPath(month));
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path segmentPath(YearMonth month) {
+        return directory.resolve(PREFIX + month.format(MONTH_FORMAT) + SUFFIX);
+    }
+
+    private static long toMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + timestamp.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    // zigzag + varint: небольшие по модулю числа, в том числе отрицательные, занимают 1–3 байта
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.write((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.write((int) zigzag);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long zigzag = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = in.get();
+            zigzag |= (long) (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    // Пишет во временный файл; на место segment-YYYYMM.seg он встаёт только в commit()
+    public class SegmentWriter implements Closeable {
+
+        private final YearMonth month;
+        private final Path temp;
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream timestampColumn = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream idColumn = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream amountColumn = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream counterpartColumn = new ByteArrayOutputStream();
+        private long offset = HEADER_BYTES;
+        private long cardId;
+        private int blockRows;
+        private long previousMicros;
+        private long previousId;
+        private int cards;
+        private long rows;
+        private boolean committed;
+
+        private SegmentWriter(YearMonth month, Path temp) throws IOException {
+            this.month = month;
+            this.temp = temp;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(month.getYear() * 100 + month.getMonthValue());
+        }
+
+        public void append(SegmentRow row) {
+            try {
+                if (blockRows > 0 && row.cardId() != cardId) {
+                    flushBlock();
+                }
+                if (blockRows == 0) {
+                    cardId = row.cardId();
+                    previousMicros = 0;
+                    previousId = 0;
+                }
+                long micros = toMicros(row.timestamp());
+                writeVarLong(timestampColumn, micros - previousMicros);
+                writeVarLong(idColumn, row.id() - previousId);
+                writeVarLong(amountColumn, row.amountCents());
+                writeVarLong(counterpartColumn, row.counterpartCardId() - row.cardId());
+                previousMicros = micros;
+                previousId = row.id();
+                blockRows++;
+                rows++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public long rows() {
+            return rows;
+        }
+
+        public long commit() throws IOException {
+            if (blockRows > 0) {
+                flushBlock();
+            }
+            out.write(index.toByteArray());
+            out.writeLong(offset);
+            out.writeInt(cards);
+            out.writeLong(rows);
+            out.writeInt(MAGIC);
+            out.close();
+            mapped.remove(month);
+            Files.move(temp, segmentPath(month), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            months = null;
+            committed = true;
+            return rows;
+        }
+
+        private void flushBlock() throws IOException {
+            DataOutputStream entry = new DataOutputStream(index);
+            entry.writeLong(cardId);
+            entry.writeInt(blockRows);
+            entry.writeLong(offset);
+
+            out.writeInt(timestampColumn.size());
+            out.writeInt(idColumn.size());
+            out.writeInt(amountColumn.size());
+            timestampColumn.writeTo(out);
+            idColumn.writeTo(out);
+            amountColumn.writeTo(out);
+            counterpartColumn.writeTo(out);
+            offset += 12L + timestampColumn.size() + idColumn.size() + amountColumn.size() + counterpartColumn.size();
+
+            timestampColumn.reset();
+            idColumn.reset();
+            amountColumn.reset();
+            counterpartColumn.reset();
+            blockRows = 0;
+            cards++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                out.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
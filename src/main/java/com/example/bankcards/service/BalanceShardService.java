@@ -0,0 +1,15 @@
+package com.example.bankcards.service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+
+public interface BalanceShardService {
+    boolean credit(Long cardId, int shardCount, BigDecimal amount);
+    boolean debit(Long cardId, BigDecimal amount);
+    BigDecimal getShardedBalance(Long cardId);
+    // Суммы слотов нескольких карт одним запросом; карты без слотов в результат не попадают
+    Map<Long, BigDecimal> getShardedBalances(Collection<Long> cardIds);
+    void shard(Long cardId, int shardCount);
+    void merge(Long cardId);
+}
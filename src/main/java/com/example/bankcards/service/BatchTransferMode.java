@@ -0,0 +1,9 @@
+package com.example.bankcards.service;
+
+// Поведение пакета переводов при ошибке в одном из элементов
+public enum BatchTransferMode {
+    // Любая ошибка отменяет весь пакет
+    ALL_OR_NOTHING,
+    // Ошибочные элементы пропускаются, остальные выполняются
+    BEST_EFFORT
+}
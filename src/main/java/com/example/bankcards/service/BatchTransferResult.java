@@ -0,0 +1,33 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class BatchTransferResult {
+    private final int index;
+    private final Status status;
+    private final Transaction transaction;
+    private final String error;
+
+    // Исходная ошибка элемента: по ней движок группового коммита отдаёт вызывающему тот же тип исключения
+    private final RuntimeException failure;
+
+    public static BatchTransferResult succeeded(int index, Transaction transaction) {
+        return new BatchTransferResult(index, Status.SUCCEEDED, transaction, null, null);
+    }
+
+    public static BatchTransferResult failed(int index, RuntimeException failure) {
+        return new BatchTransferResult(index, Status.FAILED, null, failure.getMessage(), failure);
+    }
+
+    public static BatchTransferResult rolledBack(int index) {
+        return new BatchTransferResult(index, Status.ROLLED_BACK, null, "Batch was rolled back", null);
+    }
+
+    public enum Status {
+        SUCCEEDED, FAILED, ROLLED_BACK
+    }
+}
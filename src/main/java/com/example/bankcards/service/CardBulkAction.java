@@ -0,0 +1,5 @@
+package com.example.bankcards.service;
+
+public enum CardBulkAction {
+    BLOCK, ACTIVATE, DELETE
+}
@@ -0,0 +1,13 @@
+package com.example.bankcards.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// matched — сколько карт выбрано (id из списка или по фильтру), affected — сколько реально изменено.
+// Разница — карты, которых нет, уже в нужном статусе, истёкшие или (для удаления) с историей переводов
+@Getter
+@AllArgsConstructor
+public class CardBulkResult {
+    private final long matched;
+    private final long affected;
+}
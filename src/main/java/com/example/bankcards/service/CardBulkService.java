@@ -0,0 +1,8 @@
+package com.example.bankcards.service;
+
+import java.util.List;
+
+public interface CardBulkService {
+    // Ровно один источник карт: непустой список id или фильтр хотя бы с одним условием
+    CardBulkResult apply(CardBulkAction action, List<Long> cardIds, CardSearchFilter filter);
+}
@@ -0,0 +1,27 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.InvalidCursorException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Позиция в поиске карт: id последней отданной карты, для клиента — непрозрачная строка
+@Getter
+@AllArgsConstructor
+public class CardCursor {
+    private final Long id;
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CardCursor decode(String cursor) {
+        try {
+            return new CardCursor(Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidCursorException("Invalid pagination cursor");
+        }
+    }
+}
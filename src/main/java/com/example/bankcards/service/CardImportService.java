@@ -0,0 +1,13 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardImportEventDTO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public interface CardImportService {
+    // Выпускает карты из CSV userId,cardNumber,expiry по мере чтения; в report пишет NDJSON с ошибками строк,
+    // прогрессом после каждой пачки и итогом. Возвращает итог
+    CardImportEventDTO importCards(InputStream csv, OutputStream report) throws IOException;
+}
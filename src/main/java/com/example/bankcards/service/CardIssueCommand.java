@@ -0,0 +1,17 @@
+package com.example.bankcards.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+// Проверенная строка массового выпуска карт: номер уже зашифрован, слепой индекс посчитан
+@Getter
+@AllArgsConstructor
+public class CardIssueCommand {
+    private final Long userId;
+    private final String encryptedNumber;
+    private final String last4;
+    private final String numberHash;
+    private final LocalDate expiryDate;
+}
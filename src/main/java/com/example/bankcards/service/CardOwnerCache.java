@@ -0,0 +1,11 @@
+package com.example.bankcards.service;
+
+import java.util.Collection;
+import java.util.Optional;
+
+public interface CardOwnerCache {
+    // Владелец карты из памяти; промах читает только user_id карты
+    Optional<Long> findOwnerId(Long cardId);
+    // Записи удаляются после коммита текущей транзакции, без неё — сразу
+    void evict(Collection<Long> cardIds);
+}
@@ -0,0 +1,15 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+// Страница поиска карт; next == null — карт больше нет
+@Getter
+@AllArgsConstructor
+public class CardPage {
+    private final List<CardDTO> items;
+    private final String next;
+}
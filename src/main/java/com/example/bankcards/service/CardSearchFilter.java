@@ -0,0 +1,20 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BankCard;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Фильтр поиска карт администратором; null — условие не применяется, границы включаются
+@Getter
+@AllArgsConstructor
+public class CardSearchFilter {
+    private final BankCard.CardStatus status;
+    private final LocalDate expiresFrom;
+    private final LocalDate expiresTo;
+    private final BigDecimal minBalance;
+    private final BigDecimal maxBalance;
+    private final Long userId;
+}
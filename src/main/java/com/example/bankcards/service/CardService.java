@@ -5,16 +5,31 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface CardService {
     BankCard createCard(Long userId, String cardNumber, String expiryDate);
+    List<BankCard> issueCards(List<CardIssueCommand> commands);
     void blockCard(Long cardId);
     void activateCard(Long cardId);
     void deleteCard(Long cardId);
+    // Пачка id одной транзакцией без загрузки сущностей; результат — сколько карт изменено
+    int blockCards(Collection<Long> cardIds);
+    int activateCards(Collection<Long> cardIds);
+    int deleteCards(Collection<Long> cardIds);
     Page<BankCard> getUserCards(Long userId, Pageable pageable);
+    // Карты всех пользователей по фильтру, keyset-страницами по id
+    CardPage searchCards(CardSearchFilter filter, String cursor, int size);
     List<BankCard> getUserCardsForTransfer(Long userId);
     BankCard getCardById(Long cardId);
     BigDecimal getCardBalance(Long cardId);
     boolean isCardOwnedByUser(Long cardId, Long userId);
+    void shardBalance(Long cardId, int shardCount);
+    void mergeBalanceShards(Long cardId);
+    int backfillNumberColumns(List<Long> cardIds);
+    Optional<BankCard> findByCardNumber(String cardNumber);
+    int expireCards(LocalDate today, int limit);
 }
@@ -4,4 +4,7 @@ public interface EncryptionService {
     String encrypt(String data);
     String decrypt(String encryptedData);
     String maskCardNumber(String encryptedCardNumber);
+    String maskLast4(String last4);
+    // Слепой индекс номера карты: одинаковый номер всегда даёт одинаковое значение, обратно не восстанавливается
+    String blindIndex(String cardNumber);
 }
\ No newline at end of file
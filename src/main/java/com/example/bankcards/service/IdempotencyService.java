@@ -0,0 +1,10 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.dto.TransferRequest;
+
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+    TransactionDTO execute(Long userId, String idempotencyKey, TransferRequest request, Supplier<TransactionDTO> transfer);
+}
@@ -0,0 +1,13 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface LedgerService {
+    void record(List<Transaction> transactions);
+    BigDecimal getBalance(Long cardId, LocalDateTime at);
+    int refreshSnapshots();
+}
@@ -0,0 +1,10 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Transaction;
+
+import java.util.List;
+
+public interface OutboxService {
+    void enqueue(List<Transaction> transactions);
+    int relayBatch();
+}
@@ -0,0 +1,10 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.OutboxEvent;
+
+import java.util.List;
+
+// Куда релей отправляет события. Исключение из publish возвращает пачку в outbox для повторной отправки
+public interface OutboxSink {
+    void publish(List<OutboxEvent> events);
+}
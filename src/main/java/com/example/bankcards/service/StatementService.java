@@ -0,0 +1,12 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.CardMonthlyRollup;
+import com.example.bankcards.entity.Transaction;
+
+import java.util.List;
+
+public interface StatementService {
+    void record(List<Transaction> transactions);
+    List<CardMonthlyRollup> getStatements(Long cardId);
+    int rebuild(List<Long> cardIds);
+}
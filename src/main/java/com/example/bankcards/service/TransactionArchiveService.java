@@ -0,0 +1,23 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface TransactionArchiveService {
+    // Переписывает месяц из секции transactions в файл сегмента; возвращает число переводов
+    long archiveMonth(YearMonth month);
+    // Переводы раньше этой границы читаются только из сегментов, остальные — из таблицы
+    LocalDateTime archivedBefore();
+    // Сегментов нет: история целиком в таблице
+    boolean isEmpty();
+    // Все переводы карт из архива, от новых к старым. Месяцы читаются по одному по мере обхода потока
+    Stream<TransactionDTO> streamAll(Collection<Long> cardIds);
+    // Та же keyset-страница, что и в БД, но по сегментам архива; from == null — без нижней границы
+    List<TransactionDTO> findPage(Collection<Long> cardIds, LocalDateTime from,
+                                  LocalDateTime beforeTimestamp, long beforeId, int limit);
+}
@@ -0,0 +1,37 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.UnsupportedExportFormatException;
+
+import java.util.Locale;
+
+// Формат выгрузки истории переводов (параметр format в GET /api/transactions/export)
+public enum TransactionExportFormat {
+    // Заголовок и по строке на перевод
+    CSV("text/csv", "csv"),
+    // По JSON-объекту TransactionDTO на строку
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String contentType;
+    private final String extension;
+
+    TransactionExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static TransactionExportFormat fromValue(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedExportFormatException("Unsupported export format: " + value);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.bankcards.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface TransactionExportService {
+    // Пишет всю историю пользователя в out по мере чтения из БД; возвращает число выгруженных переводов
+    long export(Long userId, TransactionExportFormat format, OutputStream out) throws IOException;
+}
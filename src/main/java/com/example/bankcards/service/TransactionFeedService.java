@@ -0,0 +1,15 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Transaction;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+public interface TransactionFeedService {
+    // lastEventId != null — сначала досылаются переводы, пропущенные после этого события. Переводы на границе
+    // могут прийти повторно, клиент отбрасывает их по id. Если догрузить всё нельзя, приходит событие reset
+    SseEmitter subscribe(Long userId, String lastEventId);
+    // Переводы уходят подписчикам после коммита текущей транзакции; при откате — не уходят
+    void publishAfterCommit(Long userId, List<Transaction> transactions);
+    int sendHeartbeats();
+}
@@ -0,0 +1,15 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+// Страница истории; next == null — записей больше нет
+@Getter
+@AllArgsConstructor
+public class TransactionPage {
+    private final List<TransactionDTO> items;
+    private final String next;
+}
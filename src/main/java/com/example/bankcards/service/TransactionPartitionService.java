@@ -0,0 +1,11 @@
+package com.example.bankcards.service;
+
+import java.time.LocalDateTime;
+
+public interface TransactionPartitionService {
+    // Граница хранения: месяцы целиком старше неё уходят в архив при следующем проходе задачи.
+    // Читать историю по ней нельзя — что уже в архиве, знает TransactionArchiveService.archivedBefore
+    LocalDateTime retainedFrom();
+    int createFuturePartitions();
+    int archiveExpiredPartitions();
+}
@@ -1,11 +1,18 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.Transaction;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface TransactionService {
     Transaction transferBetweenOwnCards(Long senderCardId, Long receiverCardId, BigDecimal amount);
-    List<Transaction> getUserTransactions(Long userId);
+    Transaction transferBetweenOwnCards(Long userId, Long senderCardId, Long receiverCardId, BigDecimal amount);
+    Transaction transferBetweenOwnCards(Long userId, Long senderCardId, Long receiverCardId, BigDecimal amount,
+                                        String idempotencyKey);
+    List<BatchTransferResult> transferBatch(Long userId, List<TransferRequest> transfers, BatchTransferMode mode);
+    TransactionPage getUserTransactions(Long userId, Long cardId, LocalDateTime from, LocalDateTime to,
+                                        String cursor, int size);
 }
@@ -0,0 +1,17 @@
+package com.example.bankcards.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+// Перевод от имени пользователя: элемент пакета или заявка в очереди группового коммита
+@Getter
+@AllArgsConstructor
+public class TransferCommand {
+    private final Long userId;
+    private final Long senderCardId;
+    private final Long receiverCardId;
+    private final BigDecimal amount;
+    private final String idempotencyKey;
+}
@@ -0,0 +1,11 @@
+package com.example.bankcards.service;
+
+// Способ защиты балансов карт от параллельных переводов (свойство transfer.mode)
+public enum TransferMode {
+    // SELECT ... FOR UPDATE обеих карт в порядке возрастания id
+    PESSIMISTIC,
+    // Чтение без блокировок, конфликт ловится по колонке version и перевод повторяется
+    OPTIMISTIC,
+    // Условные UPDATE без загрузки сущностей: проверки баланса, статуса и владельца внутри WHERE
+    CONDITIONAL
+}
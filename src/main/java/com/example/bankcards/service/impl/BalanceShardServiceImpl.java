@@ -0,0 +1,122 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.CardBalanceShard;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.CardBalanceShardRepository;
+import com.example.bankcards.service.BalanceShardService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+// Баланс горячей карты = колонка bank_cards.balance + сумма слотов card_balance_shards
+@Service
+@RequiredArgsConstructor
+public class BalanceShardServiceImpl implements BalanceShardService {
+
+    private final BankCardRepository cardRepository;
+    private final CardBalanceShardRepository shardRepository;
+
+    @Override
+    @Transactional
+    public boolean credit(Long cardId, int shardCount, BigDecimal amount) {
+        int slot = ThreadLocalRandom.current().nextInt(shardCount);
+        return shardRepository.credit(cardId, slot, amount) > 0;
+    }
+
+    @Override
+    @Transactional
+    public boolean debit(Long cardId, BigDecimal amount) {
+        // Списания редки: блокируются строка карты и все слоты, затем остаток собирается по порядку
+        BankCard card = cardRepository.findByIdForUpdate(cardId)
+                .orElseThrow(() -> new IllegalArgumentException("Sender card not found"));
+        List<CardBalanceShard> shards = shardRepository.findAllByCardIdForUpdate(cardId);
+        BigDecimal total = shards.stream()
+                .map(CardBalanceShard::getBalance)
+                .reduce(card.getBalance(), BigDecimal::add);
+        if (total.compareTo(amount) < 0) {
+            return false;
+        }
+
+        BigDecimal remaining = amount;
+        BigDecimal fromCard = card.getBalance().min(remaining);
+        card.setBalance(card.getBalance().subtract(fromCard));
+        remaining = remaining.subtract(fromCard);
+        for (CardBalanceShard shard : shards) {
+            if (remaining.signum() == 0) {
+                break;
+            }
+            BigDecimal fromShard = shard.getBalance().min(remaining);
+            shard.setBalance(shard.getBalance().subtract(fromShard));
+            remaining = remaining.subtract(fromShard);
+        }
+        return true;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BigDecimal getShardedBalance(Long cardId) {
+        return shardRepository.sumBalance(cardId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Long, BigDecimal> getShardedBalances(Collection<Long> cardIds) {
+        if (cardIds.isEmpty()) {
+            return Map.of();
+        }
+        return shardRepository.sumBalances(cardIds).stream()
+                .collect(Collectors.toMap(CardBalanceShardRepository.ShardTotal::getCardId,
+                        CardBalanceShardRepository.ShardTotal::getBalance));
+    }
+
+    @Override
+    @Transactional
+    public void shard(Long cardId, int shardCount) {
+        // Деньги остаются в колонке: слоты создаются пустыми, поэтому переключение не меняет баланс
+        BankCard card = cardRepository.findByIdForUpdate(cardId)
+                .orElseThrow(() -> new IllegalArgumentException("Card not found"));
+        if (card.getShardCount() > 0) {
+            throw new CardOperationException("Card balance is already sharded");
+        }
+
+        List<CardBalanceShard> shards = new ArrayList<>(shardCount);
+        for (int slot = 0; slot < shardCount; slot++) {
+            shards.add(CardBalanceShard.builder()
+                    .card(card)
+                    .slot(slot)
+                    .balance(BigDecimal.ZERO)
+                    .build());
+        }
+        shardRepository.saveAll(shards);
+        card.setShardCount(shardCount);
+    }
+
+    @Override
+    @Transactional
+    public void merge(Long cardId) {
+        BankCard card = cardRepository.findByIdForUpdate(cardId)
+                .orElseThrow(() -> new IllegalArgumentException("Card not found"));
+        if (card.getShardCount() == 0) {
+            throw new CardOperationException("Card balance is not sharded");
+        }
+
+        // Блокировка слотов дожидается зачислений, уже попавших в слоты; следующие пойдут в колонку
+        List<CardBalanceShard> shards = shardRepository.findAllByCardIdForUpdate(cardId);
+        BigDecimal total = shards.stream()
+                .map(CardBalanceShard::getBalance)
+                .reduce(card.getBalance(), BigDecimal::add);
+        shardRepository.deleteAllInBatch(shards);
+        card.setBalance(total);
+        card.setShardCount(0);
+    }
+}
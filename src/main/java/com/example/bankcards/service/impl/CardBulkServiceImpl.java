@@ -0,0 +1,86 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.BankCardSpecifications;
+import com.example.bankcards.service.CardBulkAction;
+import com.example.bankcards.service.CardBulkResult;
+import com.example.bankcards.service.CardBulkService;
+import com.example.bankcards.service.CardSearchFilter;
+import com.example.bankcards.service.CardService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+// Каждая пачка — своя транзакция в CardService: блокировки строк короткие, сделанное не откатывается
+// из-за ошибки в последующей пачке
+@Slf4j
+@Service
+public class CardBulkServiceImpl implements CardBulkService {
+
+    private final CardService cardService;
+    private final BankCardRepository cardRepository;
+    private final int chunkSize;
+
+    public CardBulkServiceImpl(CardService cardService,
+                               BankCardRepository cardRepository,
+                               @Value("${cards.bulk.chunk-size:1000}") int chunkSize) {
+        this.cardService = cardService;
+        this.cardRepository = cardRepository;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public CardBulkResult apply(CardBulkAction action, List<Long> cardIds, CardSearchFilter filter) {
+        boolean byIds = cardIds != null && !cardIds.isEmpty();
+        boolean byFilter = filter != null && !isEmpty(filter);
+        if (byIds == byFilter) {
+            throw new CardOperationException("Specify either cardIds or at least one filter");
+        }
+        CardBulkResult result = byIds ? applyToIds(action, cardIds) : applyToFilter(action, filter);
+        log.info("Bulk {}: {} cards matched, {} changed", action, result.getMatched(), result.getAffected());
+        return result;
+    }
+
+    // Id сортируются: пачки идут по возрастанию, как и блокировки внутри пачки
+    private CardBulkResult applyToIds(CardBulkAction action, List<Long> cardIds) {
+        List<Long> ids = cardIds.stream().distinct().sorted().toList();
+        long affected = 0;
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            affected += execute(action, ids.subList(from, Math.min(from + chunkSize, ids.size())));
+        }
+        return new CardBulkResult(ids.size(), affected);
+    }
+
+    // Keyset по id: изменённые и удалённые карты не сдвигают следующую пачку
+    private CardBulkResult applyToFilter(CardBulkAction action, CardSearchFilter filter) {
+        long matched = 0;
+        long affected = 0;
+        Long afterId = Long.MIN_VALUE;
+        while (true) {
+            List<Long> ids = cardRepository.findIds(
+                    CardServiceImpl.toSpecification(filter).and(BankCardSpecifications.idAfter(afterId)), chunkSize);
+            if (ids.isEmpty()) {
+                return new CardBulkResult(matched, affected);
+            }
+            matched += ids.size();
+            affected += execute(action, ids);
+            afterId = ids.get(ids.size() - 1);
+        }
+    }
+
+    private int execute(CardBulkAction action, List<Long> ids) {
+        return switch (action) {
+            case BLOCK -> cardService.blockCards(ids);
+            case ACTIVATE -> cardService.activateCards(ids);
+            case DELETE -> cardService.deleteCards(ids);
+        };
+    }
+
+    private static boolean isEmpty(CardSearchFilter filter) {
+        return filter.getStatus() == null && filter.getExpiresFrom() == null && filter.getExpiresTo() == null
+                && filter.getMinBalance() == null && filter.getMaxBalance() == null && filter.getUserId() == null;
+    }
+}
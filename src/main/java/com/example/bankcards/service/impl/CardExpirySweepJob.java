@@ -0,0 +1,41 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.service.CardService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+// Перевод истёкших карт в EXPIRED пачками UPDATE, каждая — в своей транзакции.
+// Статус EXPIRED проставляется только здесь: загрузка карты ничего не меняет и не даёт лишних UPDATE при flush
+@Slf4j
+@Component
+public class CardExpirySweepJob {
+
+    private final CardService cardService;
+    private final int chunkSize;
+
+    public CardExpirySweepJob(CardService cardService,
+                              @Value("${cards.expiry.chunk-size:1000}") int chunkSize) {
+        this.cardService = cardService;
+        this.chunkSize = chunkSize;
+    }
+
+    // Первый проход — сразу после старта: так догоняются карты, истёкшие, пока приложение было остановлено
+    @Scheduled(fixedDelayString = "${cards.expiry.interval-ms:3600000}")
+    public int sweep() {
+        LocalDate today = LocalDate.now();
+        int total = 0;
+        int expired;
+        do {
+            expired = cardService.expireCards(today, chunkSize);
+            total += expired;
+        } while (expired == chunkSize);
+        if (total > 0) {
+            log.info("Cards expired: {}", total);
+        }
+        return total;
+    }
+}
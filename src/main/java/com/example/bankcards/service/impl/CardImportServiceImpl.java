@@ -0,0 +1,193 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardImportEventDTO;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardImportService;
+import com.example.bankcards.service.CardIssueCommand;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.EncryptionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Файл читается потоком и обрабатывается пачками: проверка строк, один запрос на владельцев пачки,
+// параллельное шифрование номеров, отсев дублей по слепому индексу и INSERT пачки в своей транзакции. Ошибка строки или пачки
+// попадает в отчёт и не останавливает загрузку остального файла
+@Slf4j
+@Service
+public class CardImportServiceImpl implements CardImportService {
+
+    private static final String CSV_HEADER_PREFIX = "userId";
+    // То же правило, что у CardCreateRequest
+    private static final Pattern CARD_NUMBER = Pattern.compile("\\d{16}");
+
+    private final CardService cardService;
+    private final UserRepository userRepository;
+    private final BankCardRepository cardRepository;
+    private final EncryptionService encryptionService;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public CardImportServiceImpl(CardService cardService,
+                                 UserRepository userRepository,
+                                 BankCardRepository cardRepository,
+                                 EncryptionService encryptionService,
+                                 ObjectMapper objectMapper,
+                                 @Value("${cards.import.chunk-size:1000}") int chunkSize) {
+        this.cardService = cardService;
+        this.userRepository = userRepository;
+        this.cardRepository = cardRepository;
+        this.encryptionService = encryptionService;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public CardImportEventDTO importCards(InputStream csv, OutputStream report) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8));
+        // Writer не закрываем: потоком ответа распоряжается контейнер сервлетов
+        Writer writer = new BufferedWriter(new OutputStreamWriter(report, StandardCharsets.UTF_8));
+        Counters counters = new Counters();
+        List<Row> chunk = new ArrayList<>(chunkSize);
+
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || lineNumber == 1 && line.startsWith(CSV_HEADER_PREFIX)) {
+                continue;
+            }
+            counters.processed++;
+            try {
+                chunk.add(parse(lineNumber, line));
+            } catch (IllegalArgumentException ex) {
+                fail(writer, counters, lineNumber, ex.getMessage());
+            }
+            if (chunk.size() == chunkSize) {
+                issue(chunk, writer, counters);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            issue(chunk, writer, counters);
+        }
+
+        CardImportEventDTO summary = CardImportEventDTO.progress(CardImportEventDTO.Type.SUMMARY,
+                counters.processed, counters.issued, counters.failed);
+        write(writer, summary);
+        writer.flush();
+        log.info("Card import finished: {} rows, {} issued, {} failed",
+                counters.processed, counters.issued, counters.failed);
+        return summary;
+    }
+
+    private Row parse(long lineNumber, String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 3) {
+            throw new IllegalArgumentException("Expected 3 columns: userId,cardNumber,expiry");
+        }
+        long userId;
+        try {
+            userId = Long.parseLong(fields[0].trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid userId");
+        }
+        String cardNumber = fields[1].trim();
+        if (!CARD_NUMBER.matcher(cardNumber).matches()) {
+            throw new IllegalArgumentException("Card number must be 16 digits");
+        }
+        return new Row(lineNumber, userId, cardNumber, CardServiceImpl.parseExpiryDate(fields[2].trim()));
+    }
+
+    private void issue(List<Row> chunk, Writer writer, Counters counters) throws IOException {
+        // Владельцы всей пачки проверяются одним запросом
+        Set<Long> userIds = new HashSet<>();
+        chunk.forEach(row -> userIds.add(row.userId()));
+        Set<Long> existing = new HashSet<>(userRepository.findExistingIds(userIds));
+        List<Row> valid = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            if (existing.contains(row.userId())) {
+                valid.add(row);
+            } else {
+                fail(writer, counters, row.line(), "User not found");
+            }
+        }
+
+        if (!valid.isEmpty()) {
+            List<Row> issued = valid;
+            try {
+                // Шифрование и слепой индекс — основная работа пачки, они идут на всех ядрах; порядок строк сохраняется
+                List<CardIssueCommand> commands = valid.parallelStream()
+                        .map(row -> new CardIssueCommand(row.userId(), encryptionService.encrypt(row.cardNumber()),
+                                row.cardNumber().substring(row.cardNumber().length() - 4),
+                                encryptionService.blindIndex(row.cardNumber()), row.expiryDate()))
+                        .toList();
+
+                // Дубли номеров: уже выпущенные — одним запросом по индексу, повторы внутри файла — по набору пачки
+                Set<String> taken = new HashSet<>(cardRepository.findExistingNumberHashes(
+                        commands.stream().map(CardIssueCommand::getNumberHash).toList()));
+                List<CardIssueCommand> unique = new ArrayList<>(commands.size());
+                issued = new ArrayList<>(commands.size());
+                for (int i = 0; i < commands.size(); i++) {
+                    if (taken.add(commands.get(i).getNumberHash())) {
+                        unique.add(commands.get(i));
+                        issued.add(valid.get(i));
+                    } else {
+                        fail(writer, counters, valid.get(i).line(), "Card with this number already exists");
+                    }
+                }
+                if (!unique.isEmpty()) {
+                    counters.issued += cardService.issueCards(unique).size();
+                }
+            } catch (RuntimeException ex) {
+                // Пачка откатилась целиком: в отчёт попадает каждая её строка
+                log.warn("Card import chunk failed", ex);
+                for (Row row : issued) {
+                    fail(writer, counters, row.line(), "Card was not issued: " + ex.getMessage());
+                }
+            }
+        }
+
+        write(writer, CardImportEventDTO.progress(CardImportEventDTO.Type.PROGRESS,
+                counters.processed, counters.issued, counters.failed));
+        // Клиент видит прогресс после каждой пачки, а не в конце файла
+        writer.flush();
+    }
+
+    private void fail(Writer writer, Counters counters, long line, String message) throws IOException {
+        counters.failed++;
+        write(writer, CardImportEventDTO.error(line, message));
+    }
+
+    private void write(Writer writer, CardImportEventDTO event) throws IOException {
+        writer.write(objectMapper.writeValueAsString(event));
+        writer.write('\n');
+    }
+
+    private record Row(long line, long userId, String cardNumber, LocalDate expiryDate) {
+    }
+
+    private static final class Counters {
+        private long processed;
+        private long issued;
+        private long failed;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.exception.TransferQueueFullException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Однописательные полосы: работа с одним ключом выполняется строго по очереди в своей полосе,
+// разные ключи идут параллельно. Поток полосы виртуальный, поэтому ожидание JDBC не держит поток ОС
+@Component
+@ConditionalOnProperty(name = "transfer.lanes.enabled", havingValue = "true")
+public class CardLaneExecutor {
+
+    private final ThreadPoolExecutor[] lanes;
+
+    public CardLaneExecutor(MeterRegistry meterRegistry,
+                            @Value("${transfer.lanes.count:64}") int laneCount,
+                            @Value("${transfer.lanes.queue-capacity:1000}") int queueCapacity) {
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity),
+                    Thread.ofVirtual().name("transfer-lane-" + i).factory());
+            lanes[i] = lane;
+            Gauge.builder("transfers.lane.queue.depth", lane, executor -> executor.getQueue().size())
+                    .description("Переводы, ожидающие своей очереди в полосе")
+                    .tag("lane", String.valueOf(i))
+                    .register(meterRegistry);
+        }
+    }
+
+    public <T> T execute(long key, Supplier<T> work) {
+        ThreadPoolExecutor lane = lanes[Math.floorMod(Long.hashCode(key), lanes.length)];
+        CompletableFuture<T> result;
+        try {
+            result = CompletableFuture.supplyAsync(work, lane);
+        } catch (RejectedExecutionException ex) {
+            throw new TransferQueueFullException("Transfer queue is full, please retry later");
+        }
+        try {
+            return result.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.service.CardService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Заполнение last4 и number_hash у карт, выпущенных до миграций 011 и 013: в Liquibase нет ключей,
+// поэтому номера расшифровывает приложение, один раз на обе колонки. Пачки идут параллельно, каждая —
+// отдельная транзакция; повторный запуск берёт только карты, где колонки ещё пусты.
+// Ошибка пачки не останавливает остальные и не роняет приложение: её карты возьмёт следующий запуск
+@Slf4j
+@Component
+public class CardNumberBackfillJob {
+
+    private final CardService cardService;
+    private final BankCardRepository cardRepository;
+    private final int chunkSize;
+    private final int parallelism;
+    private final boolean onStartup;
+
+    public CardNumberBackfillJob(CardService cardService,
+                                 BankCardRepository cardRepository,
+                                 @Value("${cards.number-backfill.chunk-size:500}") int chunkSize,
+                                 @Value("${cards.number-backfill.parallelism:4}") int parallelism,
+                                 @Value("${cards.number-backfill.on-startup:true}") boolean onStartup) {
+        this.cardService = cardService;
+        this.cardRepository = cardRepository;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.onStartup = onStartup;
+    }
+
+    // Заполнение идёт в фоне: приложение принимает запросы, не дожидаясь расшифровки всех карт
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (onStartup) {
+            Thread.ofPlatform().name("card-number-backfill").daemon().start(this::backfillAll);
+        }
+    }
+
+    public int backfillAll() {
+        List<Long> cardIds = cardRepository.findIdsWithoutNumberColumns();
+        if (cardIds.isEmpty()) {
+            return 0;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<Integer>> chunks = new ArrayList<>();
+            for (int from = 0; from < cardIds.size(); from += chunkSize) {
+                List<Long> chunk = cardIds.subList(from, Math.min(from + chunkSize, cardIds.size()));
+                chunks.add(executor.submit(() -> backfillChunk(chunk)));
+            }
+            int updated = 0;
+            int failed = 0;
+            for (Future<Integer> chunk : chunks) {
+                try {
+                    updated += chunk.get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    log.error("Card number backfill chunk failed", e.getCause());
+                }
+            }
+            log.info("Card number columns backfilled: {} cards, {} chunks failed", updated, failed);
+            // Без слепого индекса остаются только карты с номером, который уже есть у другой карты
+            List<Long> duplicates = cardRepository.findIdsWithoutNumberHash();
+            if (!duplicates.isEmpty()) {
+                log.warn("Cards share a number with another card and have no blind index: {}", duplicates);
+            }
+            return updated;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Card number backfill interrupted");
+            return 0;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // NOT EXISTS в setNumberColumns не видит незакоммиченный слепой индекс соседней пачки, поэтому два
+    // одинаковых номера в разных пачках упираются в ux_bank_cards_number_hash. Пачка откатывается целиком,
+    // и её карты повторяются по одной: к этому моменту дубль уже закоммичен, и карта остаётся без индекса
+    private int backfillChunk(List<Long> chunk) {
+        try {
+            return cardService.backfillNumberColumns(chunk);
+        } catch (DataIntegrityViolationException e) {
+            int updated = 0;
+            for (Long cardId : chunk) {
+                try {
+                    updated += cardService.backfillNumberColumns(List.of(cardId));
+                } catch (DataIntegrityViolationException ex) {
+                    log.warn("Card {} skipped by number backfill: {}", cardId, ex.getMostSpecificCause().getMessage());
+                }
+            }
+            return updated;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.service.CardOwnerCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class CardOwnerCacheImpl implements CardOwnerCache {
+
+    private final BankCardRepository cardRepository;
+    private final int maxSize;
+    private final long ttlNanos;
+
+    // card id -> владелец; владелец карты не меняется, поэтому запись устаревает только при удалении карты
+    private final Map<Long, CachedOwner> owners = new ConcurrentHashMap<>();
+    // Загрузки в порядке появления: при переполнении вытесняются самые давние
+    private final Queue<Loaded> loadOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger loadOrderSize = new AtomicInteger();
+    // Растёт при каждом удалении; промах, начавшийся до удаления, не кладёт прочитанного владельца в кэш
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public CardOwnerCacheImpl(BankCardRepository cardRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${cards.owner-cache.max-size:100000}") int maxSize,
+                              @Value("${cards.owner-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.cardRepository = cardRepository;
+        this.maxSize = maxSize;
+        this.ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+        Gauge.builder("cards.owner.cache.size", owners, Map::size)
+                .description("Карты, владелец которых сейчас в памяти")
+                .register(meterRegistry);
+        Gauge.builder("cards.owner.cache.ttl", () -> ttlSeconds)
+                .description("Через сколько секунд владелец карты перечитывается из БД")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.hits = Counter.builder("cards.owner.cache.gets")
+                .tag("result", "hit")
+                .description("Проверки владельца карты без обращения к БД")
+                .register(meterRegistry);
+        this.misses = Counter.builder("cards.owner.cache.gets")
+                .tag("result", "miss")
+                .description("Проверки владельца карты, прочитавшие его из БД")
+                .register(meterRegistry);
+        Gauge.builder("cards.owner.cache.hit.ratio", this, CardOwnerCacheImpl::hitRatio)
+                .description("Доля проверок владельца, отвеченных из памяти")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Optional<Long> findOwnerId(Long cardId) {
+        long now = System.nanoTime();
+        CachedOwner cached = owners.get(cardId);
+        if (cached != null && now - cached.loadedAt() < ttlNanos) {
+            hits.increment();
+            return Optional.of(cached.ownerId());
+        }
+
+        misses.increment();
+        long generation = evictions.get();
+        // Отсутствующая карта не запоминается: id с таким номером ещё может быть выпущен
+        Optional<Long> ownerId = cardRepository.findOwnerId(cardId);
+        if (ownerId.isEmpty()) {
+            owners.remove(cardId, cached);
+            return ownerId;
+        }
+        CachedOwner loaded = new CachedOwner(ownerId.get(), now);
+        // Проверка внутри compute: удаление сначала увеличивает счётчик, потом чистит запись,
+        // поэтому прочитанное до удаления либо не попадёт в кэш, либо будет удалено следом
+        CachedOwner stored = owners.compute(cardId,
+                (id, current) -> evictions.get() == generation ? loaded : current);
+        if (stored == loaded) {
+            loadOrder.add(new Loaded(cardId, loaded));
+            trim();
+        }
+        return ownerId;
+    }
+
+    @Override
+    public void evict(Collection<Long> cardIds) {
+        if (cardIds.isEmpty()) {
+            return;
+        }
+        List<Long> evicted = List.copyOf(cardIds);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            remove(evicted);
+            return;
+        }
+        // До коммита карта ещё видна другим транзакциям, и параллельная проверка вернула бы запись в кэш
+        remove(evicted);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                remove(evicted);
+            }
+        });
+    }
+
+    private void remove(Collection<Long> cardIds) {
+        evictions.incrementAndGet();
+        cardIds.forEach(owners::remove);
+    }
+
+    // Очередь может хранить уже удалённые или перечитанные записи, поэтому её размер ограничен отдельно
+    private void trim() {
+        loadOrderSize.incrementAndGet();
+        while (owners.size() > maxSize || loadOrderSize.get() > maxSize) {
+            Loaded eldest = loadOrder.poll();
+            if (eldest == null) {
+                return;
+            }
+            loadOrderSize.decrementAndGet();
+            owners.remove(eldest.cardId(), eldest.owner());
+        }
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private record CachedOwner(Long ownerId, long loadedAt) {
+    }
+
+    private record Loaded(Long cardId, CachedOwner owner) {
+    }
+}
@@ -1,21 +1,36 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.dto.CardDTO;
 import com.example.bankcards.entity.BankCard;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.exception.DuplicateCardNumberException;
 import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.BankCardSpecifications;
+import com.example.bankcards.repository.CardSearchRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.BalanceShardService;
+import com.example.bankcards.service.CardIssueCommand;
+import com.example.bankcards.service.CardCursor;
+import com.example.bankcards.service.CardOwnerCache;
+import com.example.bankcards.service.CardPage;
+import com.example.bankcards.service.CardSearchFilter;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.service.EncryptionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -24,33 +39,73 @@ public class CardServiceImpl implements CardService {
     private final BankCardRepository cardRepository;
     private final UserRepository userRepository;
     private final EncryptionService encryptionService;
+    private final BalanceShardService balanceShardService;
+    private final CardOwnerCache ownerCache;
+
+    @Value("${cards.search.max-size:100}")
+    private int maxSearchSize;
 
     @Override
     @Transactional
     public BankCard createCard(Long userId, String cardNumber, String expiryDate) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        LocalDate expiry = parseExpiryDate(expiryDate);
 
-        // Проверка формата даты (MM/yy)
-        if (!expiryDate.matches("\\d{2}/\\d{2}")) {
-            throw new IllegalArgumentException("Invalid expiry date format. Use MM/yy");
+        // Дубль номера — одна проба уникального индекса; одновременную вставку отсечёт сам индекс
+        String numberHash = encryptionService.blindIndex(cardNumber);
+        if (cardRepository.existsByNumberHash(numberHash)) {
+            throw new DuplicateCardNumberException("Card with this number already exists");
         }
 
-        // Преобразование в LocalDate
-        String[] parts = expiryDate.split("/");
-        int month = Integer.parseInt(parts[0]);
-        int year = 2000 + Integer.parseInt(parts[1]); // Преобразование YY в YYYY
-        LocalDate expiry = LocalDate.of(year, month, 1).plusMonths(1).minusDays(1);
-
         BankCard card = BankCard.builder()
                 .encryptedNumber(encryptionService.encrypt(cardNumber))
+                .last4(cardNumber.substring(cardNumber.length() - 4))
+                .numberHash(numberHash)
                 .expiryDate(expiry)
                 .status(BankCard.CardStatus.ACTIVE)
                 .balance(BigDecimal.ZERO)
                 .user(user)
                 .build();
 
-        return cardRepository.save(card);
+        BankCard saved = cardRepository.save(card);
+        ownerCache.evict(List.of(saved.getId()));
+        return saved;
+    }
+
+    // Владельцы проверены заранее, поэтому пользователи не загружаются; INSERT уходят JDBC-пакетами
+    @Override
+    @Transactional
+    public List<BankCard> issueCards(List<CardIssueCommand> commands) {
+        List<BankCard> cards = commands.stream()
+                .map(command -> BankCard.builder()
+                        .encryptedNumber(command.getEncryptedNumber())
+                        .last4(command.getLast4())
+                        .numberHash(command.getNumberHash())
+                        .expiryDate(command.getExpiryDate())
+                        .status(BankCard.CardStatus.ACTIVE)
+                        .balance(BigDecimal.ZERO)
+                        .user(userRepository.getReferenceById(command.getUserId()))
+                        .build())
+                .toList();
+        return cardRepository.saveAll(cards);
+    }
+
+    // Срок действия MM/yy — последний день месяца; те же правила у массового выпуска
+    static LocalDate parseExpiryDate(String expiryDate) {
+        // Проверка формата даты (MM/yy)
+        if (expiryDate == null || !expiryDate.matches("\\d{2}/\\d{2}")) {
+            throw new IllegalArgumentException("Invalid expiry date format. Use MM/yy");
+        }
+
+        // Преобразование в LocalDate
+        String[] parts = expiryDate.split("/");
+        int month = Integer.parseInt(parts[0]);
+        int year = 2000 + Integer.parseInt(parts[1]); // Преобразование YY в YYYY
+        if (month < 1 || month > 12) {
+            throw new IllegalArgumentException("Invalid expiry date format. Use MM/yy");
+        }
+        return LocalDate.of(year, month, 1).plusMonths(1).minusDays(1);
     }
 
     @Override
@@ -59,7 +114,7 @@ public class CardServiceImpl implements CardService {
         BankCard card = cardRepository.findById(cardId)
                 .orElseThrow(() -> new IllegalArgumentException("Card not found"));
 
-        if (card.getStatus() == BankCard.CardStatus.EXPIRED) {
+        if (card.getEffectiveStatus() == BankCard.CardStatus.EXPIRED) {
             throw new CardOperationException("Cannot block an expired card");
         }
 
@@ -87,6 +142,32 @@ public class CardServiceImpl implements CardService {
         BankCard card = cardRepository.findById(cardId)
                 .orElseThrow(() -> new IllegalArgumentException("Card not found"));
         cardRepository.delete(card);
+        ownerCache.evict(List.of(cardId));
+    }
+
+    @Override
+    @Transactional
+    public int blockCards(Collection<Long> cardIds) {
+        return cardRepository.blockAll(cardIds, LocalDate.now());
+    }
+
+    @Override
+    @Transactional
+    public int activateCards(Collection<Long> cardIds) {
+        return cardRepository.activateAll(cardIds, LocalDate.now());
+    }
+
+    @Override
+    @Transactional
+    public int deleteCards(Collection<Long> cardIds) {
+        List<Long> deletable = cardRepository.lockDeletableIds(cardIds);
+        if (deletable.isEmpty()) {
+            return 0;
+        }
+        cardRepository.deleteSnapshots(deletable);
+        int deleted = cardRepository.deleteAllByIds(deletable);
+        ownerCache.evict(deletable);
+        return deleted;
     }
 
     @Override
@@ -94,6 +175,65 @@ public class CardServiceImpl implements CardService {
         return cardRepository.findByUserId(userId, pageable);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CardPage searchCards(CardSearchFilter filter, String cursor, int size) {
+        Long afterId = cursor != null ? CardCursor.decode(cursor).getId() : Long.MIN_VALUE;
+        int limit = Math.max(1, Math.min(size, maxSearchSize));
+
+        // Лишняя строка показывает, есть ли следующая страница
+        List<CardSearchRepository.CardRow> rows = cardRepository.findRows(
+                toSpecification(filter).and(BankCardSpecifications.idAfter(afterId)), limit + 1);
+        // Слоты всех шардированных карт страницы читаются одним запросом
+        List<Long> shardedIds = rows.stream()
+                .limit(limit)
+                .filter(row -> row.shardCount() > 0)
+                .map(CardSearchRepository.CardRow::id)
+                .toList();
+        Map<Long, BigDecimal> shardTotals = balanceShardService.getShardedBalances(shardedIds);
+        List<CardDTO> items = rows.stream()
+                .limit(limit)
+                .map(row -> toDTO(row, shardTotals))
+                .toList();
+        String next = rows.size() > limit ? new CardCursor(items.get(limit - 1).getId()).encode() : null;
+        return new CardPage(items, next);
+    }
+
+    // Общие условия поиска и массовых операций по фильтру
+    static Specification<BankCard> toSpecification(CardSearchFilter filter) {
+        Specification<BankCard> specification = Specification.where(null);
+        if (filter.getStatus() != null) {
+            specification = specification.and(BankCardSpecifications.hasEffectiveStatus(filter.getStatus(), LocalDate.now()));
+        }
+        if (filter.getExpiresFrom() != null) {
+            specification = specification.and(BankCardSpecifications.expiresFrom(filter.getExpiresFrom()));
+        }
+        if (filter.getExpiresTo() != null) {
+            specification = specification.and(BankCardSpecifications.expiresTo(filter.getExpiresTo()));
+        }
+        if (filter.getMinBalance() != null || filter.getMaxBalance() != null) {
+            specification = specification.and(
+                    BankCardSpecifications.balanceBetween(filter.getMinBalance(), filter.getMaxBalance()));
+        }
+        if (filter.getUserId() != null) {
+            specification = specification.and(BankCardSpecifications.ownedBy(filter.getUserId()));
+        }
+        return specification;
+    }
+
+    // Маска из last4 без расшифровки; у карты, ещё не обработанной CardNumberBackfillJob, маски нет
+    private CardDTO toDTO(CardSearchRepository.CardRow row, Map<Long, BigDecimal> shardTotals) {
+        BankCard.CardStatus status = row.expiryDate().isBefore(LocalDate.now()) ? BankCard.CardStatus.EXPIRED : row.status();
+        return new CardDTO(
+                row.id(),
+                row.last4() != null ? encryptionService.maskLast4(row.last4()) : null,
+                row.expiryDate(),
+                status,
+                row.balance().add(shardTotals.getOrDefault(row.id(), BigDecimal.ZERO)),
+                row.userId()
+        );
+    }
+
     @Override
     public List<BankCard> getUserCardsForTransfer(Long userId) {
         return cardRepository.findActiveCardsByUser(
@@ -110,13 +250,50 @@ public class CardServiceImpl implements CardService {
 
     @Override
     public BigDecimal getCardBalance(Long cardId) {
-        return cardRepository.findById(cardId)
-                .map(BankCard::getBalance)
+        BankCard card = cardRepository.findById(cardId)
                 .orElseThrow(() -> new IllegalArgumentException("Card not found"));
+        // У шардированной карты к колонке добавляются слоты
+        return card.getShardCount() > 0
+                ? card.getBalance().add(balanceShardService.getShardedBalance(cardId))
+                : card.getBalance();
     }
 
     @Override
     public boolean isCardOwnedByUser(Long cardId, Long userId) {
-        return cardRepository.findByUserIdAndCardId(userId, cardId).isPresent();
+        return ownerCache.findOwnerId(cardId).map(userId::equals).orElse(false);
+    }
+
+    @Override
+    public void shardBalance(Long cardId, int shardCount) {
+        balanceShardService.shard(cardId, shardCount);
+    }
+
+    @Override
+    public void mergeBalanceShards(Long cardId) {
+        balanceShardService.merge(cardId);
+    }
+
+    @Override
+    @Transactional
+    public int expireCards(LocalDate today, int limit) {
+        return cardRepository.expireBefore(today, limit);
+    }
+
+    // Расшифровка нужна один раз на карту; читаются только id и шифротекст, сущности не загружаются
+    @Override
+    @Transactional
+    public int backfillNumberColumns(List<Long> cardIds) {
+        int updated = 0;
+        for (BankCardRepository.EncryptedNumber card : cardRepository.findEncryptedNumbersWithoutNumberColumns(cardIds)) {
+            String cardNumber = encryptionService.decrypt(card.getEncryptedNumber());
+            updated += cardRepository.setNumberColumns(card.getId(), cardNumber.substring(cardNumber.length() - 4),
+                    encryptionService.blindIndex(cardNumber));
+        }
+        return updated;
+    }
+
+    @Override
+    public Optional<BankCard> findByCardNumber(String cardNumber) {
+        return cardRepository.findByNumberHash(encryptionService.blindIndex(cardNumber));
     }
 }
@@ -6,31 +6,56 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.Security;
 import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 @Service
 public class EncryptionServiceImpl implements EncryptionService {
 
     private static final String ALGORITHM = "AES";
     private static final String TRANSFORMATION = "AES/ECB/PKCS5Padding";
+    private static final String BLIND_INDEX_ALGORITHM = "HmacSHA256";
 
     static {
         Security.addProvider(new BouncyCastleProvider());
     }
 
-    @Value("${encryption.secret-key}")
-    private String secretKey;
+    // Ключ строится один раз; развёртка ключа AES выполняется один раз на экземпляр Cipher при init
+    private final SecretKeySpec keySpec;
+    private final String provider;
+
+    // Cipher не потокобезопасен: экземпляр берётся из пула на одну операцию и возвращается после doFinal.
+    // Пул, а не ThreadLocal: виртуальный поток живёт один запрос, и ThreadLocal создавал бы Cipher на каждый
+    private final BlockingQueue<Cipher> encryptCiphers;
+    private final BlockingQueue<Cipher> decryptCiphers;
+
+    // Отдельный ключ: слепой индекс не раскрывает номер, даже если известен ключ шифрования, и наоборот
+    private final SecretKeySpec blindIndexKeySpec;
+    private final BlockingQueue<Mac> macs;
+
+    public EncryptionServiceImpl(@Value("${encryption.secret-key}") String secretKey,
+                                 @Value("${encryption.blind-index-key}") String blindIndexKey,
+                                 @Value("${encryption.provider:BC}") String provider,
+                                 @Value("${encryption.cipher-pool-size:64}") int poolSize) {
+        this.keySpec = new SecretKeySpec(secretKey.getBytes(), ALGORITHM);
+        this.blindIndexKeySpec = new SecretKeySpec(blindIndexKey.getBytes(StandardCharsets.UTF_8), BLIND_INDEX_ALGORITHM);
+        this.provider = provider;
+        this.encryptCiphers = new ArrayBlockingQueue<>(poolSize);
+        this.decryptCiphers = new ArrayBlockingQueue<>(poolSize);
+        this.macs = new ArrayBlockingQueue<>(poolSize);
+    }
 
     @Override
     public String encrypt(String data) {
         try {
-            SecretKeySpec keySpec = new SecretKeySpec(secretKey.getBytes(), ALGORITHM);
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION, "BC");
-            cipher.init(Cipher.ENCRYPT_MODE, keySpec);
-            byte[] encryptedBytes = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
+            byte[] encryptedBytes = doFinal(encryptCiphers, Cipher.ENCRYPT_MODE, data.getBytes(StandardCharsets.UTF_8));
             return Base64.getEncoder().encodeToString(encryptedBytes);
         } catch (Exception e) {
             throw new RuntimeException("Encryption failed", e);
@@ -40,11 +65,8 @@ public class EncryptionServiceImpl implements EncryptionService {
     @Override
     public String decrypt(String encryptedData) {
         try {
-            SecretKeySpec keySpec = new SecretKeySpec(secretKey.getBytes(), ALGORITHM);
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION, "BC");
-            cipher.init(Cipher.DECRYPT_MODE, keySpec);
             byte[] decodedBytes = Base64.getDecoder().decode(encryptedData);
-            byte[] decryptedBytes = cipher.doFinal(decodedBytes);
+            byte[] decryptedBytes = doFinal(decryptCiphers, Cipher.DECRYPT_MODE, decodedBytes);
             return new String(decryptedBytes, StandardCharsets.UTF_8);
         } catch (Exception e) {
             throw new RuntimeException("Decryption failed", e);
@@ -54,7 +76,43 @@ public class EncryptionServiceImpl implements EncryptionService {
     @Override
     public String maskCardNumber(String encryptedCardNumber) {
         String fullCardNumber = decrypt(encryptedCardNumber);
+        return maskLast4(fullCardNumber.substring(fullCardNumber.length() - 4));
+    }
+
+    @Override
+    public String maskLast4(String last4) {
         // Маскируем все цифры, кроме последних 4
-        return "**** **** **** " + fullCardNumber.substring(fullCardNumber.length() - 4);
+        return "**** **** **** " + last4;
+    }
+
+    @Override
+    public String blindIndex(String cardNumber) {
+        try {
+            // Mac, как и Cipher, берётся из пула; doFinal сбрасывает его для следующего номера
+            Mac mac = macs.poll();
+            if (mac == null) {
+                mac = Mac.getInstance(BLIND_INDEX_ALGORITHM);
+                mac.init(blindIndexKeySpec);
+            }
+            byte[] digest = mac.doFinal(cardNumber.getBytes(StandardCharsets.UTF_8));
+            macs.offer(mac);
+            return HexFormat.of().formatHex(digest);
+        } catch (Exception e) {
+            throw new RuntimeException("Blind index failed", e);
+        }
+    }
+
+    // doFinal возвращает Cipher в состояние после init, поэтому в ECB без IV его можно сразу переиспользовать.
+    // Пустой пул не ждёт: создаётся новый экземпляр, лишние при возврате отбрасываются
+    private byte[] doFinal(BlockingQueue<Cipher> pool, int mode, byte[] input) throws GeneralSecurityException {
+        Cipher cipher = pool.poll();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(TRANSFORMATION, provider);
+            cipher.init(mode, keySpec);
+        }
+        // После исключения состояние Cipher не определено, такой экземпляр в пул не возвращается
+        byte[] output = cipher.doFinal(input);
+        pool.offer(cipher);
+        return output;
     }
 }
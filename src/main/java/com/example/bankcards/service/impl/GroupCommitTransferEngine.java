@@ -0,0 +1,148 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.TransferException;
+import com.example.bankcards.exception.TransferQueueFullException;
+import com.example.bankcards.service.BatchTransferResult;
+import com.example.bankcards.service.TransferCommand;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+// Групповой коммит: переводы копятся в очереди и проводятся пачкой в одной транзакции БД
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transfer.group-commit.enabled", havingValue = "true")
+public class GroupCommitTransferEngine {
+
+    private final TransactionServiceImpl delegate;
+    private final long flushWindowMs;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingTransfer> queue;
+    private final DistributionSummary groupSize;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public GroupCommitTransferEngine(TransactionServiceImpl delegate,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${transfer.group-commit.flush-window-ms:5}") long flushWindowMs,
+                                     @Value("${transfer.group-commit.max-batch-size:100}") int maxBatchSize,
+                                     @Value("${transfer.group-commit.queue-capacity:10000}") int queueCapacity) {
+        this.delegate = delegate;
+        this.flushWindowMs = flushWindowMs;
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.groupSize = DistributionSummary.builder("transfers.group.size")
+                .description("Число переводов в одном групповом коммите")
+                .register(meterRegistry);
+        meterRegistry.gauge("transfers.group.queue.depth", queue, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        flusher = new Thread(this::drainLoop, "transfer-group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(5));
+        // Заявки, не попавшие в группу, не должны зависнуть навсегда
+        PendingTransfer pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.completeExceptionally(new TransferQueueFullException("Transfer engine is shutting down"));
+        }
+    }
+
+    public Transaction transfer(TransferCommand command) {
+        PendingTransfer pending = new PendingTransfer(command, new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            throw new TransferQueueFullException("Transfer queue is full, please retry later");
+        }
+        try {
+            return pending.result.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private void drainLoop() {
+        List<PendingTransfer> group = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                // Окно группы открывается первой заявкой и закрывается по времени или по размеру
+                group.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushWindowMs);
+                while (group.size() < maxBatchSize) {
+                    PendingTransfer next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                if (group.isEmpty()) {
+                    break;
+                }
+            }
+            flush(group);
+            group.clear();
+        }
+    }
+
+    private void flush(List<PendingTransfer> group) {
+        groupSize.record(group.size());
+        List<BatchTransferResult> results;
+        try {
+            results = delegate.transferGroup(group.stream().map(PendingTransfer::command).toList());
+        } catch (RuntimeException ex) {
+            // Группа откатилась целиком (например, дубль ключа идемпотентности) — проводим заявки по одной
+            log.warn("Group commit of {} transfers failed, falling back to single transfers", group.size(), ex);
+            group.forEach(this::transferAlone);
+            return;
+        }
+        for (BatchTransferResult result : results) {
+            PendingTransfer pending = group.get(result.getIndex());
+            if (result.getStatus() == BatchTransferResult.Status.SUCCEEDED) {
+                pending.result.complete(result.getTransaction());
+            } else {
+                pending.result.completeExceptionally(result.getFailure() != null
+                        ? result.getFailure() : new TransferException(result.getError()));
+            }
+        }
+    }
+
+    private void transferAlone(PendingTransfer pending) {
+        TransferCommand command = pending.command;
+        try {
+            pending.result.complete(delegate.transferBetweenOwnCards(command.getUserId(), command.getSenderCardId(),
+                    command.getReceiverCardId(), command.getAmount(), command.getIdempotencyKey()));
+        } catch (RuntimeException ex) {
+            pending.result.completeExceptionally(ex);
+        }
+    }
+
+    private record PendingTransfer(TransferCommand command, CompletableFuture<Transaction> result) {
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.IdempotencyKeyConflictException;
+import com.example.bankcards.exception.TransferException;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.service.IdempotencyService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final TransactionRepository transactionRepository;
+
+    // LRU недавних ключей: повтор отвечается без обращения к БД
+    private final Map<String, CachedTransfer> recentTransfers;
+
+    // Переводы, которые выполняются прямо сейчас: дубликаты ждут их результата
+    private final ConcurrentMap<String, CompletableFuture<CachedTransfer>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyServiceImpl(TransactionRepository transactionRepository,
+                                  @Value("${transfer.idempotency.cache-size:10000}") int cacheSize) {
+        this.transactionRepository = transactionRepository;
+        this.recentTransfers = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedTransfer> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    @Override
+    public TransactionDTO execute(Long userId, String idempotencyKey, TransferRequest request,
+                                  Supplier<TransactionDTO> transfer) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new TransferException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters long");
+        }
+
+        TransactionDTO replay = findCached(userId, idempotencyKey, request);
+        if (replay != null) {
+            return replay;
+        }
+
+        CompletableFuture<CachedTransfer> execution = new CompletableFuture<>();
+        CompletableFuture<CachedTransfer> running = inFlight.putIfAbsent(idempotencyKey, execution);
+        if (running != null) {
+            CachedTransfer result = await(running);
+            checkOwner(result.userId(), userId);
+            checkSameTransfer(result.transaction(), request);
+            return result.transaction();
+        }
+
+        try {
+            CachedTransfer result = executeOnce(userId, idempotencyKey, request, transfer);
+            execution.complete(result);
+            return result.transaction();
+        } catch (RuntimeException ex) {
+            execution.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(idempotencyKey, execution);
+        }
+    }
+
+    private CachedTransfer executeOnce(Long userId, String idempotencyKey, TransferRequest request,
+                                       Supplier<TransactionDTO> transfer) {
+        // Между проверкой кэша и регистрацией в inFlight предыдущий запрос мог завершиться
+        TransactionDTO replay = findCached(userId, idempotencyKey, request);
+        if (replay == null) {
+            replay = findStored(userId, idempotencyKey, request);
+        }
+        if (replay != null) {
+            return new CachedTransfer(userId, replay);
+        }
+
+        TransactionDTO result;
+        try {
+            result = transfer.get();
+        } catch (DataIntegrityViolationException ex) {
+            // Тот же ключ успел записать другой экземпляр приложения
+            result = findStored(userId, idempotencyKey, request);
+            if (result == null) {
+                throw ex;
+            }
+            return new CachedTransfer(userId, result);
+        }
+        CachedTransfer executed = new CachedTransfer(userId, result);
+        remember(idempotencyKey, executed);
+        return executed;
+    }
+
+    private TransactionDTO findCached(Long userId, String idempotencyKey, TransferRequest request) {
+        CachedTransfer cached;
+        synchronized (recentTransfers) {
+            cached = recentTransfers.get(idempotencyKey);
+        }
+        if (cached == null) {
+            return null;
+        }
+        checkOwner(cached.userId(), userId);
+        checkSameTransfer(cached.transaction(), request);
+        return cached.transaction();
+    }
+
+    private TransactionDTO findStored(Long userId, String idempotencyKey, TransferRequest request) {
+        Transaction stored = transactionRepository.findByIdempotencyKey(idempotencyKey).orElse(null);
+        if (stored == null) {
+            return null;
+        }
+        Long ownerId = stored.getSenderCard().getUser().getId();
+        checkOwner(ownerId, userId);
+
+        TransactionDTO result = new TransactionDTO(
+                stored.getId(),
+                stored.getAmount(),
+                stored.getTimestamp(),
+                stored.getSenderCard().getId(),
+                stored.getReceiverCard().getId()
+        );
+        checkSameTransfer(result, request);
+        remember(idempotencyKey, new CachedTransfer(ownerId, result));
+        return result;
+    }
+
+    private void remember(String idempotencyKey, CachedTransfer transfer) {
+        synchronized (recentTransfers) {
+            recentTransfers.put(idempotencyKey, transfer);
+        }
+    }
+
+    private void checkOwner(Long ownerId, Long userId) {
+        if (!ownerId.equals(userId)) {
+            throw new IdempotencyKeyConflictException("Idempotency-Key is already used by another client");
+        }
+    }
+
+    private void checkSameTransfer(TransactionDTO transaction, TransferRequest request) {
+        if (!transaction.getSenderCardId().equals(request.getFromCardId())
+                || !transaction.getReceiverCardId().equals(request.getToCardId())
+                || transaction.getAmount().compareTo(request.getAmount()) != 0) {
+            throw new IdempotencyKeyConflictException("Idempotency-Key is already used for a different transfer");
+        }
+    }
+
+    private CachedTransfer await(CompletableFuture<CachedTransfer> running) {
+        try {
+            return running.join();
+        } catch (CompletionException ex) {
+            // Дубликат получает ту же ошибку, что и исходный запрос
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private record CachedTransfer(Long userId, TransactionDTO transaction) {
+    }
+}
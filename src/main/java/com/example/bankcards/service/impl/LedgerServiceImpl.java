@@ -0,0 +1,68 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.entity.LedgerEntry;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.repository.BalanceSnapshotRepository;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import com.example.bankcards.service.LedgerService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class LedgerServiceImpl implements LedgerService {
+
+    private final LedgerEntryRepository entryRepository;
+    private final BalanceSnapshotRepository snapshotRepository;
+
+    @Override
+    @Transactional
+    public void record(List<Transaction> transactions) {
+        List<LedgerEntry> entries = new ArrayList<>(transactions.size() * 2);
+        for (Transaction transaction : transactions) {
+            entries.add(LedgerEntry.builder()
+                    .transaction(transaction)
+                    .card(transaction.getSenderCard())
+                    .type(LedgerEntry.EntryType.DEBIT)
+                    .amount(transaction.getAmount().negate())
+                    .build());
+            entries.add(LedgerEntry.builder()
+                    .transaction(transaction)
+                    .card(transaction.getReceiverCard())
+                    .type(LedgerEntry.EntryType.CREDIT)
+                    .amount(transaction.getAmount())
+                    .build());
+        }
+        entryRepository.saveAll(entries);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BigDecimal getBalance(Long cardId, LocalDateTime at) {
+        // Баланс на момент at: ближайший снимок не позже at плюс проводки между ними
+        return snapshotRepository.findFirstByCardIdAndAsOfLessThanEqualOrderByTxHorizonDesc(cardId, at)
+                .map(snapshot -> snapshot.getBalance()
+                        .add(entryRepository.sumSince(cardId, snapshot.getTxHorizon(), at)))
+                .orElseGet(() -> entryRepository.sumUpTo(cardId, at));
+    }
+
+    @Override
+    @Transactional
+    public int refreshSnapshots() {
+        // Граница снимка — по завершённым транзакциям БД, а не по времени создания проводки: перевод,
+        // закоммиченный долго после своего created_at, войдёт в следующий снимок. Строки журнала не меняются
+        snapshotRepository.lockForRefresh();
+        long fromTx = snapshotRepository.findLatestTxHorizon();
+        long horizon = snapshotRepository.findCompletedTxHorizon();
+        if (horizon <= fromTx) {
+            return 0;
+        }
+        return snapshotRepository.insertSnapshots(fromTx, horizon);
+    }
+}
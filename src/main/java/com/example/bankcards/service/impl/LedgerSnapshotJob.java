@@ -0,0 +1,21 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.service.LedgerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LedgerSnapshotJob {
+
+    private final LedgerService ledgerService;
+
+    @Scheduled(fixedDelayString = "${ledger.snapshot.interval-ms:60000}")
+    public void refreshSnapshots() {
+        int snapshots = ledgerService.refreshSnapshots();
+        log.debug("Ledger snapshot refresh: {} card balances captured", snapshots);
+    }
+}
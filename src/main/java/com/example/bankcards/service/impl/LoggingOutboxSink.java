@@ -0,0 +1,24 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.entity.OutboxEvent;
+import com.example.bankcards.service.OutboxSink;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Приёмник по умолчанию: пишет события в лог на уровне DEBUG. Брокер подключается своей реализацией OutboxSink и outbox.sink
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "outbox.sink", havingValue = "log", matchIfMissing = true)
+public class LoggingOutboxSink implements OutboxSink {
+
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            log.debug("{}: transaction {} from card {} to card {}, amount {}", event.getType(),
+                    event.getTransactionId(), event.getSenderCardId(), event.getReceiverCardId(), event.getAmount());
+        }
+    }
+}
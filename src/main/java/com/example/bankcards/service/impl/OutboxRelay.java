@@ -0,0 +1,29 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.service.OutboxService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OutboxRelay {
+
+    private final OutboxService outboxService;
+
+    // Пачки разбираются подряд, пока очередь не опустеет; каждая — в своей транзакции.
+    // Размер пачки задаёт OutboxServiceImpl, пустой ответ означает, что очередь разобрана
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:200}")
+    public void relay() {
+        try {
+            int published;
+            do {
+                published = outboxService.relayBatch();
+            } while (published > 0);
+        } catch (RuntimeException ex) {
+            log.warn("Outbox relay failed, events will be retried", ex);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.entity.OutboxEvent;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.repository.OutboxEventRepository;
+import com.example.bankcards.service.OutboxService;
+import com.example.bankcards.service.OutboxSink;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+public class OutboxServiceImpl implements OutboxService {
+
+    private final OutboxEventRepository outboxRepository;
+    private final OutboxSink sink;
+    private final int batchSize;
+    private final Counter publishedCounter;
+    private final Timer lagTimer;
+
+    public OutboxServiceImpl(OutboxEventRepository outboxRepository,
+                             OutboxSink sink,
+                             MeterRegistry meterRegistry,
+                             @Value("${outbox.relay.batch-size:500}") int batchSize) {
+        this.outboxRepository = outboxRepository;
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.publishedCounter = Counter.builder("outbox.relay.published")
+                .description("События, отправленные релеем")
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("outbox.relay.lag")
+                .description("Время от записи события в outbox до его отправки")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @Override
+    @Transactional
+    public void enqueue(List<Transaction> transactions) {
+        outboxRepository.saveAll(transactions.stream()
+                .map(transaction -> OutboxEvent.builder()
+                        .type(OutboxEvent.EventType.TRANSFER_COMPLETED)
+                        .transactionId(transaction.getId())
+                        .senderCardId(transaction.getSenderCard().getId())
+                        .receiverCardId(transaction.getReceiverCard().getId())
+                        .amount(transaction.getAmount())
+                        .build())
+                .toList());
+    }
+
+    @Override
+    @Transactional
+    public int relayBatch() {
+        List<OutboxEvent> events = outboxRepository.lockNextBatch(batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        // Доставка «хотя бы один раз»: строки удаляются только после успешной отправки
+        sink.publish(events);
+        outboxRepository.deleteAllByIdInBatch(events.stream().map(OutboxEvent::getId).toList());
+
+        LocalDateTime now = LocalDateTime.now();
+        for (OutboxEvent event : events) {
+            lagTimer.record(Duration.between(event.getCreatedAt(), now));
+        }
+        publishedCounter.increment(events.size());
+        return events.size();
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.ConcurrentTransferException;
+import com.example.bankcards.service.BatchTransferMode;
+import com.example.bankcards.service.BatchTransferResult;
+import com.example.bankcards.service.CardOwnerCache;
+import com.example.bankcards.service.TransactionPage;
+import com.example.bankcards.service.TransactionService;
+import com.example.bankcards.service.TransferCommand;
+import com.example.bankcards.service.TransferMode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.OptimisticLockException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+// Обёртка над TransactionServiceImpl: повторяет перевод при конфликте версий и пишет метрики.
+// При включённом групповом коммите переводы пользователя уходят через GroupCommitTransferEngine,
+// при включённых полосах — переводы и пакеты выполняются в полосе CardLaneExecutor по владельцу карт
+@Slf4j
+@Primary
+@Service
+public class RetryingTransactionService implements TransactionService {
+
+    private final TransactionServiceImpl delegate;
+    private final GroupCommitTransferEngine groupCommitEngine;
+    private final CardLaneExecutor laneExecutor;
+    private final CardOwnerCache ownerCache;
+    private final Map<TransferMode, Timer> latencyTimers = new EnumMap<>(TransferMode.class);
+    private final Counter conflictCounter;
+    private final Counter retryCounter;
+    private final Counter exhaustedCounter;
+
+    @Value("${transfer.retry.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${transfer.retry.backoff-ms:10}")
+    private long backoffMs = 10;
+
+    public RetryingTransactionService(TransactionServiceImpl delegate, MeterRegistry meterRegistry,
+                                      Optional<GroupCommitTransferEngine> groupCommitEngine,
+                                      Optional<CardLaneExecutor> laneExecutor,
+                                      CardOwnerCache ownerCache) {
+        this.delegate = delegate;
+        this.groupCommitEngine = groupCommitEngine.orElse(null);
+        this.laneExecutor = laneExecutor.orElse(null);
+        this.ownerCache = ownerCache;
+        for (TransferMode mode : TransferMode.values()) {
+            latencyTimers.put(mode, Timer.builder("transfers.latency")
+                    .description("Время перевода с учётом повторов")
+                    .tag("mode", mode.name().toLowerCase())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+        }
+        this.conflictCounter = Counter.builder("transfers.optimistic.conflicts")
+                .description("Конфликты версий при переводах")
+                .register(meterRegistry);
+        this.retryCounter = Counter.builder("transfers.retries")
+                .description("Повторные попытки переводов")
+                .register(meterRegistry);
+        this.exhaustedCounter = Counter.builder("transfers.retries.exhausted")
+                .description("Переводы, отклонённые после исчерпания попыток")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Transaction transferBetweenOwnCards(Long senderCardId, Long receiverCardId, BigDecimal amount) {
+        // Владелец здесь не передан: полоса выбирается по владельцу карты отправителя, как у остальных переводов;
+        // для несуществующей карты полосы нет — перевод сразу завершится ошибкой
+        Long ownerId = laneExecutor != null ? ownerCache.findOwnerId(senderCardId).orElse(null) : null;
+        return timed(ownerId, () ->
+                withRetry(() -> delegate.transferBetweenOwnCards(senderCardId, receiverCardId, amount)));
+    }
+
+    @Override
+    public Transaction transferBetweenOwnCards(Long userId, Long senderCardId, Long receiverCardId, BigDecimal amount) {
+        return timed(userId, () -> {
+            if (groupCommitEngine != null) {
+                return groupCommitEngine.transfer(new TransferCommand(userId, senderCardId, receiverCardId, amount, null));
+            }
+            return withRetry(() -> delegate.transferBetweenOwnCards(userId, senderCardId, receiverCardId, amount));
+        });
+    }
+
+    @Override
+    public Transaction transferBetweenOwnCards(Long userId, Long senderCardId, Long receiverCardId, BigDecimal amount,
+                                               String idempotencyKey) {
+        return timed(userId, () -> {
+            if (groupCommitEngine != null) {
+                return groupCommitEngine.transfer(
+                        new TransferCommand(userId, senderCardId, receiverCardId, amount, idempotencyKey));
+            }
+            return withRetry(() -> delegate.transferBetweenOwnCards(
+                    userId, senderCardId, receiverCardId, amount, idempotencyKey));
+        });
+    }
+
+    @Override
+    public List<BatchTransferResult> transferBatch(Long userId, List<TransferRequest> transfers, BatchTransferMode mode) {
+        // Пакет выполняется под блокировками и конфликтов версий не даёт, но пишет в те же карты, что и одиночные переводы
+        return inLane(userId, () -> delegate.transferBatch(userId, transfers, mode));
+    }
+
+    @Override
+    public TransactionPage getUserTransactions(Long userId, Long cardId, LocalDateTime from, LocalDateTime to,
+                                               String cursor, int size) {
+        return delegate.getUserTransactions(userId, cardId, from, to, cursor, size);
+    }
+
+    private Transaction timed(Long ownerId, Supplier<Transaction> transfer) {
+        Timer.Sample sample = Timer.start();
+        try {
+            return inLane(ownerId, transfer);
+        } finally {
+            sample.stop(latencyTimers.get(delegate.getMode()));
+        }
+    }
+
+    // Обе карты перевода принадлежат одному владельцу, поэтому полоса по владельцу сериализует все записи в эти карты
+    private <T> T inLane(Long ownerId, Supplier<T> work) {
+        return laneExecutor != null && ownerId != null ? laneExecutor.execute(ownerId, work) : work.get();
+    }
+
+    private Transaction withRetry(Supplier<Transaction> attempt) {
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            try {
+                return attempt.get();
+            } catch (OptimisticLockingFailureException | OptimisticLockException ex) {
+                conflictCounter.increment();
+                if (attemptNumber >= maxAttempts) {
+                    exhaustedCounter.increment();
+                    throw new ConcurrentTransferException("Card was modified concurrently, please retry the transfer");
+                }
+                retryCounter.increment();
+                log.debug("Optimistic conflict on transfer, retry {}/{}", attemptNumber, maxAttempts - 1);
+                backOff(attemptNumber);
+            }
+        }
+    }
+
+    private void backOff(int attemptNumber) {
+        // Full jitter: случайная пауза в пределах экспоненциально растущего окна
+        long window = backoffMs << (attemptNumber - 1);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(window + 1));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrentTransferException("Transfer retry was interrupted");
+        }
+    }
+}
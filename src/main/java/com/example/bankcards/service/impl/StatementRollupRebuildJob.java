@@ -0,0 +1,73 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.service.StatementService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Пересчёт месячных итогов по всей истории: карты делятся на пачки, каждая пачка — отдельная транзакция.
+// Повторный запуск безопасен: итоги пачки удаляются и строятся заново
+@Slf4j
+@Component
+public class StatementRollupRebuildJob {
+
+    private final StatementService statementService;
+    private final BankCardRepository cardRepository;
+    private final int chunkSize;
+    private final int parallelism;
+    private final boolean onStartup;
+
+    public StatementRollupRebuildJob(StatementService statementService,
+                                     BankCardRepository cardRepository,
+                                     @Value("${statements.rebuild.chunk-size:500}") int chunkSize,
+                                     @Value("${statements.rebuild.parallelism:4}") int parallelism,
+                                     @Value("${statements.rebuild.on-startup:false}") boolean onStartup) {
+        this.statementService = statementService;
+        this.cardRepository = cardRepository;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.onStartup = onStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (onStartup) {
+            rebuildAll();
+        }
+    }
+
+    public int rebuildAll() {
+        List<Long> cardIds = cardRepository.findAllIds();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<Integer>> chunks = new ArrayList<>();
+            for (int from = 0; from < cardIds.size(); from += chunkSize) {
+                List<Long> chunk = cardIds.subList(from, Math.min(from + chunkSize, cardIds.size()));
+                chunks.add(executor.submit(() -> statementService.rebuild(chunk)));
+            }
+            int rollups = 0;
+            for (Future<Integer> chunk : chunks) {
+                rollups += chunk.get();
+            }
+            log.info("Statement rollups rebuilt: {} cards, {} monthly rows", cardIds.size(), rollups);
+            return rollups;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Statement rollup rebuild interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Statement rollup rebuild failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.entity.CardMonthlyRollup;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.CardMonthlyRollupRepository;
+import com.example.bankcards.service.StatementService;
+import com.example.bankcards.service.TransactionPartitionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Service
+@RequiredArgsConstructor
+public class StatementServiceImpl implements StatementService {
+
+    private final CardMonthlyRollupRepository rollupRepository;
+    private final BankCardRepository cardRepository;
+    private final TransactionPartitionService partitionService;
+
+    @Override
+    @Transactional
+    public void record(List<Transaction> transactions) {
+        // Пакет сворачивается до одного upsert на (карту, месяц); порядок ключей фиксирован,
+        // чтобы параллельные пакеты брали блокировки строк итогов в одном порядке
+        Map<RollupKey, Delta> deltas = new TreeMap<>();
+        for (Transaction transaction : transactions) {
+            LocalDate month = transaction.getTimestamp().toLocalDate().withDayOfMonth(1);
+            deltas.computeIfAbsent(new RollupKey(transaction.getSenderCard().getId(), month), key -> new Delta())
+                    .add(BigDecimal.ZERO, transaction.getAmount());
+            deltas.computeIfAbsent(new RollupKey(transaction.getReceiverCard().getId(), month), key -> new Delta())
+                    .add(transaction.getAmount(), BigDecimal.ZERO);
+        }
+        deltas.forEach((key, delta) ->
+                rollupRepository.upsert(key.cardId(), key.month(), delta.totalIn, delta.totalOut, delta.count));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CardMonthlyRollup> getStatements(Long cardId) {
+        return rollupRepository.findAllByCardIdOrderByMonthDesc(cardId);
+    }
+
+    @Override
+    @Transactional
+    public int rebuild(List<Long> cardIds) {
+        // Строки карт блокируются на время пересчёта: переводы по ним дождутся новых итогов
+        cardRepository.findAllByIdForUpdate(cardIds);
+        LocalDateTime from = partitionService.retainedFrom();
+        rollupRepository.deleteAllByCardIdsFrom(cardIds, from.toLocalDate());
+        return rollupRepository.rebuild(cardIds, from);
+    }
+
+    private record RollupKey(Long cardId, LocalDate month) implements Comparable<RollupKey> {
+        private static final Comparator<RollupKey> ORDER =
+                Comparator.comparing(RollupKey::cardId).thenComparing(RollupKey::month);
+
+        @Override
+        public int compareTo(RollupKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    private static class Delta {
+        private BigDecimal totalIn = BigDecimal.ZERO;
+        private BigDecimal totalOut = BigDecimal.ZERO;
+        private long count;
+
+        void add(BigDecimal in, BigDecimal out) {
+            totalIn = totalIn.add(in);
+            totalOut = totalOut.add(out);
+            count++;
+        }
+    }
+}
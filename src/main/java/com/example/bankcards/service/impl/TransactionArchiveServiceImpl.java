@@ -0,0 +1,137 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.repository.TransactionPartitionRepository;
+import com.example.bankcards.repository.TransactionSegmentRepository;
+import com.example.bankcards.repository.TransactionSegmentRepository.SegmentRow;
+import com.example.bankcards.service.TransactionArchiveService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class TransactionArchiveServiceImpl implements TransactionArchiveService {
+
+    private static final Comparator<TransactionDTO> NEWEST_FIRST = Comparator
+            .comparing(TransactionDTO::getTimestamp)
+            .thenComparing(TransactionDTO::getId)
+            .reversed();
+    // Пока архив пуст, таблица читается без нижней границы
+    private static final LocalDateTime NOTHING_ARCHIVED = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final TransactionPartitionRepository partitionRepository;
+    private final TransactionSegmentRepository segmentRepository;
+
+    @Override
+    public long archiveMonth(YearMonth month) {
+        long transfers = partitionRepository.countRows(month);
+        try (TransactionSegmentRepository.SegmentWriter writer = segmentRepository.openWriter(month)) {
+            partitionRepository.forEachSegmentRow(month, writer::append);
+            // Каждый перевод лежит в блоках обеих карт; расхождение значит, что секция менялась во время выгрузки
+            if (writer.rows() != transfers * 2) {
+                throw new IllegalStateException("Segment for " + month + " has " + writer.rows() +
+                        " rows, expected " + transfers * 2);
+            }
+            writer.commit();
+            return transfers;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Граница — начало месяца после самого нового сегмента, а не расчёт от текущей даты: она сдвигается
+    // только после записи сегмента, поэтому ещё не заархивированный месяц всегда читается из таблицы
+    @Override
+    public LocalDateTime archivedBefore() {
+        List<YearMonth> months = segmentRepository.findMonths();
+        return months.isEmpty() ? NOTHING_ARCHIVED : months.get(0).plusMonths(1).atDay(1).atStartOfDay();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return segmentRepository.findMonths().isEmpty();
+    }
+
+    @Override
+    public Stream<TransactionDTO> streamAll(Collection<Long> cardIds) {
+        if (cardIds.isEmpty()) {
+            return Stream.empty();
+        }
+        // В памяти переводы карт только за один месяц: следующий сегмент читается, когда до него дошёл обход
+        return segmentRepository.findMonths().stream()
+                .flatMap(month -> findMonth(month, cardIds).stream());
+    }
+
+    @Override
+    public List<TransactionDTO> findPage(Collection<Long> cardIds, LocalDateTime from,
+                                         LocalDateTime beforeTimestamp, long beforeId, int limit) {
+        // Переводы между своими картами лежат в блоках обеих карт, поэтому собираются по id
+        Map<Long, TransactionDTO> found = new HashMap<>();
+        for (YearMonth month : segmentRepository.findMonths()) {
+            if (month.atDay(1).atStartOfDay().isAfter(beforeTimestamp)) {
+                continue;
+            }
+            if (from != null && !month.plusMonths(1).atDay(1).atStartOfDay().isAfter(from)) {
+                break;
+            }
+            for (Long cardId : cardIds) {
+                for (SegmentRow row : segmentRepository.findByCard(month, cardId)) {
+                    if (isInPage(row, from, beforeTimestamp, beforeId)) {
+                        found.putIfAbsent(row.id(), toDTO(row));
+                    }
+                }
+            }
+            // Все строки более старых месяцев старше уже найденных
+            if (found.size() >= limit) {
+                break;
+            }
+        }
+        return found.values().stream()
+                .sorted(NEWEST_FIRST)
+                .limit(limit)
+                .toList();
+    }
+
+    private List<TransactionDTO> findMonth(YearMonth month, Collection<Long> cardIds) {
+        Map<Long, TransactionDTO> found = new HashMap<>();
+        for (Long cardId : cardIds) {
+            for (SegmentRow row : segmentRepository.findByCard(month, cardId)) {
+                found.putIfAbsent(row.id(), toDTO(row));
+            }
+        }
+        return found.values().stream()
+                .sorted(NEWEST_FIRST)
+                .toList();
+    }
+
+    private static boolean isInPage(SegmentRow row, LocalDateTime from, LocalDateTime beforeTimestamp, long beforeId) {
+        if (from != null && row.timestamp().isBefore(from)) {
+            return false;
+        }
+        int compared = row.timestamp().compareTo(beforeTimestamp);
+        return compared < 0 || compared == 0 && row.id() < beforeId;
+    }
+
+    private static TransactionDTO toDTO(SegmentRow row) {
+        boolean outgoing = row.amountCents() < 0;
+        return new TransactionDTO(
+                row.id(),
+                BigDecimal.valueOf(Math.abs(row.amountCents()), 2),
+                row.timestamp(),
+                outgoing ? row.cardId() : row.counterpartCardId(),
+                outgoing ? row.counterpartCardId() : row.cardId()
+        );
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.service.TransactionArchiveService;
+import com.example.bankcards.service.TransactionExportFormat;
+import com.example.bankcards.service.TransactionExportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class TransactionExportServiceImpl implements TransactionExportService {
+
+    private static final String CSV_HEADER = "id,amount,timestamp,sender_card_id,receiver_card_id";
+
+    private final TransactionRepository transactionRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionArchiveService archiveService;
+    private final BankCardRepository cardRepository;
+
+    // Курсор PostgreSQL живёт только внутри транзакции: без неё драйвер прочитает весь результат сразу
+    @Override
+    @Transactional(readOnly = true)
+    public long export(Long userId, TransactionExportFormat format, OutputStream out) throws IOException {
+        // Writer не закрываем: потоком ответа распоряжается контейнер сервлетов
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        long count = 0;
+        // Полная история: сначала таблица до границы архива, затем сегменты архива, тоже от новых к старым
+        LocalDateTime archivedBefore = archiveService.archivedBefore();
+        List<Long> cardIds = archiveService.isEmpty() ? List.of() : cardRepository.findIdsByUserId(userId);
+        try (Stream<TransactionDTO> rows = Stream.concat(
+                transactionRepository.streamDtosByUserId(userId, archivedBefore, LocalDateTime.now()),
+                archiveService.streamAll(cardIds))) {
+            if (format == TransactionExportFormat.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            Iterator<TransactionDTO> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                writeRow(writer, format, iterator.next());
+                count++;
+            }
+        }
+        writer.flush();
+        return count;
+    }
+
+    private void writeRow(Writer writer, TransactionExportFormat format, TransactionDTO row) throws IOException {
+        if (format == TransactionExportFormat.NDJSON) {
+            writer.write(objectMapper.writeValueAsString(row));
+        } else {
+            writer.write(String.valueOf(row.getId()));
+            writer.write(',');
+            writer.write(row.getAmount().toPlainString());
+            writer.write(',');
+            writer.write(row.getTimestamp().toString());
+            writer.write(',');
+            writer.write(String.valueOf(row.getSenderCardId()));
+            writer.write(',');
+            writer.write(String.valueOf(row.getReceiverCardId()));
+        }
+        writer.write('\n');
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.service.TransactionFeedService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class TransactionFeedHeartbeatJob {
+
+    private final TransactionFeedService feedService;
+
+    @Scheduled(fixedDelayString = "${transactions.stream.heartbeat-ms:15000}")
+    public void sendHeartbeats() {
+        feedService.sendHeartbeats();
+    }
+}
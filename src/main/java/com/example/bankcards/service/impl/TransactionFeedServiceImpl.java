@@ -0,0 +1,286 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.InvalidCursorException;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.service.TransactionCursor;
+import com.example.bankcards.service.TransactionFeedService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Раздача новых переводов открытым SSE-подключениям в пределах одного узла.
+// У каждого подписчика своя ограниченная очередь; переполнение закрывает поток,
+// и клиент переподключается с Last-Event-ID, догружая пропущенное из БД.
+// id события — курсор (timestamp, id) перевода, тот же, что в постраничной истории
+@Slf4j
+@Service
+public class TransactionFeedServiceImpl implements TransactionFeedService {
+
+    private static final String EVENT_NAME = "transaction";
+    private static final String RESET_EVENT_NAME = "reset";
+
+    private final TransactionRepository transactionRepository;
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService deliveryExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("transaction-feed-", 0).factory());
+    private final int bufferSize;
+    private final long timeoutMs;
+    private final int replayLimit;
+    private final Duration replayWindow;
+    private final Duration replayOverlap;
+    private final Counter overflowCounter;
+    private final Counter resetCounter;
+
+    public TransactionFeedServiceImpl(TransactionRepository transactionRepository,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${transactions.stream.buffer-size:256}") int bufferSize,
+                                      @Value("${transactions.stream.timeout-ms:1800000}") long timeoutMs,
+                                      @Value("${transactions.stream.replay-limit:500}") int replayLimit,
+                                      @Value("${transactions.stream.replay-window-hours:24}") long replayWindowHours,
+                                      @Value("${transactions.stream.replay-overlap-seconds:60}") long replayOverlapSeconds) {
+        this.transactionRepository = transactionRepository;
+        this.bufferSize = bufferSize;
+        this.timeoutMs = timeoutMs;
+        this.replayLimit = replayLimit;
+        this.replayWindow = Duration.ofHours(replayWindowHours);
+        this.replayOverlap = Duration.ofSeconds(replayOverlapSeconds);
+        Gauge.builder("transactions.stream.subscribers", subscribers,
+                        all -> all.values().stream().mapToInt(Set::size).sum())
+                .description("Открытые SSE-подключения ленты переводов")
+                .register(meterRegistry);
+        this.overflowCounter = Counter.builder("transactions.stream.overflows")
+                .description("Подключения, закрытые из-за переполненной очереди медленного клиента")
+                .register(meterRegistry);
+        this.resetCounter = Counter.builder("transactions.stream.resets")
+                .description("Переподключения, которым пропущенное не догрузить: клиент перечитывает историю")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public SseEmitter subscribe(Long userId, String lastEventId) {
+        SseEmitter emitter = createEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(userId, emitter);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(ex -> remove(subscriber));
+
+        // Подписчик регистрируется до чтения пропущенного: переводы, закоммиченные во время догрузки,
+        // копятся в его очереди и уходят после неё без повторов
+        subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        if (lastEventId != null && !replay(subscriber, lastEventId)) {
+            return emitter;
+        }
+        subscriber.live.set(true);
+        subscriber.scheduleDrain();
+        return emitter;
+    }
+
+    // Перевод попадает в таблицу с timestamp из @PrePersist, а виден только после коммита, поэтому догрузка
+    // начинается на replay-overlap раньше последнего события. Уже полученные клиентом переводы из этого
+    // отрезка уходят повторно. Если пропущенное не помещается в окно или лимит, вместо части
+    // переводов клиент получает reset и перечитывает историю через GET /api/transactions
+    private boolean replay(Subscriber subscriber, String lastEventId) {
+        TransactionCursor cursor;
+        try {
+            cursor = TransactionCursor.decode(lastEventId);
+        } catch (InvalidCursorException ex) {
+            return subscriber.reset("invalid-event-id");
+        }
+        LocalDateTime windowStart = LocalDateTime.now().minus(replayWindow);
+        if (cursor.getTimestamp().isBefore(windowStart)) {
+            return subscriber.reset("replay-window-exceeded");
+        }
+        LocalDateTime from = cursor.getTimestamp().minus(replayOverlap);
+        List<TransactionDTO> missed = transactionRepository.findDtosByUserIdSince(
+                subscriber.userId, from.isBefore(windowStart) ? windowStart : from, replayLimit + 1);
+        if (missed.size() > replayLimit) {
+            return subscriber.reset("replay-limit-exceeded");
+        }
+        for (TransactionDTO transaction : missed) {
+            if (!subscriber.send(transaction)) {
+                return false;
+            }
+            subscriber.replayed.add(transaction.getId());
+        }
+        return true;
+    }
+
+    @Override
+    public void publishAfterCommit(Long userId, List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        // DTO собираются сразу: после коммита сессия уже закрыта
+        List<TransactionDTO> events = transactions.stream()
+                .map(transaction -> new TransactionDTO(
+                        transaction.getId(),
+                        transaction.getAmount(),
+                        transaction.getTimestamp(),
+                        transaction.getSenderCard().getId(),
+                        transaction.getReceiverCard().getId()))
+                .toList();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(userId, events);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(userId, events);
+            }
+        });
+    }
+
+    @Override
+    public int sendHeartbeats() {
+        int sent = 0;
+        for (Set<Subscriber> userSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : userSubscribers) {
+                // Комментарий SSE не виден клиенту, но не даёт прокси закрыть простаивающее соединение
+                if (subscriber.heartbeat()) {
+                    sent++;
+                }
+            }
+        }
+        return sent;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> subscriber.emitter.complete()));
+        deliveryExecutor.shutdown();
+    }
+
+    protected SseEmitter createEmitter(long timeoutMs) {
+        return new SseEmitter(timeoutMs);
+    }
+
+    private void publish(Long userId, List<TransactionDTO> events) {
+        Set<Subscriber> userSubscribers = subscribers.get(userId);
+        if (userSubscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : userSubscribers) {
+            subscriber.offer(events);
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.userId, (id, userSubscribers) -> {
+            userSubscribers.remove(subscriber);
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+    }
+
+    private final class Subscriber {
+
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final Queue<TransactionDTO> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final Set<Long> replayed = new HashSet<>();
+        private final AtomicBoolean live = new AtomicBoolean();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        private void offer(List<TransactionDTO> events) {
+            for (TransactionDTO event : events) {
+                if (!buffer.offer(event)) {
+                    overflowCounter.increment();
+                    log.debug("Transaction feed buffer overflow for user {}, closing stream", userId);
+                    close();
+                    return;
+                }
+            }
+            scheduleDrain();
+        }
+
+        // Очередь разбирает не больше одной задачи за раз, поэтому порядок событий сохраняется
+        private void scheduleDrain() {
+            if (live.get() && !buffer.isEmpty() && draining.compareAndSet(false, true)) {
+                deliveryExecutor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            TransactionDTO event;
+            while ((event = buffer.poll()) != null) {
+                if (!replayed.contains(event.getId()) && !send(event)) {
+                    return;
+                }
+            }
+            draining.set(false);
+            scheduleDrain();
+        }
+
+        private boolean send(TransactionDTO event) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(new TransactionCursor(event.getTimestamp(), event.getId()).encode())
+                        .name(EVENT_NAME)
+                        .data(event, MediaType.APPLICATION_JSON));
+                return true;
+            } catch (IOException | IllegalStateException ex) {
+                // Клиент отключился: соединение закрывает контейнер, подписчик снимается здесь
+                remove(this);
+                return false;
+            }
+        }
+
+        private boolean reset(String reason) {
+            resetCounter.increment();
+            try {
+                emitter.send(SseEmitter.event()
+                        .name(RESET_EVENT_NAME)
+                        .data(reason));
+                return true;
+            } catch (IOException | IllegalStateException ex) {
+                remove(this);
+                return false;
+            }
+        }
+
+        private boolean heartbeat() {
+            try {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+                return true;
+            } catch (IOException | IllegalStateException ex) {
+                remove(this);
+                return false;
+            }
+        }
+
+        private void close() {
+            remove(this);
+            buffer.clear();
+            emitter.complete();
+        }
+    }
+}
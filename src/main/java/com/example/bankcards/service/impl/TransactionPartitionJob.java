@@ -0,0 +1,24 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.service.TransactionPartitionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TransactionPartitionJob {
+
+    private final TransactionPartitionService partitionService;
+
+    @Scheduled(fixedDelayString = "${transactions.partitions.interval-ms:3600000}")
+    public void maintainPartitions() {
+        int created = partitionService.createFuturePartitions();
+        int archived = partitionService.archiveExpiredPartitions();
+        if (created > 0 || archived > 0) {
+            log.info("Transaction partitions: {} created, {} archived", created, archived);
+        }
+    }
+}
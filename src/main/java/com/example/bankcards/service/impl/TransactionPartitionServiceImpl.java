@@ -0,0 +1,87 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.repository.TransactionPartitionRepository;
+import com.example.bankcards.service.TransactionArchiveService;
+import com.example.bankcards.service.TransactionPartitionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+@Slf4j
+@Service
+public class TransactionPartitionServiceImpl implements TransactionPartitionService {
+
+    private final TransactionPartitionRepository partitionRepository;
+    private final TransactionArchiveService archiveService;
+    private final int retentionMonths;
+    private final int premakeMonths;
+    private final boolean dropDetached;
+
+    public TransactionPartitionServiceImpl(TransactionPartitionRepository partitionRepository,
+                                           TransactionArchiveService archiveService,
+                                           @Value("${transactions.partitions.retention-months:24}") int retentionMonths,
+                                           @Value("${transactions.partitions.premake-months:3}") int premakeMonths,
+                                           @Value("${transactions.archive.drop-detached:true}") boolean dropDetached) {
+        this.partitionRepository = partitionRepository;
+        this.archiveService = archiveService;
+        this.retentionMonths = retentionMonths;
+        this.premakeMonths = premakeMonths;
+        this.dropDetached = dropDetached;
+    }
+
+    @Override
+    public LocalDateTime retainedFrom() {
+        return YearMonth.now().minusMonths(retentionMonths).atDay(1).atStartOfDay();
+    }
+
+    @Override
+    public int createFuturePartitions() {
+        if (!partitionRepository.isPartitioned()) {
+            return 0;
+        }
+        // Секции создаются заранее: иначе переводы нового месяца попадут в секцию по умолчанию
+        List<YearMonth> existing = partitionRepository.findPartitionMonths();
+        YearMonth current = YearMonth.now();
+        int created = 0;
+        for (int i = 0; i <= premakeMonths; i++) {
+            YearMonth month = current.plusMonths(i);
+            if (!existing.contains(month)) {
+                partitionRepository.createPartition(month);
+                created++;
+            }
+        }
+        return created;
+    }
+
+    @Override
+    public int archiveExpiredPartitions() {
+        if (!partitionRepository.isPartitioned()) {
+            return 0;
+        }
+        // Секция уходит в архив, когда весь её месяц старше границы хранения. Сегмент пишется, пока секция
+        // ещё подключена: если процесс упадёт между шагами, следующий проход перепишет сегмент заново
+        YearMonth oldestRetained = YearMonth.from(retainedFrom());
+        // Граница архива не обгоняет строки секции по умолчанию: история читается из таблицы только после неё
+        LocalDateTime oldestDefault = partitionRepository.findOldestDefaultTimestamp();
+        int archived = 0;
+        for (YearMonth month : partitionRepository.findPartitionMonths()) {
+            if (oldestDefault != null && !month.isBefore(YearMonth.from(oldestDefault))) {
+                log.warn("Archiving stopped at {}: transactions_default holds transfers from {}", month, oldestDefault);
+                break;
+            }
+            if (month.isBefore(oldestRetained)) {
+                archiveService.archiveMonth(month);
+                partitionRepository.archivePartition(month);
+                if (dropDetached) {
+                    partitionRepository.dropArchivedPartition(month);
+                }
+                archived++;
+            }
+        }
+        return archived;
+    }
+}
@@ -1,86 +1,466 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.BankCard;
 import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.ApiException;
+import com.example.bankcards.exception.CardAccessDeniedException;
 import com.example.bankcards.exception.InsufficientFundsException;
 import com.example.bankcards.exception.TransferException;
 import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.TransactionIdempotencyKeyRepository;
 import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.service.BalanceShardService;
+import com.example.bankcards.service.BatchTransferMode;
+import com.example.bankcards.service.BatchTransferResult;
+import com.example.bankcards.service.CardOwnerCache;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.OutboxService;
+import com.example.bankcards.service.StatementService;
+import com.example.bankcards.service.TransactionArchiveService;
+import com.example.bankcards.service.TransactionCursor;
+import com.example.bankcards.service.TransactionFeedService;
+import com.example.bankcards.service.TransactionPage;
 import com.example.bankcards.service.TransactionService;
+import com.example.bankcards.service.TransferCommand;
+import com.example.bankcards.service.TransferMode;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class TransactionServiceImpl implements TransactionService {
 
+    // Верхняя граница периода истории, если клиент её не задал; нижняя — граница хранения секций
+    private static final LocalDateTime HISTORY_END = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
     private final TransactionRepository transactionRepository;
     private final BankCardRepository cardRepository;
+    private final LedgerService ledgerService;
+    private final OutboxService outboxService;
+    private final BalanceShardService balanceShardService;
+    private final StatementService statementService;
+    private final TransactionIdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionArchiveService archiveService;
+    private final TransactionFeedService feedService;
+    private final CardOwnerCache ownerCache;
+
+    @Getter
+    @Value("${transfer.mode:PESSIMISTIC}")
+    private TransferMode mode = TransferMode.PESSIMISTIC;
+
+    @Value("${transactions.page.max-size:100}")
+    private int maxPageSize = 100;
 
     @Override
     @Transactional
     public Transaction transferBetweenOwnCards(Long senderCardId, Long receiverCardId, BigDecimal amount) {
+        return transfer(null, senderCardId, receiverCardId, amount, null);
+    }
+
+    @Override
+    @Transactional
+    public Transaction transferBetweenOwnCards(Long userId, Long senderCardId, Long receiverCardId, BigDecimal amount) {
+        return transfer(userId, senderCardId, receiverCardId, amount, null);
+    }
+
+    @Override
+    @Transactional
+    public Transaction transferBetweenOwnCards(Long userId, Long senderCardId, Long receiverCardId, BigDecimal amount,
+                                               String idempotencyKey) {
+        return transfer(userId, senderCardId, receiverCardId, amount, idempotencyKey);
+    }
+
+    // userId == null — владелец не проверяется, только то, что обе карты принадлежат одному пользователю
+    private Transaction transfer(Long userId, Long senderCardId, Long receiverCardId, BigDecimal amount,
+                                 String idempotencyKey) {
         if (senderCardId.equals(receiverCardId)) {
             throw new TransferException("Cannot transfer to the same card");
         }
 
-        BankCard senderCard = cardRepository.findById(senderCardId)
-                .orElseThrow(() -> new IllegalArgumentException("Sender card not found"));
+        if (mode == TransferMode.CONDITIONAL) {
+            return conditionalTransfer(userId, senderCardId, receiverCardId, amount, idempotencyKey);
+        }
+
+        // Карты читаются в порядке возрастания id: в режиме PESSIMISTIC так встречные переводы
+        // не взаимоблокируются на FOR UPDATE, а в OPTIMISTIC в том же порядке уходят UPDATE при flush
+        BankCard senderCard;
+        BankCard receiverCard;
+        if (mode == TransferMode.OPTIMISTIC) {
+            if (senderCardId < receiverCardId) {
+                senderCard = loadCard(senderCardId, "Sender card not found");
+                receiverCard = loadCard(receiverCardId, "Receiver card not found");
+            } else {
+                receiverCard = loadCard(receiverCardId, "Receiver card not found");
+                senderCard = loadCard(senderCardId, "Sender card not found");
+            }
+        } else {
+            Map<Long, BankCard> cards = lockForTransfer(List.of(senderCardId, receiverCardId), List.of(senderCardId));
+            senderCard = cards.get(senderCardId);
+            receiverCard = cards.get(receiverCardId);
+        }
+
+        // Шардированные карты видны по shard_count уже прочитанных строк; перевод с ними идёт условными UPDATE,
+        // которые заодно объясняют отказ, если карты нет
+        if (senderCard == null || receiverCard == null
+                || senderCard.getShardCount() > 0 || receiverCard.getShardCount() > 0) {
+            return conditionalTransfer(userId, senderCardId, receiverCardId, amount, idempotencyKey);
+        }
+
+        validateTransfer(userId, senderCard, receiverCard, senderCard.getBalance(), amount);
+
+        // Выполнение перевода
+        senderCard.setBalance(senderCard.getBalance().subtract(amount));
+        receiverCard.setBalance(receiverCard.getBalance().add(amount));
+
+        cardRepository.save(senderCard);
+        cardRepository.save(receiverCard);
+
+        if (mode == TransferMode.OPTIMISTIC) {
+            // Конфликт версий всплывает здесь, до вставки транзакции
+            cardRepository.flush();
+        }
+
+        // Создание записи о транзакции
+        Transaction transaction = Transaction.builder()
+                .amount(amount)
+                .senderCard(senderCard)
+                .receiverCard(receiverCard)
+                .idempotencyKey(idempotencyKey)
+                .build();
+
+        return record(transactionRepository.save(transaction), senderCard.getUser().getId());
+    }
+
+    // Пакет выполняется в одной транзакции и всегда под блокировками, независимо от transfer.mode
+    @Override
+    @Transactional
+    public List<BatchTransferResult> transferBatch(Long userId, List<TransferRequest> transfers, BatchTransferMode batchMode) {
+        List<TransferCommand> commands = transfers.stream()
+                .map(request -> new TransferCommand(
+                        userId, request.getFromCardId(), request.getToCardId(), request.getAmount(), null))
+                .toList();
+        return applyBatch(commands, batchMode);
+    }
+
+    // Переводы разных пользователей одной транзакцией БД: так движок группового коммита делит один commit на пачку
+    @Transactional
+    public List<BatchTransferResult> transferGroup(List<TransferCommand> commands) {
+        return applyBatch(commands, BatchTransferMode.BEST_EFFORT);
+    }
+
+    private List<BatchTransferResult> applyBatch(List<TransferCommand> commands, BatchTransferMode batchMode) {
+        // Все карты пакета блокируются одним запросом в порядке возрастания id, кроме шардированных получателей
+        Set<Long> cardIds = new HashSet<>();
+        Set<Long> senderIds = new HashSet<>();
+        for (TransferCommand command : commands) {
+            cardIds.add(command.getSenderCardId());
+            cardIds.add(command.getReceiverCardId());
+            senderIds.add(command.getSenderCardId());
+        }
+        Map<Long, BankCard> cards = lockForTransfer(cardIds, senderIds);
+        // Шардированные получатели читаются без блокировки: только для проверок статуса и владельца
+        Set<Long> unlocked = new HashSet<>(cardIds);
+        unlocked.removeAll(cards.keySet());
+        if (!unlocked.isEmpty()) {
+            cardRepository.findAllById(unlocked).forEach(card -> cards.put(card.getId(), card));
+        }
+
+        // Сначала пакет проверяется на рабочей копии балансов, сущности пока не меняются.
+        // У шардированного отправителя доступна колонка плюс слоты: строка карты заблокирована,
+        // поэтому слоты до конца транзакции только пополняются
+        List<Long> shardedSenders = cards.values().stream()
+                .filter(card -> card.getShardCount() > 0 && senderIds.contains(card.getId()))
+                .map(BankCard::getId)
+                .toList();
+        Map<Long, BigDecimal> shardTotals = balanceShardService.getShardedBalances(shardedSenders);
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        cards.values().forEach(card -> balances.put(card.getId(),
+                card.getBalance().add(shardTotals.getOrDefault(card.getId(), BigDecimal.ZERO))));
+        List<BatchTransferResult> results = new ArrayList<>(commands.size());
+        boolean failed = false;
+        for (int i = 0; i < commands.size(); i++) {
+            TransferCommand command = commands.get(i);
+            try {
+                BankCard senderCard = findInBatch(cards, command.getSenderCardId(), "Sender card not found");
+                BankCard receiverCard = findInBatch(cards, command.getReceiverCardId(), "Receiver card not found");
+                if (senderCard == receiverCard) {
+                    throw new TransferException("Cannot transfer to the same card");
+                }
+                validateTransfer(command.getUserId(), senderCard, receiverCard,
+                        balances.get(senderCard.getId()), command.getAmount());
+
+                balances.merge(senderCard.getId(), command.getAmount(), BigDecimal::subtract);
+                balances.merge(receiverCard.getId(), command.getAmount(), BigDecimal::add);
+                results.add(BatchTransferResult.succeeded(i, Transaction.builder()
+                        .amount(command.getAmount())
+                        .senderCard(senderCard)
+                        .receiverCard(receiverCard)
+                        .idempotencyKey(command.getIdempotencyKey())
+                        .build()));
+            } catch (ApiException | IllegalArgumentException ex) {
+                failed = true;
+                results.add(BatchTransferResult.failed(i, ex));
+            }
+        }
+
+        if (failed && batchMode == BatchTransferMode.ALL_OR_NOTHING) {
+            // Ничего не записано: успешные элементы помечаются откатанными
+            return results.stream()
+                    .map(result -> result.getTransaction() != null ? BatchTransferResult.rolledBack(result.getIndex()) : result)
+                    .toList();
+        }
+
+        // UPDATE балансов и INSERT транзакций уходят JDBC-пакетами при flush.
+        // Шардированные карты меняются через слоты: сначала зачисления, чтобы списание видело деньги,
+        // пришедшие на карту в этом же пакете
+        List<Transaction> transactions = new ArrayList<>();
+        Map<BankCard, BigDecimal> shardedCredits = new LinkedHashMap<>();
+        Map<BankCard, BigDecimal> shardedDebits = new LinkedHashMap<>();
+        for (BatchTransferResult result : results) {
+            if (result.getTransaction() != null) {
+                Transaction transaction = result.getTransaction();
+                applyBalance(transaction.getSenderCard(), transaction.getAmount(), balances, shardedDebits);
+                applyBalance(transaction.getReceiverCard(), transaction.getAmount(), balances, shardedCredits);
+                transactions.add(transaction);
+            }
+        }
+        shardedCredits.forEach(this::creditShards);
+        shardedDebits.forEach((card, amount) -> {
+            if (!balanceShardService.debit(card.getId(), amount)) {
+                throw new InsufficientFundsException("Insufficient funds on sender card");
+            }
+        });
+        List<Transaction> saved = transactionRepository.saveAll(transactions);
+        saveIdempotencyKeys(saved);
+        ledgerService.record(saved);
+        statementService.record(saved);
+        outboxService.enqueue(saved);
+        // В групповом коммите в одном пакете переводы разных пользователей
+        Map<Long, List<Transaction>> byOwner = new HashMap<>();
+        for (Transaction transaction : saved) {
+            byOwner.computeIfAbsent(transaction.getSenderCard().getUser().getId(), id -> new ArrayList<>())
+                    .add(transaction);
+        }
+        byOwner.forEach(feedService::publishAfterCommit);
+        return results;
+    }
+
+    private void applyBalance(BankCard card, BigDecimal amount, Map<Long, BigDecimal> balances,
+                              Map<BankCard, BigDecimal> shardedMovements) {
+        if (card.getShardCount() > 0) {
+            shardedMovements.merge(card, amount, BigDecimal::add);
+        } else {
+            card.setBalance(balances.get(card.getId()));
+        }
+    }
+
+    // Карту могли слить обратно в колонку после чтения: тогда зачисление идёт условным UPDATE колонки
+    private void creditShards(BankCard card, BigDecimal amount) {
+        if (!balanceShardService.credit(card.getId(), card.getShardCount(), amount)
+                && cardRepository.creditIfAllowed(card.getId(), card.getUser().getId(), amount) == 0) {
+            throw new TransferException("Receiver card is not active");
+        }
+    }
+
+    private Map<Long, BankCard> lockForTransfer(Collection<Long> cardIds, Collection<Long> senderIds) {
+        Map<Long, BankCard> cards = new HashMap<>();
+        for (BankCard card : cardRepository.findAllForTransferForUpdate(cardIds, senderIds)) {
+            cards.put(card.getId(), card);
+        }
+        return cards;
+    }
 
-        BankCard receiverCard = cardRepository.findById(receiverCardId)
-                .orElseThrow(() -> new IllegalArgumentException("Receiver card not found"));
+    private BankCard findInBatch(Map<Long, BankCard> cards, Long cardId, String notFoundMessage) {
+        BankCard card = cards.get(cardId);
+        if (card == null) {
+            throw new IllegalArgumentException(notFoundMessage);
+        }
+        return card;
+    }
+
+    private void validateTransfer(Long userId, BankCard senderCard, BankCard receiverCard,
+                                  BigDecimal senderBalance, BigDecimal amount) {
+        // Проверка принадлежности карт текущему пользователю
+        if (userId != null && (!senderCard.getUser().getId().equals(userId)
+                || !receiverCard.getUser().getId().equals(userId))) {
+            throw new CardAccessDeniedException("Card does not belong to the current user");
+        }
 
         // Проверка принадлежности карт одному пользователю
         if (!senderCard.getUser().getId().equals(receiverCard.getUser().getId())) {
             throw new TransferException("Cards must belong to the same user");
         }
 
-        // Проверка статуса карт
-        if (senderCard.getStatus() != BankCard.CardStatus.ACTIVE) {
+        // Проверка статуса карт с учётом срока: истёкшая карта могла ещё не попасть в проход CardExpirySweepJob
+        if (senderCard.getEffectiveStatus() != BankCard.CardStatus.ACTIVE) {
             throw new TransferException("Sender card is not active");
         }
 
-        if (receiverCard.getStatus() != BankCard.CardStatus.ACTIVE) {
+        if (receiverCard.getEffectiveStatus() != BankCard.CardStatus.ACTIVE) {
             throw new TransferException("Receiver card is not active");
         }
 
         // Проверка баланса
-        if (senderCard.getBalance().compareTo(amount) < 0) {
+        if (senderBalance.compareTo(amount) < 0) {
             throw new InsufficientFundsException("Insufficient funds on sender card");
         }
+    }
 
-        // Выполнение перевода
-        senderCard.setBalance(senderCard.getBalance().subtract(amount));
-        receiverCard.setBalance(receiverCard.getBalance().add(amount));
+    // Перевод без загрузки карт: два условных UPDATE и INSERT транзакции
+    private Transaction conditionalTransfer(Long userId, Long senderCardId, Long receiverCardId, BigDecimal amount,
+                                            String idempotencyKey) {
+        boolean ownerRequired = userId != null;
+        Long ownerId = ownerRequired
+                ? userId
+                : ownerCache.findOwnerId(senderCardId)
+                        .orElseThrow(() -> new IllegalArgumentException("Sender card not found"));
 
-        cardRepository.save(senderCard);
-        cardRepository.save(receiverCard);
+        // Строки обновляются в порядке возрастания id, как и при блокировках в режиме PESSIMISTIC
+        if (senderCardId < receiverCardId) {
+            debit(senderCardId, ownerId, amount, ownerRequired);
+            credit(receiverCardId, ownerId, amount, ownerRequired);
+        } else {
+            credit(receiverCardId, ownerId, amount, ownerRequired);
+            debit(senderCardId, ownerId, amount, ownerRequired);
+        }
 
-        // Создание записи о транзакции
+        // Ссылки на карты без SELECT: для вставки нужны только их id
         Transaction transaction = Transaction.builder()
                 .amount(amount)
-                .senderCard(senderCard)
-                .receiverCard(receiverCard)
+                .senderCard(cardRepository.getReferenceById(senderCardId))
+                .receiverCard(cardRepository.getReferenceById(receiverCardId))
+                .idempotencyKey(idempotencyKey)
                 .build();
 
-        return transactionRepository.save(transaction);
+        return record(transactionRepository.save(transaction), ownerId);
+    }
+
+    private void debit(Long cardId, Long ownerId, BigDecimal amount, boolean ownerRequired) {
+        if (cardRepository.debitIfAllowed(cardId, ownerId, amount) == 0) {
+            BankCardRepository.TransferState state = checkTransferState(cardId, ownerId, true, ownerRequired);
+            // У шардированной карты часть средств лежит в слотах
+            if (state.getShardCount() == 0 || !balanceShardService.debit(cardId, amount)) {
+                throw new InsufficientFundsException("Insufficient funds on sender card");
+            }
+        }
+    }
+
+    private void credit(Long cardId, Long ownerId, BigDecimal amount, boolean ownerRequired) {
+        if (cardRepository.creditIfAllowed(cardId, ownerId, amount) == 0) {
+            BankCardRepository.TransferState state = checkTransferState(cardId, ownerId, false, ownerRequired);
+            if (state.getShardCount() > 0 && balanceShardService.credit(cardId, state.getShardCount(), amount)) {
+                return;
+            }
+            // Представление карты сменилось между запросами: пробуем колонку, затем слот 0, который есть всегда
+            if (cardRepository.creditIfAllowed(cardId, ownerId, amount) == 0
+                    && !balanceShardService.credit(cardId, 1, amount)) {
+                throw new TransferException("Receiver card is not active");
+            }
+        }
+    }
+
+    // UPDATE не затронул строку: дочитываем состояние карты, чтобы вернуть ту же ошибку, что и остальные режимы
+    private BankCardRepository.TransferState checkTransferState(Long cardId, Long ownerId, boolean sender,
+                                                                boolean ownerRequired) {
+        BankCardRepository.TransferState state = cardRepository.findTransferState(cardId)
+                .orElseThrow(() -> new IllegalArgumentException(sender ? "Sender card not found" : "Receiver card not found"));
+        if (!state.getUserId().equals(ownerId)) {
+            throw ownerRequired
+                    ? new CardAccessDeniedException("Card does not belong to the current user")
+                    : new TransferException("Cards must belong to the same user");
+        }
+        if (state.getStatus() != BankCard.CardStatus.ACTIVE || state.getExpiryDate().isBefore(LocalDate.now())) {
+            throw new TransferException(sender ? "Sender card is not active" : "Receiver card is not active");
+        }
+        return state;
+    }
+
+    // Проводки, месячные итоги и событие для outbox пишутся в той же транзакции, что и перевод;
+    // в SSE-ленту владельца перевод уходит только после коммита
+    private Transaction record(Transaction transaction, Long ownerId) {
+        saveIdempotencyKeys(List.of(transaction));
+        ledgerService.record(List.of(transaction));
+        statementService.record(List.of(transaction));
+        outboxService.enqueue(List.of(transaction));
+        feedService.publishAfterCommit(ownerId, List.of(transaction));
+        return transaction;
+    }
+
+    // Повтор ключа падает здесь нарушением первичного ключа и откатывает перевод
+    private void saveIdempotencyKeys(List<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            if (transaction.getIdempotencyKey() != null) {
+                idempotencyKeyRepository.insert(transaction.getIdempotencyKey(), transaction.getId(),
+                        transaction.getTimestamp());
+            }
+        }
+    }
+
+    private BankCard loadCard(Long cardId, String notFoundMessage) {
+        return cardRepository.findById(cardId)
+                .orElseThrow(() -> new IllegalArgumentException(notFoundMessage));
     }
 
     @Override
-    public List<Transaction> getUserTransactions(Long userId) {
-        // Получаем все карты пользователя
-        List<BankCard> userCards = cardRepository.findByUserId(userId);
+    @Transactional(readOnly = true)
+    public TransactionPage getUserTransactions(Long userId, Long cardId, LocalDateTime from, LocalDateTime to,
+                                               String cursor, int size) {
+        List<Long> cardIds;
+        if (cardId != null) {
+            if (!ownerCache.findOwnerId(cardId).map(userId::equals).orElse(false)) {
+                throw new CardAccessDeniedException("Card does not belong to the current user");
+            }
+            cardIds = List.of(cardId);
+        } else {
+            cardIds = cardRepository.findIdsByUserId(userId);
+        }
+        if (cardIds.isEmpty()) {
+            return new TransactionPage(List.of(), null);
+        }
 
-        // Преобразуем в Set для оптимизации запроса
-        Set<BankCard> cardSet = new HashSet<>(userCards);
+        // Первая страница начинается сразу перед верхней границей периода (to не включается)
+        TransactionCursor position = cursor != null
+                ? TransactionCursor.decode(cursor)
+                : new TransactionCursor(to != null ? to : HISTORY_END, Long.MIN_VALUE);
+        int limit = Math.max(1, Math.min(size, maxPageSize));
 
-        // Используем новый метод репозитория
-        return transactionRepository.findByUserCards(cardSet);
+        // Лишняя запись показывает, есть ли следующая страница
+        // Месяцы до границы архива читаются только из сегментов, даже если секция ещё не отцеплена
+        LocalDateTime archivedBefore = archiveService.archivedBefore();
+        List<TransactionDTO> rows = new ArrayList<>(transactionRepository.findDtoPageByCards(cardIds,
+                from != null && from.isAfter(archivedBefore) ? from : archivedBefore,
+                position.getTimestamp(), position.getId(), limit + 1));
+
+        // Страница, дошедшая до границы архива, добирается из сегментов тем же курсором
+        if (rows.size() <= limit && (from == null || from.isBefore(archivedBefore))) {
+            boolean beforeArchive = position.getTimestamp().isBefore(archivedBefore);
+            rows.addAll(archiveService.findPage(cardIds, from,
+                    beforeArchive ? position.getTimestamp() : archivedBefore,
+                    beforeArchive ? position.getId() : Long.MIN_VALUE,
+                    limit + 1 - rows.size()));
+        }
+        if (rows.size() <= limit) {
+            return new TransactionPage(rows, null);
+        }
+        List<TransactionDTO> items = rows.subList(0, limit);
+        TransactionDTO last = items.get(limit - 1);
+        return new TransactionPage(items, new TransactionCursor(last.getTimestamp(), last.getId()).encode());
     }
 }
@@ -1,9 +1,11 @@
 package com.example.bankcards.service.impl;
 
 
+import com.example.bankcards.entity.BankCard;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardOwnerCache;
 import com.example.bankcards.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -18,6 +20,7 @@ public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final CardOwnerCache ownerCache;
 
     @Override
     @Transactional
@@ -57,6 +60,8 @@ public class UserServiceImpl implements UserService {
     public void deleteUser(Long userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        // Карты удаляются каскадом вместе с пользователем
+        ownerCache.evict(user.getCards().stream().map(BankCard::getId).toList());
         userRepository.delete(user);
     }
 
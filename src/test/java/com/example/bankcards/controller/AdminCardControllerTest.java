@@ -0,0 +1,103 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.service.CardBulkAction;
+import com.example.bankcards.service.CardBulkResult;
+import com.example.bankcards.service.CardBulkService;
+import com.example.bankcards.service.CardPage;
+import com.example.bankcards.service.CardSearchFilter;
+import com.example.bankcards.service.CardService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(AdminCardController.class)
+class AdminCardControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CardService cardService;
+
+    @MockBean
+    private CardBulkService bulkService;
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void searchCards_Filters_PassedToServiceWithCursor() throws Exception {
+        // Подготовка
+        CardDTO card = new CardDTO(5L, "**** **** **** 1234", LocalDate.of(2030, 1, 31),
+                BankCard.CardStatus.ACTIVE, BigDecimal.TEN, 2L);
+        when(cardService.searchCards(any(), eq("cursor-1"), eq(50)))
+                .thenReturn(new CardPage(List.of(card), "cursor-2"));
+
+        // Выполнение и проверка
+        mockMvc.perform(get("/api/admin/cards")
+                        .param("status", "ACTIVE")
+                        .param("expiresFrom", "2030-01-01")
+                        .param("minBalance", "5")
+                        .param("userId", "2")
+                        .param("cursor", "cursor-1")
+                        .param("size", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(5))
+                .andExpect(jsonPath("$.items[0].maskedNumber").value("**** **** **** 1234"))
+                .andExpect(jsonPath("$.next").value("cursor-2"));
+
+        ArgumentCaptor<CardSearchFilter> filter = ArgumentCaptor.forClass(CardSearchFilter.class);
+        verify(cardService).searchCards(filter.capture(), eq("cursor-1"), eq(50));
+        assertEquals(BankCard.CardStatus.ACTIVE, filter.getValue().getStatus());
+        assertEquals(LocalDate.of(2030, 1, 1), filter.getValue().getExpiresFrom());
+        assertNull(filter.getValue().getExpiresTo());
+        assertEquals(0, BigDecimal.valueOf(5).compareTo(filter.getValue().getMinBalance()));
+        assertEquals(2L, filter.getValue().getUserId());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void blockCards_CardIds_ReturnsCounts() throws Exception {
+        // Подготовка
+        when(bulkService.apply(eq(CardBulkAction.BLOCK), eq(List.of(1L, 2L, 3L)), any()))
+                .thenReturn(new CardBulkResult(3, 2));
+
+        // Выполнение и проверка
+        mockMvc.perform(post("/api/admin/cards/block")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"cardIds\":[1,2,3]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.matched").value(3))
+                .andExpect(jsonPath("$.affected").value(2));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void searchCards_UnknownStatus_BadRequest() throws Exception {
+        // Выполнение и проверка
+        mockMvc.perform(get("/api/admin/cards").param("status", "LOST"))
+                .andExpect(status().isBadRequest());
+    }
+}
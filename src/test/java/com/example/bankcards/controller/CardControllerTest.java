@@ -2,9 +2,15 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CardDTO;
 import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.CardMonthlyRollup;
+import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.service.CardImportService;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.service.EncryptionService;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.StatementService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -15,14 +21,23 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -38,6 +53,15 @@ class CardControllerTest {
     @MockBean
     private EncryptionService encryptionService;
 
+    @MockBean
+    private LedgerService ledgerService;
+
+    @MockBean
+    private StatementService statementService;
+
+    @MockBean
+    private CardImportService importService;
+
     @Test
     @WithMockUser(roles = "ADMIN")
     void createCard_AdminAccess_Success() throws Exception {
@@ -59,6 +83,15 @@ class CardControllerTest {
                 .andExpect(jsonPath("$.maskedNumber").value("**** **** **** 1234"));
     }
 
+    // Принципал такой же, как выставляет JwtAuthenticationFilter: сущность User внутри UserPrincipal
+    private UserPrincipal principal(Long id, Role role) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        user.setRole(role);
+        return new UserPrincipal(user);
+    }
+
     // Вспомогательный метод для создания тестовой BankCard
     private BankCard createTestBankCard() {
         User user = new User();
@@ -76,7 +109,6 @@ class CardControllerTest {
     }
 
     @Test
-    @WithMockUser(username = "user1", roles = "USER")
     void getUserCards_UserAccess_ReturnsCards() throws Exception {
         // 1. Создаем тестовую сущность BankCard
         BankCard bankCard = createTestBankCard();
@@ -88,40 +120,155 @@ class CardControllerTest {
         when(cardService.getUserCards(anyLong(), any()))
                 .thenReturn(page);
 
-        // 4. Мокаем преобразование в маскированный номер
-        when(encryptionService.maskCardNumber(anyString()))
-                .thenReturn("**** **** **** 5678");
+        // 4. Маска строится из last4, номер не расшифровывается
+        bankCard.setLast4("1234");
+        when(encryptionService.maskLast4("1234"))
+                .thenReturn("**** **** **** 1234");
 
         // Выполнение и проверка
         mockMvc.perform(get("/api/cards")
                         .param("page", "0")
-                        .param("size", "5"))
+                        .param("size", "5")
+                        .with(user(principal(1L, Role.USER))))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.content[0].maskedNumber").value("**** **** **** 5678"))
+                .andExpect(jsonPath("$.content[0].maskedNumber").value("**** **** **** 1234"))
                 .andExpect(jsonPath("$.content[0].balance").value(1000));
+        verify(cardService).getUserCards(eq(1L), any());
+        verify(encryptionService, never()).maskCardNumber(any());
+    }
+
+    @Test
+    void getCardById_ForeignCard_Forbidden() throws Exception {
+        // Подготовка: карта принадлежит пользователю 1
+        when(cardService.getCardById(1L)).thenReturn(createTestBankCard());
+
+        // Выполнение и проверка
+        mockMvc.perform(get("/api/cards/1")
+                        .with(user(principal(2L, Role.USER))))
+                .andExpect(status().isForbidden());
     }
 
     @Test
-    @WithMockUser(username = "user1", roles = "USER")
     void requestBlockCard_OwnCard_Success() throws Exception {
         // Подготовка
         when(cardService.isCardOwnedByUser(1L, 1L)).thenReturn(true);
 
         // Выполнение и проверка
         mockMvc.perform(put("/api/cards/1/request-block")
-                        .with(csrf()))
+                        .with(csrf())
+                        .with(user(principal(1L, Role.USER))))
                 .andExpect(status().isOk());
     }
 
     @Test
-    @WithMockUser(username = "user2", roles = "USER")
     void requestBlockCard_NotOwnCard_Forbidden() throws Exception {
         // Подготовка
         when(cardService.isCardOwnedByUser(1L, 2L)).thenReturn(false);
 
         // Выполнение и проверка
         mockMvc.perform(put("/api/cards/1/request-block")
-                        .with(csrf()))
+                        .with(csrf())
+                        .with(user(principal(2L, Role.USER))))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void importCards_AdminAccess_StreamsReport() throws Exception {
+        // Подготовка
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            out.write("{\"type\":\"SUMMARY\",\"processed\":1,\"issued\":1,\"failed\":0}\n"
+                    .getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(importService).importCards(any(), any());
+
+        // Выполнение и проверка: отчёт пишется асинхронно, после возврата из контроллера
+        MvcResult result = mockMvc.perform(post("/api/cards/import")
+                        .with(csrf())
+                        .contentType("text/csv")
+                        .content("1,1234567812345678,12/27\n"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string("{\"type\":\"SUMMARY\",\"processed\":1,\"issued\":1,\"failed\":0}\n"));
+    }
+
+    @Test
+    void getCardBalance_OwnCard_ReturnsLedgerBalance() throws Exception {
+        // Подготовка
+        when(cardService.isCardOwnedByUser(1L, 1L)).thenReturn(true);
+        when(ledgerService.getBalance(eq(1L), any())).thenReturn(BigDecimal.valueOf(700));
+
+        // Выполнение и проверка
+        mockMvc.perform(get("/api/cards/1/balance")
+                        .param("at", "2026-01-15T10:00:00")
+                        .with(user(principal(1L, Role.USER))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cardId").value(1))
+                .andExpect(jsonPath("$.balance").value(700));
+        verify(ledgerService).getBalance(1L, LocalDateTime.of(2026, 1, 15, 10, 0));
+    }
+
+    @Test
+    void getCardBalance_ForeignCard_Forbidden() throws Exception {
+        // Подготовка
+        when(cardService.isCardOwnedByUser(1L, 2L)).thenReturn(false);
+
+        // Выполнение и проверка
+        mockMvc.perform(get("/api/cards/1/balance")
+                        .with(user(principal(2L, Role.USER))))
+                .andExpect(status().isForbidden());
+        verify(ledgerService, never()).getBalance(anyLong(), any());
+    }
+
+    @Test
+    void getCardBalance_AdminAccess_AnyCard() throws Exception {
+        // Подготовка
+        when(ledgerService.getBalance(eq(1L), any())).thenReturn(BigDecimal.valueOf(700));
+
+        // Выполнение и проверка
+        mockMvc.perform(get("/api/cards/1/balance")
+                        .with(user(principal(3L, Role.ADMIN))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(700));
+        verify(cardService, never()).isCardOwnedByUser(anyLong(), anyLong());
+    }
+
+    @Test
+    void getCardStatements_OwnCard_ReturnsMonths() throws Exception {
+        // Подготовка
+        when(cardService.isCardOwnedByUser(1L, 1L)).thenReturn(true);
+        when(statementService.getStatements(1L)).thenReturn(List.of(CardMonthlyRollup.builder()
+                .cardId(1L)
+                .month(LocalDate.of(2026, 1, 1))
+                .totalIn(BigDecimal.valueOf(500))
+                .totalOut(BigDecimal.valueOf(200))
+                .txCount(3)
+                .openingBalance(BigDecimal.valueOf(1000))
+                .closingBalance(BigDecimal.valueOf(1300))
+                .build()));
+
+        // Выполнение и проверка
+        mockMvc.perform(get("/api/cards/1/statements")
+                        .with(user(principal(1L, Role.USER))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].month").value("2026-01"))
+                .andExpect(jsonPath("$[0].count").value(3))
+                .andExpect(jsonPath("$[0].closingBalance").value(1300));
+    }
+
+    @Test
+    void getCardStatements_ForeignCard_Forbidden() throws Exception {
+        // Подготовка
+        when(cardService.isCardOwnedByUser(1L, 2L)).thenReturn(false);
+
+        // Выполнение и проверка
+        mockMvc.perform(get("/api/cards/1/statements")
+                        .with(user(principal(2L, Role.USER))))
                 .andExpect(status().isForbidden());
+        verify(statementService, never()).getStatements(anyLong());
     }
 }
@@ -1,11 +1,22 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransferRequest;
 import com.example.bankcards.dto.TransactionDTO;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.Transaction;
 import com.example.bankcards.entity.User;
-import com.example.bankcards.service.CardService;
+import com.example.bankcards.exception.CardAccessDeniedException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.service.BatchTransferMode;
+import com.example.bankcards.service.BatchTransferResult;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.service.TransactionExportFormat;
+import com.example.bankcards.service.TransactionExportService;
+import com.example.bankcards.service.TransactionFeedService;
+import com.example.bankcards.service.TransactionPage;
 import com.example.bankcards.service.TransactionService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -13,18 +24,32 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
-import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(TransactionController.class)
@@ -40,7 +65,22 @@ class TransactionControllerTest {
     private TransactionService transactionService;
 
     @MockBean
-    private CardService cardService; // Нужен для проверки принадлежности карт
+    private IdempotencyService idempotencyService;
+
+    @MockBean
+    private TransactionExportService exportService;
+
+    @MockBean
+    private TransactionFeedService feedService;
+
+    // Принципал такой же, как выставляет JwtAuthenticationFilter: сущность User внутри UserPrincipal
+    private UserPrincipal principal() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("user1");
+        user.setRole(Role.USER);
+        return new UserPrincipal(user);
+    }
 
     // Вспомогательный метод для создания тестовой Transaction
     private Transaction createTestTransaction() {
@@ -66,19 +106,14 @@ class TransactionControllerTest {
     }
 
     @Test
-    @WithMockUser(username = "user1", roles = "USER")
     void transferBetweenOwnCards_ValidRequest_Success() throws Exception {
         // 1. Создаем тестовую сущность Transaction
         Transaction transaction = createTestTransaction();
 
-        // 2. Мокаем возврат Transaction
-        when(transactionService.transferBetweenOwnCards(anyLong(), anyLong(), any()))
+        // 2. Мокаем возврат Transaction (принадлежность карт проверяет сервис)
+        when(transactionService.transferBetweenOwnCards(anyLong(), anyLong(), anyLong(), any()))
                 .thenReturn(transaction);
 
-        // 3. Мокаем проверку принадлежности карт
-        when(cardService.isCardOwnedByUser(1L, 1L)).thenReturn(true);
-        when(cardService.isCardOwnedByUser(2L, 1L)).thenReturn(true);
-
         // Подготовка запроса
         TransferRequest request = new TransferRequest();
         request.setFromCardId(1L);
@@ -87,6 +122,7 @@ class TransactionControllerTest {
 
         // Выполнение и проверка
         mockMvc.perform(post("/api/transactions/transfer")
+                        .with(user(principal()))
                         .with(csrf())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
@@ -99,7 +135,6 @@ class TransactionControllerTest {
 
 
     @Test
-    @WithMockUser(username = "user1", roles = "USER")
     void transferBetweenOwnCards_NotOwnCard_Forbidden() throws Exception {
         // Подготовка
         TransferRequest request = new TransferRequest();
@@ -107,14 +142,130 @@ class TransactionControllerTest {
         request.setToCardId(3L); // Чужая карта
         request.setAmount(BigDecimal.valueOf(100));
 
-        when(cardService.isCardOwnedByUser(1L, 1L)).thenReturn(true);
-        when(cardService.isCardOwnedByUser(3L, 1L)).thenReturn(false);
+        when(transactionService.transferBetweenOwnCards(anyLong(), anyLong(), anyLong(), any()))
+                .thenThrow(new CardAccessDeniedException("Card does not belong to the current user"));
 
         // Выполнение и проверка
         mockMvc.perform(post("/api/transactions/transfer")
+                        .with(user(principal()))
                         .with(csrf())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isForbidden());
     }
+
+    @Test
+    void transferBatch_BestEffort_ReturnsPerItemResults() throws Exception {
+        // Подготовка
+        TransferRequest transfer = new TransferRequest();
+        transfer.setFromCardId(1L);
+        transfer.setToCardId(2L);
+        transfer.setAmount(BigDecimal.valueOf(100));
+
+        BatchTransferRequest request = new BatchTransferRequest();
+        request.setMode(BatchTransferMode.BEST_EFFORT);
+        request.setTransfers(List.of(transfer, transfer));
+
+        when(transactionService.transferBatch(anyLong(), any(), eq(BatchTransferMode.BEST_EFFORT)))
+                .thenReturn(List.of(
+                        BatchTransferResult.succeeded(0, createTestTransaction()),
+                        BatchTransferResult.failed(1, new InsufficientFundsException("Insufficient funds on sender card"))));
+
+        // Выполнение и проверка
+        mockMvc.perform(post("/api/transactions/transfer/batch")
+                        .with(user(principal()))
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.results[0].transaction.id").value(1))
+                .andExpect(jsonPath("$.results[1].status").value("FAILED"));
+    }
+
+    @Test
+    void transfer_WithIdempotencyKey_GoesThroughIdempotencyService() throws Exception {
+        // Подготовка
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(1L);
+        request.setToCardId(2L);
+        request.setAmount(BigDecimal.valueOf(100));
+
+        TransactionDTO stored = new TransactionDTO(7L, BigDecimal.valueOf(100), LocalDateTime.now(), 1L, 2L);
+        when(idempotencyService.execute(anyLong(), eq("retry-42"), any(), any())).thenReturn(stored);
+
+        // Выполнение и проверка
+        mockMvc.perform(post("/api/transactions/transfer")
+                        .with(user(principal()))
+                        .with(csrf())
+                        .header("Idempotency-Key", "retry-42")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(7));
+        verify(transactionService, never()).transferBetweenOwnCards(anyLong(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void getUserTransactions_ReturnsPageWithNextCursor() throws Exception {
+        // Подготовка
+        when(transactionService.getUserTransactions(anyLong(), eq(1L), any(), any(), eq("cursor-1"), eq(10)))
+                .thenReturn(new TransactionPage(
+                        List.of(new TransactionDTO(1L, BigDecimal.valueOf(100), LocalDateTime.now(), 1L, 2L)), "cursor-2"));
+
+        // Выполнение и проверка
+        mockMvc.perform(get("/api/transactions")
+                        .with(user(principal()))
+                        .param("cursor", "cursor-1")
+                        .param("size", "10")
+                        .param("cardId", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(1))
+                .andExpect(jsonPath("$.next").value("cursor-2"));
+    }
+
+    @Test
+    void exportUserTransactions_Ndjson_StreamsServiceOutput() throws Exception {
+        // Подготовка
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            out.write("{\"id\":1}\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        }).when(exportService).export(anyLong(), eq(TransactionExportFormat.NDJSON), any());
+
+        // Выполнение и проверка: тело пишется асинхронно, после возврата из контроллера
+        MvcResult result = mockMvc.perform(get("/api/transactions/export")
+                        .with(user(principal()))
+                        .param("format", "ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-ndjson"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"transactions.ndjson\""))
+                .andExpect(content().string("{\"id\":1}\n"));
+    }
+
+    @Test
+    void exportUserTransactions_UnknownFormat_BadRequest() throws Exception {
+        // Выполнение и проверка
+        mockMvc.perform(get("/api/transactions/export")
+                        .with(user(principal()))
+                        .param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void streamUserTransactions_LastEventIdHeader_PassedToFeed() throws Exception {
+        // Подготовка
+        when(feedService.subscribe(1L, "41")).thenReturn(new SseEmitter());
+
+        // Выполнение и проверка
+        mockMvc.perform(get("/api/transactions/stream")
+                        .with(user(principal()))
+                        .header("Last-Event-ID", "41"))
+                .andExpect(request().asyncStarted());
+        verify(feedService).subscribe(1L, "41");
+    }
 }
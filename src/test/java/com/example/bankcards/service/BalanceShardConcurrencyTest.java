@@ -0,0 +1,113 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.CardBalanceShardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.support.PostgresTestSupport;
+import com.example.bankcards.support.TransferServicesConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Import(TransferServicesConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BalanceShardConcurrencyTest extends PostgresTestSupport {
+
+    private static final int SENDERS = 8;
+    private static final int TRANSFERS_PER_SENDER = 200;
+    private static final BigDecimal INITIAL_BALANCE = BigDecimal.valueOf(1_000);
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private BalanceShardService balanceShardService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BankCardRepository cardRepository;
+
+    @Autowired
+    private CardBalanceShardRepository shardRepository;
+
+    @Test
+    void concurrentCredits_WhileSwitchingRepresentation_PreserveBalance() throws Exception {
+        // Arrange
+        User user = userRepository.save(User.builder()
+                .username("hot-card-" + UUID.randomUUID())
+                .password("password")
+                .role(Role.USER)
+                .build());
+        Long hotCardId = createCard(user, BigDecimal.ZERO);
+        List<Long> senderIds = new ArrayList<>();
+        for (int i = 0; i < SENDERS; i++) {
+            senderIds.add(createCard(user, INITIAL_BALANCE));
+        }
+        balanceShardService.shard(hotCardId, 8);
+
+        ExecutorService executor = Executors.newFixedThreadPool(SENDERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> workers = new ArrayList<>();
+        for (Long senderId : senderIds) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_SENDER; i++) {
+                    transactionService.transferBetweenOwnCards(user.getId(), senderId, hotCardId, BigDecimal.ONE);
+                }
+                return null;
+            }));
+        }
+
+        // Act: представление карты меняется на ходу, зачисления не должны теряться
+        start.countDown();
+        Thread.sleep(50);
+        balanceShardService.merge(hotCardId);
+        balanceShardService.shard(hotCardId, 4);
+        for (Future<Void> worker : workers) {
+            worker.get(5, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        // Списание с шардированной карты собирает средства по слотам
+        transactionService.transferBetweenOwnCards(user.getId(), hotCardId, senderIds.get(0), BigDecimal.valueOf(100));
+
+        // Assert
+        BankCard hotCard = cardRepository.findById(hotCardId).orElseThrow();
+        BigDecimal hotBalance = hotCard.getBalance().add(shardRepository.sumBalance(hotCardId));
+        assertEquals(0, BigDecimal.valueOf(SENDERS * TRANSFERS_PER_SENDER - 100).compareTo(hotBalance));
+        BigDecimal total = cardRepository.findAllById(senderIds).stream()
+                .map(BankCard::getBalance)
+                .reduce(hotBalance, BigDecimal::add);
+        assertEquals(0, INITIAL_BALANCE.multiply(BigDecimal.valueOf(SENDERS)).compareTo(total));
+    }
+
+    private Long createCard(User user, BigDecimal balance) {
+        return cardRepository.save(BankCard.builder()
+                .encryptedNumber("encrypted")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(BankCard.CardStatus.ACTIVE)
+                .balance(balance)
+                .user(user)
+                .build()).getId();
+    }
+}
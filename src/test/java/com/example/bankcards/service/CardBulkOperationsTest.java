@@ -0,0 +1,146 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.impl.CardBulkServiceImpl;
+import com.example.bankcards.service.impl.CardServiceImpl;
+import com.example.bankcards.service.impl.EncryptionServiceImpl;
+import com.example.bankcards.support.PostgresTestSupport;
+import com.example.bankcards.support.TransferServicesConfig;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Массовые операции: пачки UPDATE/DELETE по id, правила срока как у одиночных операций, сущности не загружаются
+@Import({TransferServicesConfig.class, CardServiceImpl.class, EncryptionServiceImpl.class, CardBulkServiceImpl.class})
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "encryption.secret-key=0123456789abcdef0123456789abcdef",
+        "encryption.blind-index-key=blind-index-key",
+        "cards.bulk.chunk-size=2"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CardBulkOperationsTest extends PostgresTestSupport {
+
+    @Autowired
+    private CardBulkService bulkService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BankCardRepository cardRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void block_ByOwnerFilter_SkipsExpiredAndAlreadyBlocked() {
+        // Arrange
+        User user = createUser();
+        Long first = createCard(user, BankCard.CardStatus.ACTIVE, LocalDate.now().plusYears(1));
+        Long second = createCard(user, BankCard.CardStatus.ACTIVE, LocalDate.now().plusYears(1));
+        Long third = createCard(user, BankCard.CardStatus.ACTIVE, LocalDate.now().plusYears(1));
+        Long blocked = createCard(user, BankCard.CardStatus.BLOCKED, LocalDate.now().plusYears(1));
+        Long expired = createCard(user, BankCard.CardStatus.ACTIVE, LocalDate.now().minusDays(1));
+        Statistics statistics = statistics();
+
+        // Act
+        CardBulkResult result = bulkService.apply(CardBulkAction.BLOCK, null,
+                new CardSearchFilter(null, null, null, null, null, user.getId()));
+
+        // Assert: 5 карт — три пачки по 2, сущности не загружаются
+        assertEquals(5, result.getMatched());
+        assertEquals(3, result.getAffected());
+        assertEquals(0, statistics.getEntityLoadCount());
+        for (Long cardId : List.of(first, second, third, blocked)) {
+            assertEquals(BankCard.CardStatus.BLOCKED, status(cardId));
+        }
+        assertEquals(BankCard.CardStatus.ACTIVE, status(expired));
+    }
+
+    @Test
+    void activate_ByIds_ExpiredCardStaysBlocked() {
+        // Arrange
+        User user = createUser();
+        Long blocked = createCard(user, BankCard.CardStatus.BLOCKED, LocalDate.now().plusYears(1));
+        Long expired = createCard(user, BankCard.CardStatus.BLOCKED, LocalDate.now().minusDays(1));
+
+        // Act
+        CardBulkResult result = bulkService.apply(CardBulkAction.ACTIVATE, List.of(blocked, expired, -1L), null);
+
+        // Assert
+        assertEquals(3, result.getMatched());
+        assertEquals(1, result.getAffected());
+        assertEquals(BankCard.CardStatus.ACTIVE, status(blocked));
+        assertEquals(BankCard.CardStatus.BLOCKED, status(expired));
+    }
+
+    @Test
+    void delete_ByIds_KeepsCardsWithTransfers() {
+        // Arrange
+        User user = createUser();
+        Long sender = createCard(user, BankCard.CardStatus.ACTIVE, LocalDate.now().plusYears(1));
+        Long receiver = createCard(user, BankCard.CardStatus.ACTIVE, LocalDate.now().plusYears(1));
+        Long unused = createCard(user, BankCard.CardStatus.ACTIVE, LocalDate.now().plusYears(1));
+        transactionService.transferBetweenOwnCards(user.getId(), sender, receiver, BigDecimal.ONE);
+
+        // Act
+        CardBulkResult result = bulkService.apply(CardBulkAction.DELETE, List.of(sender, receiver, unused), null);
+
+        // Assert
+        assertEquals(3, result.getMatched());
+        assertEquals(1, result.getAffected());
+        assertTrue(cardRepository.existsById(sender));
+        assertTrue(cardRepository.existsById(receiver));
+        assertFalse(cardRepository.existsById(unused));
+    }
+
+    private BankCard.CardStatus status(Long cardId) {
+        return cardRepository.findById(cardId).orElseThrow().getStatus();
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    private User createUser() {
+        return userRepository.save(User.builder()
+                .username("bulk-" + UUID.randomUUID())
+                .password("password")
+                .role(Role.USER)
+                .build());
+    }
+
+    private Long createCard(User user, BankCard.CardStatus status, LocalDate expiryDate) {
+        return cardRepository.save(BankCard.builder()
+                .encryptedNumber("encrypted")
+                .last4("1234")
+                .expiryDate(expiryDate)
+                .status(status)
+                .balance(BigDecimal.valueOf(1_000))
+                .user(user)
+                .build()).getId();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.service.impl.CardBulkServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardBulkServiceTest {
+
+    @Mock
+    private CardService cardService;
+
+    @Mock
+    private BankCardRepository cardRepository;
+
+    private CardBulkServiceImpl bulkService;
+
+    @BeforeEach
+    void setUp() {
+        bulkService = new CardBulkServiceImpl(cardService, cardRepository, 2);
+    }
+
+    @Test
+    void apply_CardIds_SortedDistinctChunks() {
+        // Arrange
+        when(cardService.blockCards(anyList())).thenReturn(2, 1);
+
+        // Act
+        CardBulkResult result = bulkService.apply(CardBulkAction.BLOCK, List.of(3L, 1L, 2L, 1L), null);
+
+        // Assert
+        assertEquals(3, result.getMatched());
+        assertEquals(3, result.getAffected());
+        verify(cardService).blockCards(List.of(1L, 2L));
+        verify(cardService).blockCards(List.of(3L));
+        verifyNoInteractions(cardRepository);
+    }
+
+    @Test
+    void apply_Filter_WalksIdsInChunksUntilEmpty() {
+        // Arrange
+        when(cardRepository.findIds(any(), eq(2)))
+                .thenReturn(List.of(1L, 2L))
+                .thenReturn(List.of(5L))
+                .thenReturn(List.of());
+        when(cardService.deleteCards(anyList())).thenReturn(1, 1);
+
+        // Act
+        CardBulkResult result = bulkService.apply(CardBulkAction.DELETE, null, filter(BankCard.CardStatus.BLOCKED));
+
+        // Assert: одна карта из первой пачки с историей и не удаляется
+        assertEquals(3, result.getMatched());
+        assertEquals(2, result.getAffected());
+        verify(cardService).deleteCards(List.of(1L, 2L));
+        verify(cardService).deleteCards(List.of(5L));
+        verify(cardRepository, times(3)).findIds(any(), eq(2));
+    }
+
+    @Test
+    void apply_NeitherIdsNorFilter_ThrowsException() {
+        // Act & Assert: пустой фильтр затронул бы все карты
+        assertThrows(CardOperationException.class,
+                () -> bulkService.apply(CardBulkAction.BLOCK, List.of(), filter(null)));
+        verifyNoInteractions(cardService, cardRepository);
+    }
+
+    @Test
+    void apply_BothIdsAndFilter_ThrowsException() {
+        // Act & Assert
+        assertThrows(CardOperationException.class,
+                () -> bulkService.apply(CardBulkAction.ACTIVATE, List.of(1L), filter(BankCard.CardStatus.BLOCKED)));
+        verifyNoInteractions(cardService, cardRepository);
+    }
+
+    private static CardSearchFilter filter(BankCard.CardStatus status) {
+        return new CardSearchFilter(status, null, null, null, null, null);
+    }
+}
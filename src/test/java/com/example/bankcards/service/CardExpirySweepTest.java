@@ -0,0 +1,136 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.impl.CardExpirySweepJob;
+import com.example.bankcards.service.impl.CardServiceImpl;
+import com.example.bankcards.service.impl.EncryptionServiceImpl;
+import com.example.bankcards.support.PostgresTestSupport;
+import com.example.bankcards.support.TransferServicesConfig;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Загрузка истёкшей карты не пишет в БД; статус меняют только пачки UPDATE CardExpirySweepJob
+@Import({TransferServicesConfig.class, CardServiceImpl.class, EncryptionServiceImpl.class, CardExpirySweepJob.class})
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "encryption.secret-key=0123456789abcdef0123456789abcdef",
+        "encryption.blind-index-key=blind-index-key",
+        "cards.expiry.chunk-size=2"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CardExpirySweepTest extends PostgresTestSupport {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private CardExpirySweepJob sweepJob;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BankCardRepository cardRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void transferBatch_LoadsExpiredCard_WritesNoStrayUpdate() {
+        // Arrange: карта истекла вчера, проход ещё не выполнялся
+        User user = createUser();
+        Long first = createCard(user, LocalDate.now().plusYears(1));
+        Long second = createCard(user, LocalDate.now().plusYears(1));
+        Long expired = createCard(user, LocalDate.now().minusDays(1));
+        Statistics statistics = statistics();
+
+        // Act: в пакете все три карты загружаются FOR UPDATE, перевод с истёкшей карты отклоняется
+        List<BatchTransferResult> results = transactionService.transferBatch(user.getId(),
+                List.of(transfer(first, second), transfer(expired, first)), BatchTransferMode.BEST_EFFORT);
+
+        // Assert: UPDATE только балансов двух карт успешного перевода
+        assertEquals(BatchTransferResult.Status.SUCCEEDED, results.get(0).getStatus());
+        assertEquals(BatchTransferResult.Status.FAILED, results.get(1).getStatus());
+        assertEquals(2, statistics.getEntityUpdateCount());
+        assertEquals(BankCard.CardStatus.ACTIVE, cardRepository.findById(expired).orElseThrow().getStatus());
+    }
+
+    @Test
+    void sweep_ExpiresCardsInChunks() {
+        // Arrange: сначала убираем истёкшие карты, оставленные другими тестами
+        sweepJob.sweep();
+        User user = createUser();
+        List<Long> expired = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expired.add(createCard(user, LocalDate.now().minusDays(i + 1)));
+        }
+        Long active = createCard(user, LocalDate.now());
+        Statistics statistics = statistics();
+
+        // Act
+        int swept = sweepJob.sweep();
+
+        // Assert: пачки по 2 — три UPDATE (2 + 2 + 1), сущности не загружаются
+        assertEquals(5, swept);
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getEntityUpdateCount());
+        for (Long cardId : expired) {
+            assertEquals(BankCard.CardStatus.EXPIRED, cardRepository.findById(cardId).orElseThrow().getStatus());
+        }
+        assertEquals(BankCard.CardStatus.ACTIVE, cardRepository.findById(active).orElseThrow().getStatus());
+        assertEquals(0, sweepJob.sweep());
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    private User createUser() {
+        return userRepository.save(User.builder()
+                .username("expiry-" + UUID.randomUUID())
+                .password("password")
+                .role(Role.USER)
+                .build());
+    }
+
+    private Long createCard(User user, LocalDate expiryDate) {
+        return cardRepository.save(BankCard.builder()
+                .encryptedNumber("encrypted")
+                .expiryDate(expiryDate)
+                .status(BankCard.CardStatus.ACTIVE)
+                .balance(BigDecimal.valueOf(1_000))
+                .user(user)
+                .build()).getId();
+    }
+
+    private static TransferRequest transfer(Long from, Long to) {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(from);
+        request.setToCardId(to);
+        request.setAmount(BigDecimal.ONE);
+        return request;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardImportEventDTO;
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.impl.CardImportServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CardImportServiceTest {
+
+    @Mock
+    private CardService cardService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private BankCardRepository cardRepository;
+
+    @Mock
+    private EncryptionService encryptionService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private CardImportServiceImpl importService;
+
+    @BeforeEach
+    void setUp() {
+        importService = new CardImportServiceImpl(cardService, userRepository, cardRepository, encryptionService, objectMapper, 2);
+    }
+
+    @Test
+    void importCards_MixedRows_IssuesValidAndReportsEachInvalidRow() throws IOException {
+        // Arrange: пользователя 2 нет, строки 4 и 5 не проходят проверку
+        String csv = """
+                userId,cardNumber,expiry
+                1,1234567812345678,12/27
+                2,1111222233334444,01/28
+                1,12345,12/27
+                1,5555666677778888,13/27
+                3,9999000011112222,06/29
+                """;
+        when(userRepository.findExistingIds(any())).thenAnswer(invocation -> {
+            Collection<Long> userIds = invocation.getArgument(0);
+            return userIds.stream().filter(Set.of(1L, 3L)::contains).toList();
+        });
+        when(encryptionService.encrypt(anyString())).thenAnswer(invocation -> "enc-" + invocation.getArgument(0));
+        when(encryptionService.blindIndex(anyString())).thenAnswer(invocation -> "hash-" + invocation.getArgument(0));
+        when(cardService.issueCards(any())).thenAnswer(invocation -> issued(invocation.getArgument(0)));
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+
+        // Act
+        CardImportEventDTO summary = importService.importCards(input(csv), report);
+
+        // Assert
+        assertEquals(5L, summary.getProcessed());
+        assertEquals(2L, summary.getIssued());
+        assertEquals(3L, summary.getFailed());
+
+        List<CardImportEventDTO> events = events(report);
+        assertEquals(List.of(
+                CardImportEventDTO.error(3, "User not found"),
+                CardImportEventDTO.progress(CardImportEventDTO.Type.PROGRESS, 2, 1, 1),
+                CardImportEventDTO.error(4, "Card number must be 16 digits"),
+                CardImportEventDTO.error(5, "Invalid expiry date format. Use MM/yy"),
+                CardImportEventDTO.progress(CardImportEventDTO.Type.PROGRESS, 5, 2, 3),
+                CardImportEventDTO.progress(CardImportEventDTO.Type.SUMMARY, 5, 2, 3)), events);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CardIssueCommand>> commands = ArgumentCaptor.forClass(List.class);
+        verify(cardService, times(2)).issueCards(commands.capture());
+        CardIssueCommand first = commands.getAllValues().get(0).get(0);
+        assertEquals(1L, first.getUserId());
+        assertEquals("enc-1234567812345678", first.getEncryptedNumber());
+        assertEquals("5678", first.getLast4());
+        assertEquals("hash-1234567812345678", first.getNumberHash());
+        assertEquals(LocalDate.of(2027, 12, 31), first.getExpiryDate());
+    }
+
+    @Test
+    void importCards_ChunkInsertFails_ReportsChunkRowsAndContinues() throws IOException {
+        // Arrange
+        String csv = """
+                1,1234567812345678,12/27
+                1,1111222233334444,01/28
+                1,5555666677778888,02/28
+                """;
+        when(userRepository.findExistingIds(any())).thenReturn(List.of(1L));
+        when(encryptionService.encrypt(anyString())).thenReturn("enc");
+        when(encryptionService.blindIndex(anyString())).thenAnswer(invocation -> "hash-" + invocation.getArgument(0));
+        when(cardService.issueCards(any()))
+                .thenThrow(new IllegalStateException("connection reset"))
+                .thenAnswer(invocation -> issued(invocation.getArgument(0)));
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+
+        // Act
+        CardImportEventDTO summary = importService.importCards(input(csv), report);
+
+        // Assert: первая пачка из двух строк не выпущена, третья строка выпущена
+        assertEquals(1L, summary.getIssued());
+        assertEquals(2L, summary.getFailed());
+        List<CardImportEventDTO> events = events(report);
+        assertEquals(CardImportEventDTO.error(1, "Card was not issued: connection reset"), events.get(0));
+        assertEquals(CardImportEventDTO.error(2, "Card was not issued: connection reset"), events.get(1));
+    }
+
+    @Test
+    void importCards_DuplicateNumbers_RejectsIssuedAndRepeatedInFile() throws IOException {
+        // Arrange: первый номер уже выпущен, второй повторяется в пачке
+        String csv = """
+                1,1234567812345678,12/27
+                1,1111222233334444,01/28
+                1,1111222233334444,02/28
+                """;
+        importService = new CardImportServiceImpl(cardService, userRepository, cardRepository, encryptionService,
+                objectMapper, 10);
+        when(userRepository.findExistingIds(any())).thenReturn(List.of(1L));
+        when(encryptionService.encrypt(anyString())).thenReturn("enc");
+        when(encryptionService.blindIndex(anyString())).thenAnswer(invocation -> "hash-" + invocation.getArgument(0));
+        when(cardRepository.findExistingNumberHashes(any())).thenReturn(List.of("hash-1234567812345678"));
+        when(cardService.issueCards(any())).thenAnswer(invocation -> issued(invocation.getArgument(0)));
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+
+        // Act
+        CardImportEventDTO summary = importService.importCards(input(csv), report);
+
+        // Assert
+        assertEquals(1L, summary.getIssued());
+        assertEquals(2L, summary.getFailed());
+        List<CardImportEventDTO> events = events(report);
+        assertEquals(CardImportEventDTO.error(1, "Card with this number already exists"), events.get(0));
+        assertEquals(CardImportEventDTO.error(3, "Card with this number already exists"), events.get(1));
+    }
+
+    private static ByteArrayInputStream input(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<BankCard> issued(List<CardIssueCommand> commands) {
+        List<BankCard> cards = new ArrayList<>();
+        commands.forEach(command -> cards.add(new BankCard()));
+        return cards;
+    }
+
+    private List<CardImportEventDTO> events(ByteArrayOutputStream report) throws IOException {
+        List<CardImportEventDTO> events = new ArrayList<>();
+        for (String line : report.toString(StandardCharsets.UTF_8).split("\n")) {
+            events.add(objectMapper.readValue(line, CardImportEventDTO.class));
+        }
+        return events;
+    }
+}
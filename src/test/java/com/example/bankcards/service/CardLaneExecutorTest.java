@@ -0,0 +1,76 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.service.impl.CardLaneExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardLaneExecutorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CardLaneExecutor laneExecutor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        laneExecutor = new CardLaneExecutor(meterRegistry, 4, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        laneExecutor.shutdown();
+    }
+
+    @Test
+    void execute_SameKey_RunsOneTaskAtATime() throws Exception {
+        // Arrange
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            results.add(callers.submit(() -> laneExecutor.execute(42L, () -> {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                Thread.onSpinWait();
+                return active.decrementAndGet();
+            })));
+        }
+        for (Future<Integer> result : results) {
+            result.get(10, TimeUnit.SECONDS);
+        }
+        callers.shutdown();
+
+        // Assert
+        assertEquals(1, maxActive.get());
+    }
+
+    @Test
+    void execute_TaskThrows_RethrowsOriginalException() {
+        // Act & Assert
+        assertThrows(InsufficientFundsException.class, () -> laneExecutor.execute(1L, () -> {
+            throw new InsufficientFundsException("Insufficient funds on sender card");
+        }));
+    }
+
+    @Test
+    void constructor_RegistersQueueDepthGaugePerLane() {
+        // Assert
+        assertEquals(4, meterRegistry.get("transfers.lane.queue.depth").gauges().size());
+        assertEquals(0.0, meterRegistry.get("transfers.lane.queue.depth").tag("lane", "0").gauge().value());
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.service.impl.CardNumberBackfillJob;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CardNumberBackfillJobTest {
+
+    @Mock
+    private CardService cardService;
+
+    @Mock
+    private BankCardRepository cardRepository;
+
+    @Test
+    void backfillAll_DuplicateNumberInParallelChunk_RetriesChunkCardByCard() {
+        // Arrange: пачка [1, 2] упёрлась в уникальный индекс из-за дубля в соседней пачке
+        when(cardRepository.findIdsWithoutNumberColumns()).thenReturn(List.of(1L, 2L, 3L));
+        when(cardService.backfillNumberColumns(List.of(1L, 2L)))
+                .thenThrow(new DataIntegrityViolationException("ux_bank_cards_number_hash"));
+        when(cardService.backfillNumberColumns(List.of(1L))).thenReturn(1);
+        when(cardService.backfillNumberColumns(List.of(2L))).thenReturn(1);
+        when(cardService.backfillNumberColumns(List.of(3L))).thenReturn(1);
+        when(cardRepository.findIdsWithoutNumberHash()).thenReturn(List.of());
+
+        // Act
+        int updated = job().backfillAll();
+
+        // Assert
+        assertEquals(3, updated);
+        verify(cardService).backfillNumberColumns(List.of(1L));
+        verify(cardService).backfillNumberColumns(List.of(2L));
+    }
+
+    @Test
+    void backfillAll_ChunkFails_OtherChunksStillApplied() {
+        // Arrange
+        when(cardRepository.findIdsWithoutNumberColumns()).thenReturn(List.of(1L, 2L, 3L));
+        when(cardService.backfillNumberColumns(List.of(1L, 2L))).thenThrow(new IllegalStateException("bad key"));
+        when(cardService.backfillNumberColumns(List.of(3L))).thenReturn(1);
+        when(cardRepository.findIdsWithoutNumberHash()).thenReturn(List.of(1L, 2L));
+
+        // Act: исключение не выходит наружу — при запуске приложения оно бы его остановило
+        int updated = job().backfillAll();
+
+        // Assert
+        assertEquals(1, updated);
+    }
+
+    private CardNumberBackfillJob job() {
+        return new CardNumberBackfillJob(cardService, cardRepository, 2, 2, false);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.service.impl.CardOwnerCacheImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardOwnerCacheTest {
+
+    @Mock
+    private BankCardRepository cardRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CardOwnerCacheImpl ownerCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ownerCache = new CardOwnerCacheImpl(cardRepository, meterRegistry, 2, 300);
+    }
+
+    @Test
+    void findOwnerId_RepeatedCheck_AnsweredFromMemory() {
+        // Arrange
+        when(cardRepository.findOwnerId(1L)).thenReturn(Optional.of(7L));
+
+        // Act
+        Optional<Long> first = ownerCache.findOwnerId(1L);
+        Optional<Long> second = ownerCache.findOwnerId(1L);
+
+        // Assert
+        assertEquals(Optional.of(7L), first);
+        assertEquals(Optional.of(7L), second);
+        verify(cardRepository, times(1)).findOwnerId(1L);
+        assertEquals(1.0, meterRegistry.get("cards.owner.cache.gets").tag("result", "hit").counter().count());
+        assertEquals(0.5, meterRegistry.get("cards.owner.cache.hit.ratio").gauge().value());
+        assertEquals(1.0, meterRegistry.get("cards.owner.cache.size").gauge().value());
+    }
+
+    @Test
+    void findOwnerId_MissingCard_NotRemembered() {
+        // Arrange
+        when(cardRepository.findOwnerId(1L)).thenReturn(Optional.empty()).thenReturn(Optional.of(7L));
+
+        // Act
+        Optional<Long> missing = ownerCache.findOwnerId(1L);
+        Optional<Long> issued = ownerCache.findOwnerId(1L);
+
+        // Assert
+        assertTrue(missing.isEmpty());
+        assertEquals(Optional.of(7L), issued);
+    }
+
+    @Test
+    void findOwnerId_OverMaxSize_EvictsEarliestLoaded() {
+        // Arrange
+        when(cardRepository.findOwnerId(anyLong())).thenAnswer(invocation -> Optional.of(7L));
+
+        // Act
+        ownerCache.findOwnerId(1L);
+        ownerCache.findOwnerId(2L);
+        ownerCache.findOwnerId(3L);
+        ownerCache.findOwnerId(3L);
+        ownerCache.findOwnerId(2L);
+        ownerCache.findOwnerId(1L);
+
+        // Assert: карта 1 загружена раньше всех и вытеснена, карты 2 и 3 — нет
+        verify(cardRepository, times(2)).findOwnerId(1L);
+        verify(cardRepository, times(1)).findOwnerId(2L);
+        verify(cardRepository, times(1)).findOwnerId(3L);
+        assertEquals(2.0, meterRegistry.get("cards.owner.cache.size").gauge().value());
+    }
+
+    @Test
+    void findOwnerId_CardDeletedDuringRead_NotReinserted() {
+        // Arrange: карта удаляется, пока промах читает владельца, который видел её до коммита
+        when(cardRepository.findOwnerId(1L))
+                .thenAnswer(invocation -> {
+                    ownerCache.evict(List.of(1L));
+                    return Optional.of(7L);
+                })
+                .thenReturn(Optional.empty());
+
+        // Act
+        Optional<Long> stale = ownerCache.findOwnerId(1L);
+        Optional<Long> afterDelete = ownerCache.findOwnerId(1L);
+
+        // Assert
+        assertEquals(Optional.of(7L), stale);
+        assertTrue(afterDelete.isEmpty());
+        verify(cardRepository, times(2)).findOwnerId(1L);
+        assertEquals(0.0, meterRegistry.get("cards.owner.cache.size").gauge().value());
+    }
+
+    @Test
+    void constructor_Ttl_ExposedAsGauge() {
+        // Assert
+        assertEquals(300.0, meterRegistry.get("cards.owner.cache.ttl").gauge().value());
+    }
+
+    @Test
+    void findOwnerId_ExpiredEntry_ReloadedFromDatabase() {
+        // Arrange
+        ownerCache = new CardOwnerCacheImpl(cardRepository, new SimpleMeterRegistry(), 2, 0);
+        when(cardRepository.findOwnerId(1L)).thenReturn(Optional.of(7L));
+
+        // Act
+        ownerCache.findOwnerId(1L);
+        ownerCache.findOwnerId(1L);
+
+        // Assert
+        verify(cardRepository, times(2)).findOwnerId(1L);
+    }
+
+    @Test
+    void evict_DeletedCard_NextCheckGoesToDatabase() {
+        // Arrange
+        when(cardRepository.findOwnerId(1L)).thenReturn(Optional.of(7L)).thenReturn(Optional.empty());
+        ownerCache.findOwnerId(1L);
+
+        // Act
+        ownerCache.evict(List.of(1L));
+
+        // Assert
+        assertTrue(ownerCache.findOwnerId(1L).isEmpty());
+        verify(cardRepository, times(2)).findOwnerId(1L);
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.InvalidCursorException;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.impl.CardServiceImpl;
+import com.example.bankcards.service.impl.EncryptionServiceImpl;
+import com.example.bankcards.support.PostgresTestSupport;
+import com.example.bankcards.support.TransferServicesConfig;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Поиск карт администратором: фильтры Specification, keyset-страницы, выборка без сущностей
+@Import({TransferServicesConfig.class, CardServiceImpl.class, EncryptionServiceImpl.class})
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "encryption.secret-key=0123456789abcdef0123456789abcdef",
+        "encryption.blind-index-key=blind-index-key"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CardSearchTest extends PostgresTestSupport {
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BankCardRepository cardRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private BalanceShardService balanceShardService;
+
+    @Test
+    void searchCards_WalkAllPages_ReturnsEveryCardOnceInIdOrder() {
+        // Arrange
+        User user = createUser();
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            created.add(createCard(user, BankCard.CardStatus.ACTIVE, LocalDate.now().plusYears(1), BigDecimal.TEN));
+        }
+        Statistics statistics = statistics();
+
+        // Act
+        List<CardDTO> all = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CardPage page = cardService.searchCards(filter(null, null, null, null, null, user.getId()), cursor, 10);
+            all.addAll(page.getItems());
+            cursor = page.getNext();
+            pages++;
+        } while (cursor != null);
+
+        // Assert: один SELECT на страницу, сущности карт не создаются
+        assertEquals(3, pages);
+        assertEquals(created, all.stream().map(CardDTO::getId).toList());
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals("**** **** **** 1234", all.get(0).getMaskedNumber());
+        assertEquals(user.getId(), all.get(0).getUserId());
+    }
+
+    @Test
+    void searchCards_Filters_CombinedWithAnd() {
+        // Arrange
+        User user = createUser();
+        LocalDate inWindow = LocalDate.now().plusMonths(6);
+        Long match = createCard(user, BankCard.CardStatus.ACTIVE, inWindow, BigDecimal.valueOf(500));
+        createCard(user, BankCard.CardStatus.BLOCKED, inWindow, BigDecimal.valueOf(500));
+        createCard(user, BankCard.CardStatus.ACTIVE, LocalDate.now().plusYears(3), BigDecimal.valueOf(500));
+        createCard(user, BankCard.CardStatus.ACTIVE, inWindow, BigDecimal.valueOf(5_000));
+
+        // Act
+        CardPage page = cardService.searchCards(filter(BankCard.CardStatus.ACTIVE,
+                LocalDate.now(), LocalDate.now().plusYears(1),
+                BigDecimal.valueOf(100), BigDecimal.valueOf(1_000), user.getId()), null, 10);
+
+        // Assert
+        assertEquals(List.of(match), page.getItems().stream().map(CardDTO::getId).toList());
+        assertNull(page.getNext());
+    }
+
+    @Test
+    void searchCards_ShardedCards_BalanceFilterAndResultUseSlotTotals() {
+        // Arrange: у шардированных карт в колонке мало, основная часть денег — в слотах
+        User user = createUser();
+        Long inRange = createCard(user, BankCard.CardStatus.ACTIVE, LocalDate.now().plusYears(1), BigDecimal.TEN);
+        balanceShardService.shard(inRange, 4);
+        balanceShardService.credit(inRange, 4, BigDecimal.valueOf(490));
+        Long aboveRange = createCard(user, BankCard.CardStatus.ACTIVE, LocalDate.now().plusYears(1), BigDecimal.valueOf(500));
+        balanceShardService.shard(aboveRange, 4);
+        balanceShardService.credit(aboveRange, 4, BigDecimal.valueOf(4_500));
+        Long plain = createCard(user, BankCard.CardStatus.ACTIVE, LocalDate.now().plusYears(1), BigDecimal.valueOf(700));
+        Statistics statistics = statistics();
+
+        // Act
+        CardPage page = cardService.searchCards(filter(null, null, null,
+                BigDecimal.valueOf(100), BigDecimal.valueOf(1_000), user.getId()), null, 10);
+
+        // Assert: фильтр и ответ видят один и тот же баланс; слоты страницы — одним запросом
+        assertEquals(List.of(inRange, plain), page.getItems().stream().map(CardDTO::getId).toList());
+        assertEquals(0, BigDecimal.valueOf(500).compareTo(page.getItems().get(0).getBalance()));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void searchCards_ExpiredBeforeSweep_FoundAsExpired() {
+        // Arrange: срок истёк, но CardExpirySweepJob ещё не менял статус
+        User user = createUser();
+        Long expired = createCard(user, BankCard.CardStatus.ACTIVE, LocalDate.now().minusDays(1), BigDecimal.TEN);
+        Long active = createCard(user, BankCard.CardStatus.ACTIVE, LocalDate.now(), BigDecimal.TEN);
+
+        // Act
+        CardPage expiredPage = cardService.searchCards(
+                filter(BankCard.CardStatus.EXPIRED, null, null, null, null, user.getId()), null, 10);
+        CardPage activePage = cardService.searchCards(
+                filter(BankCard.CardStatus.ACTIVE, null, null, null, null, user.getId()), null, 10);
+
+        // Assert
+        assertEquals(List.of(expired), expiredPage.getItems().stream().map(CardDTO::getId).toList());
+        assertEquals(BankCard.CardStatus.EXPIRED, expiredPage.getItems().get(0).getStatus());
+        assertEquals(List.of(active), activePage.getItems().stream().map(CardDTO::getId).toList());
+    }
+
+    @Test
+    void searchCards_InvalidCursor_ThrowsException() {
+        assertThrows(InvalidCursorException.class, () -> cardService.searchCards(
+                filter(null, null, null, null, null, null), "not-a-cursor", 10));
+    }
+
+    private static CardSearchFilter filter(BankCard.CardStatus status, LocalDate expiresFrom, LocalDate expiresTo,
+                                           BigDecimal minBalance, BigDecimal maxBalance, Long userId) {
+        return new CardSearchFilter(status, expiresFrom, expiresTo, minBalance, maxBalance, userId);
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    private User createUser() {
+        return userRepository.save(User.builder()
+                .username("search-" + UUID.randomUUID())
+                .password("password")
+                .role(Role.USER)
+                .build());
+    }
+
+    private Long createCard(User user, BankCard.CardStatus status, LocalDate expiryDate, BigDecimal balance) {
+        return cardRepository.save(BankCard.builder()
+                .encryptedNumber("encrypted")
+                .last4("1234")
+                .expiryDate(expiryDate)
+                .status(status)
+                .balance(balance)
+                .user(user)
+                .build()).getId();
+    }
+}
@@ -3,6 +3,7 @@ package com.example.bankcards.service;
 import com.example.bankcards.entity.BankCard;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.exception.DuplicateCardNumberException;
 import com.example.bankcards.repository.BankCardRepository;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.service.impl.CardServiceImpl;
@@ -14,6 +15,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -32,6 +34,12 @@ class CardServiceImplTest {
     @Mock
     private EncryptionService encryptionService;
 
+    @Mock
+    private BalanceShardService balanceShardService;
+
+    @Mock
+    private CardOwnerCache ownerCache;
+
     @InjectMocks
     private CardServiceImpl cardService;
 
@@ -43,7 +51,12 @@ class CardServiceImplTest {
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
         when(encryptionService.encrypt("1234567812345678")).thenReturn("encrypted");
-        when(cardRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(encryptionService.blindIndex("1234567812345678")).thenReturn("hash");
+        when(cardRepository.save(any())).thenAnswer(inv -> {
+            BankCard saved = inv.getArgument(0);
+            saved.setId(10L);
+            return saved;
+        });
 
         // Act
         BankCard card = cardService.createCard(1L, "1234567812345678", "12/25");
@@ -51,12 +64,31 @@ class CardServiceImplTest {
         // Assert
         assertNotNull(card);
         assertEquals("encrypted", card.getEncryptedNumber());
+        assertEquals("5678", card.getLast4());
+        assertEquals("hash", card.getNumberHash());
+        verify(ownerCache).evict(List.of(10L));
         assertEquals(LocalDate.of(2025, 12, 31), card.getExpiryDate());
         assertEquals(BankCard.CardStatus.ACTIVE, card.getStatus());
         assertEquals(BigDecimal.ZERO, card.getBalance());
         assertEquals(user, card.getUser());
     }
 
+    @Test
+    void createCard_DuplicateNumber_ThrowsException() {
+        // Arrange
+        User user = new User();
+        user.setId(1L);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(encryptionService.blindIndex("1234567812345678")).thenReturn("hash");
+        when(cardRepository.existsByNumberHash("hash")).thenReturn(true);
+
+        // Act & Assert
+        assertThrows(DuplicateCardNumberException.class,
+                () -> cardService.createCard(1L, "1234567812345678", "12/25"));
+        verify(cardRepository, never()).save(any());
+    }
+
     @Test
     void blockCard_ActiveCard_Success() {
         // Arrange
@@ -126,7 +158,7 @@ class CardServiceImplTest {
     @Test
     void isCardOwnedByUser_ValidOwnership_ReturnsTrue() {
         // Arrange
-        when(cardRepository.findByUserIdAndCardId(1L, 1L)).thenReturn(Optional.of(new BankCard()));
+        when(ownerCache.findOwnerId(1L)).thenReturn(Optional.of(1L));
 
         // Act & Assert
         assertTrue(cardService.isCardOwnedByUser(1L, 1L));
@@ -135,9 +167,70 @@ class CardServiceImplTest {
     @Test
     void isCardOwnedByUser_InvalidOwnership_ReturnsFalse() {
         // Arrange
-        when(cardRepository.findByUserIdAndCardId(1L, 1L)).thenReturn(Optional.empty());
+        when(ownerCache.findOwnerId(1L)).thenReturn(Optional.of(2L));
 
         // Act & Assert
         assertFalse(cardService.isCardOwnedByUser(1L, 1L));
     }
+
+    @Test
+    void isCardOwnedByUser_MissingCard_ReturnsFalse() {
+        // Arrange
+        when(ownerCache.findOwnerId(1L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertFalse(cardService.isCardOwnedByUser(1L, 1L));
+    }
+
+    @Test
+    void deleteCard_ExistingCard_EvictsOwner() {
+        // Arrange
+        BankCard card = new BankCard();
+        card.setId(1L);
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(card));
+
+        // Act
+        cardService.deleteCard(1L);
+
+        // Assert
+        verify(cardRepository).delete(card);
+        verify(ownerCache).evict(List.of(1L));
+    }
+
+    @Test
+    void getCardBalance_ShardedCard_AddsShards() {
+        // Arrange
+        BankCard card = new BankCard();
+        card.setId(1L);
+        card.setBalance(BigDecimal.valueOf(100));
+        card.setShardCount(4);
+
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(card));
+        when(balanceShardService.getShardedBalance(1L)).thenReturn(BigDecimal.valueOf(250));
+
+        // Act
+        BigDecimal balance = cardService.getCardBalance(1L);
+
+        // Assert
+        assertEquals(BigDecimal.valueOf(350), balance);
+    }
+
+    @Test
+    void backfillNumberColumns_DecryptsOnlyCardsWithoutColumns() {
+        // Arrange
+        BankCardRepository.EncryptedNumber card = mock(BankCardRepository.EncryptedNumber.class);
+        when(card.getId()).thenReturn(2L);
+        when(card.getEncryptedNumber()).thenReturn("encrypted");
+        when(cardRepository.findEncryptedNumbersWithoutNumberColumns(List.of(1L, 2L))).thenReturn(List.of(card));
+        when(encryptionService.decrypt("encrypted")).thenReturn("1234567812345678");
+        when(encryptionService.blindIndex("1234567812345678")).thenReturn("hash");
+        when(cardRepository.setNumberColumns(2L, "5678", "hash")).thenReturn(1);
+
+        // Act
+        int updated = cardService.backfillNumberColumns(List.of(1L, 2L));
+
+        // Assert
+        assertEquals(1, updated);
+        verify(encryptionService, times(1)).decrypt(anyString());
+    }
 }
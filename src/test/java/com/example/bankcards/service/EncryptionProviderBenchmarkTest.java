@@ -0,0 +1,109 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.service.impl.EncryptionServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Расшифровка номера карты: Bouncy Castle против AES из JDK (SunJCE, интринсики AES-NI),
+// Cipher на каждый вызов, как было раньше, против пула EncryptionServiceImpl. Пропускная способность
+// и байты на операцию (gc.alloc.rate.norm) при 4 потоках. Идёт около 45 с, поэтому только в профиле benchmark
+@Slf4j
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EncryptionProviderBenchmarkTest {
+
+    private static final String SECRET_KEY = "0123456789abcdef0123456789abcdef";
+    private static final String CARD_NUMBER = "1234567812345678";
+
+    @Param({"BC", "SunJCE"})
+    public String provider;
+
+    private EncryptionServiceImpl pooled;
+    private String encrypted;
+
+    @Setup
+    public void setUp() {
+        pooled = new EncryptionServiceImpl(SECRET_KEY, "blind-index-key", provider, 64);
+        encrypted = pooled.encrypt(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String perCallDecrypt() throws Exception {
+        SecretKeySpec keySpec = new SecretKeySpec(SECRET_KEY.getBytes(), "AES");
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding", provider);
+        cipher.init(Cipher.DECRYPT_MODE, keySpec);
+        return new String(cipher.doFinal(Base64.getDecoder().decode(encrypted)), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String pooledDecrypt() {
+        return pooled.decrypt(encrypted);
+    }
+
+    @Benchmark
+    public String pooledEncrypt() {
+        return pooled.encrypt(CARD_NUMBER);
+    }
+
+    @Test
+    void pooledCiphers_AllocateLessThanCipherPerCall() throws RunnerException {
+        // Arrange
+        Options options = new OptionsBuilder()
+                .include(EncryptionProviderBenchmarkTest.class.getName() + "\\.")
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .threads(4)
+                .warmupIterations(2)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(3)
+                .measurementTime(TimeValue.seconds(1))
+                .build();
+
+        // Act
+        Collection<RunResult> results = new Runner(options).run();
+
+        // Assert
+        Map<String, Double> allocations = new HashMap<>();
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            String name = benchmark.substring(benchmark.lastIndexOf('.') + 1) + "/" + result.getParams().getParam("provider");
+            double bytesPerOp = result.getSecondaryResults().get("gc.alloc.rate.norm").getScore();
+            allocations.put(name, bytesPerOp);
+            log.info("{}: {} ops/ms, {} B/op", name, String.format("%.1f", result.getPrimaryResult().getScore()),
+                    String.format("%.1f", bytesPerOp));
+        }
+        for (String provider : new String[]{"BC", "SunJCE"}) {
+            assertTrue(allocations.get("pooledDecrypt/" + provider) < allocations.get("perCallDecrypt/" + provider),
+                    "Pooled decrypt should allocate less than a Cipher per call for " + provider);
+        }
+    }
+}
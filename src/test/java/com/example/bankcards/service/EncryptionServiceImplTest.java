@@ -5,19 +5,29 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(MockitoExtension.class)
 class EncryptionServiceImplTest {
 
+    // AES-256: ключ ровно 32 байта
+    private static final String SECRET_KEY = "0123456789abcdef0123456789abcdef";
+
     private EncryptionServiceImpl encryptionService;
 
     @BeforeEach
     void setUp() {
-        encryptionService = new EncryptionServiceImpl();
-        ReflectionTestUtils.setField(encryptionService, "secretKey", "32-char-secret-key-1234567890");
+        encryptionService = new EncryptionServiceImpl(SECRET_KEY, "blind-index-key", "BC", 4);
     }
 
     @Test
@@ -48,8 +58,105 @@ class EncryptionServiceImplTest {
     }
 
     @Test
-    void encrypt_EmptyString_ThrowsException() {
-        assertThrows(RuntimeException.class, () -> encryptionService.encrypt(""));
+    void maskLast4_ReturnsMaskedWithoutDecrypting() {
+        // Act
+        String masked = encryptionService.maskLast4("5678");
+
+        // Assert
+        assertEquals("**** **** **** 5678", masked);
+    }
+
+    @Test
+    void blindIndex_SameNumber_SameValueWithoutPlaintext() {
+        // Act
+        String first = encryptionService.blindIndex("1234567812345678");
+        String second = encryptionService.blindIndex("1234567812345678");
+        String other = encryptionService.blindIndex("1234567812345679");
+
+        // Assert
+        assertEquals(first, second);
+        assertNotEquals(first, other);
+        assertEquals(64, first.length());
+        assertFalse(first.contains("5678"));
+    }
+
+    @Test
+    void encryptDecrypt_EmptyString_ReturnsEmpty() {
+        // Act: PKCS5 дополняет пустую строку до целого блока
+        String encrypted = encryptionService.encrypt("");
+
+        // Assert
+        assertEquals(24, encrypted.length());
+        assertEquals("", encryptionService.decrypt(encrypted));
+    }
+
+    @Test
+    void constructor_KeyOfInvalidLength_EncryptFails() {
+        // Arrange: 29 байт — не длина ключа AES
+        EncryptionServiceImpl invalid = new EncryptionServiceImpl("32-char-secret-key-1234567890", "blind-index-key", "BC", 4);
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> invalid.encrypt("1234567812345678"));
+    }
+
+    @Test
+    void encryptDecrypt_PoolOfOne_ReusesCipherAcrossCalls() {
+        // Arrange: в пуле один Cipher на направление, каждый вызов после первого берёт уже использованный
+        EncryptionServiceImpl pooled = new EncryptionServiceImpl(SECRET_KEY, "blind-index-key", "BC", 1);
+
+        // Act & Assert: doFinal возвращает Cipher в исходное состояние, результат не зависит от прошлых вызовов
+        String first = pooled.encrypt("1234567812345678");
+        for (int i = 0; i < 100; i++) {
+            String number = String.format("%016d", i);
+            assertEquals(number, pooled.decrypt(pooled.encrypt(number)));
+        }
+        assertEquals(first, pooled.encrypt("1234567812345678"));
+    }
+
+    @Test
+    void decrypt_AfterFailedDecrypt_PoolStillUsable() {
+        // Arrange
+        String encrypted = encryptionService.encrypt("1234567812345678");
+
+        // Act: Cipher с ошибкой не возвращается в пул
+        assertThrows(RuntimeException.class, () -> encryptionService.decrypt(Base64.getEncoder().encodeToString(new byte[15])));
+
+        // Assert
+        assertEquals("1234567812345678", encryptionService.decrypt(encrypted));
+    }
+
+    @Test
+    void encryptDecrypt_ConcurrentCallers_EachGetsOwnResult() throws Exception {
+        // Arrange: потоков больше, чем Cipher в пуле
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        // Act
+        try {
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 500; i++) {
+                        String number = String.format("%08d%08d", thread, i);
+                        if (!number.equals(encryptionService.decrypt(encryptionService.encrypt(number)))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            start.countDown();
+
+            // Assert
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     @Test
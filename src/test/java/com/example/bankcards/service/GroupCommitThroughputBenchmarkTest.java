@@ -0,0 +1,137 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.impl.GroupCommitTransferEngine;
+import com.example.bankcards.service.impl.TransactionServiceImpl;
+import com.example.bankcards.support.PostgresTestSupport;
+import com.example.bankcards.support.TransferServicesConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Пропускная способность: один commit на перевод против группового коммита
+@Slf4j
+@Import(TransferServicesConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class GroupCommitThroughputBenchmarkTest extends PostgresTestSupport {
+
+    private static final int THREADS = 32;
+    private static final int TRANSFERS_PER_THREAD = 200;
+    private static final BigDecimal INITIAL_BALANCE = BigDecimal.valueOf(1_000_000);
+
+    @Autowired
+    private TransactionServiceImpl transactionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BankCardRepository cardRepository;
+
+    @Test
+    void groupCommit_PreservesBalancesAndReportsThroughput() throws Exception {
+        // Arrange
+        List<Long[]> direct = createAccounts();
+        List<Long[]> grouped = createAccounts();
+        GroupCommitTransferEngine engine =
+                new GroupCommitTransferEngine(transactionService, new SimpleMeterRegistry(), 5, 100, 10_000);
+        engine.start();
+
+        // Act
+        double directRate;
+        double groupedRate;
+        try {
+            directRate = run(direct, (userId, cards) ->
+                    transactionService.transferBetweenOwnCards(userId, cards[1], cards[2], BigDecimal.ONE));
+            groupedRate = run(grouped, (userId, cards) ->
+                    engine.transfer(new TransferCommand(userId, cards[1], cards[2], BigDecimal.ONE, null)));
+        } finally {
+            engine.stop();
+        }
+
+        // Assert
+        for (Long[] account : grouped) {
+            BankCard sender = cardRepository.findById(account[1]).orElseThrow();
+            BankCard receiver = cardRepository.findById(account[2]).orElseThrow();
+            assertEquals(0, INITIAL_BALANCE.subtract(BigDecimal.valueOf(TRANSFERS_PER_THREAD))
+                    .compareTo(sender.getBalance()));
+            assertEquals(0, INITIAL_BALANCE.add(BigDecimal.valueOf(TRANSFERS_PER_THREAD))
+                    .compareTo(receiver.getBalance()));
+        }
+        log.info("One commit per transfer: {} transfers/s, group commit: {} transfers/s",
+                String.format("%.0f", directRate), String.format("%.0f", groupedRate));
+    }
+
+    private double run(List<Long[]> accounts, TransferCall call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> workers = new ArrayList<>();
+        for (Long[] account : accounts) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    call.transfer(account[0], account);
+                }
+                return null;
+            }));
+        }
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<Void> worker : workers) {
+            worker.get(5, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - startedAt;
+        executor.shutdown();
+        return THREADS * TRANSFERS_PER_THREAD / (elapsedNanos / 1_000_000_000.0);
+    }
+
+    // У каждого потока свой пользователь и пара карт: замеряется цена commit, а не ожидание блокировок
+    private List<Long[]> createAccounts() {
+        List<Long[]> accounts = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            User user = userRepository.save(User.builder()
+                    .username("group-commit-" + UUID.randomUUID())
+                    .password("password")
+                    .role(Role.USER)
+                    .build());
+            accounts.add(new Long[]{user.getId(), createCard(user, 0), createCard(user, 1)});
+        }
+        return accounts;
+    }
+
+    private Long createCard(User user, int index) {
+        return cardRepository.save(BankCard.builder()
+                .encryptedNumber("encrypted-" + index)
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(BankCard.CardStatus.ACTIVE)
+                .balance(INITIAL_BALANCE)
+                .user(user)
+                .build()).getId();
+    }
+
+    @FunctionalInterface
+    private interface TransferCall {
+        void transfer(Long userId, Long[] cards);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.service.impl.GroupCommitTransferEngine;
+import com.example.bankcards.service.impl.TransactionServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GroupCommitTransferEngineTest {
+
+    @Mock
+    private TransactionServiceImpl delegate;
+
+    private GroupCommitTransferEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new GroupCommitTransferEngine(delegate, new SimpleMeterRegistry(), 5, 100, 1000);
+        engine.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        engine.stop();
+    }
+
+    @Test
+    void transfer_Succeeded_ReturnsTransactionFromGroup() {
+        // Arrange
+        Transaction transaction = new Transaction();
+        when(delegate.transferGroup(anyList()))
+                .thenReturn(List.of(BatchTransferResult.succeeded(0, transaction)));
+
+        // Act
+        Transaction result = engine.transfer(command(1L, 2L));
+
+        // Assert
+        assertSame(transaction, result);
+    }
+
+    @Test
+    void transfer_FailedInGroup_RethrowsOriginalException() {
+        // Arrange
+        when(delegate.transferGroup(anyList()))
+                .thenReturn(List.of(BatchTransferResult.failed(0,
+                        new InsufficientFundsException("Insufficient funds on sender card"))));
+
+        // Act & Assert
+        InsufficientFundsException ex = assertThrows(InsufficientFundsException.class,
+                () -> engine.transfer(command(1L, 2L)));
+        assertEquals("Insufficient funds on sender card", ex.getMessage());
+    }
+
+    @Test
+    void transfer_ConcurrentCallers_ShareOneGroup() throws Exception {
+        // Arrange
+        when(delegate.transferGroup(anyList())).thenAnswer(invocation -> {
+            List<TransferCommand> commands = invocation.getArgument(0);
+            return IntStream.range(0, commands.size())
+                    .mapToObj(i -> BatchTransferResult.succeeded(i, new Transaction()))
+                    .toList();
+        });
+        GroupCommitTransferEngine slowEngine =
+                new GroupCommitTransferEngine(delegate, new SimpleMeterRegistry(), 200, 2, 1000);
+        slowEngine.start();
+
+        // Act
+        try {
+            CompletableFuture<Transaction> first = CompletableFuture.supplyAsync(() -> slowEngine.transfer(command(1L, 2L)));
+            CompletableFuture<Transaction> second = CompletableFuture.supplyAsync(() -> slowEngine.transfer(command(3L, 4L)));
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+        } finally {
+            slowEngine.stop();
+        }
+
+        // Assert
+        verify(delegate, times(1)).transferGroup(argThat(commands -> commands.size() == 2));
+    }
+
+    @Test
+    void transfer_GroupRolledBack_FallsBackToSingleTransfer() {
+        // Arrange
+        Transaction transaction = new Transaction();
+        when(delegate.transferGroup(anyList())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(delegate.transferBetweenOwnCards(10L, 1L, 2L, BigDecimal.TEN, "key-1")).thenReturn(transaction);
+
+        // Act
+        Transaction result = engine.transfer(command(1L, 2L));
+
+        // Assert
+        assertSame(transaction, result);
+    }
+
+    private TransferCommand command(Long senderCardId, Long receiverCardId) {
+        return new TransferCommand(10L, senderCardId, receiverCardId, BigDecimal.TEN, "key-1");
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.exception.IdempotencyKeyConflictException;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.service.impl.IdempotencyServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceImplTest {
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    private IdempotencyServiceImpl idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyServiceImpl(transactionRepository, 100);
+    }
+
+    @Test
+    void execute_Replay_AnsweredFromCacheWithoutDatabase() {
+        // Arrange
+        TransferRequest request = transferRequest();
+        TransactionDTO transaction = transactionDTO();
+        when(transactionRepository.findByIdempotencyKey("key-1")).thenReturn(Optional.empty());
+        AtomicInteger executions = new AtomicInteger();
+
+        // Act
+        TransactionDTO first = idempotencyService.execute(1L, "key-1", request, () -> {
+            executions.incrementAndGet();
+            return transaction;
+        });
+        TransactionDTO replay = idempotencyService.execute(1L, "key-1", request, () -> {
+            executions.incrementAndGet();
+            return transaction;
+        });
+
+        // Assert
+        assertSame(first, replay);
+        assertEquals(1, executions.get());
+        verify(transactionRepository, times(1)).findByIdempotencyKey("key-1");
+    }
+
+    @Test
+    void execute_ConcurrentDuplicate_WaitsForFirstExecution() throws Exception {
+        // Arrange
+        TransferRequest request = transferRequest();
+        TransactionDTO transaction = transactionDTO();
+        when(transactionRepository.findByIdempotencyKey("key-2")).thenReturn(Optional.empty());
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+
+        CompletableFuture<TransactionDTO> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute(1L, "key-2", request, () -> {
+                    executions.incrementAndGet();
+                    firstStarted.countDown();
+                    await(releaseFirst);
+                    return transaction;
+                }));
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+
+        // Act
+        CompletableFuture<TransactionDTO> duplicate = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute(1L, "key-2", request, () -> {
+                    executions.incrementAndGet();
+                    return transaction;
+                }));
+        Thread.sleep(100);
+        assertFalse(duplicate.isDone());
+        releaseFirst.countDown();
+
+        // Assert
+        assertSame(transaction, first.get(5, TimeUnit.SECONDS));
+        assertSame(transaction, duplicate.get(5, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_SameKeyDifferentTransfer_ThrowsConflict() {
+        // Arrange
+        TransferRequest request = transferRequest();
+        when(transactionRepository.findByIdempotencyKey("key-3")).thenReturn(Optional.empty());
+        idempotencyService.execute(1L, "key-3", request, this::transactionDTO);
+
+        TransferRequest other = transferRequest();
+        other.setAmount(BigDecimal.valueOf(500));
+
+        // Act & Assert
+        assertThrows(IdempotencyKeyConflictException.class, () ->
+                idempotencyService.execute(1L, "key-3", other, this::transactionDTO));
+    }
+
+    private TransferRequest transferRequest() {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(1L);
+        request.setToCardId(2L);
+        request.setAmount(BigDecimal.valueOf(100));
+        return request;
+    }
+
+    private TransactionDTO transactionDTO() {
+        return new TransactionDTO(10L, BigDecimal.valueOf(100), LocalDateTime.now(), 1L, 2L);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
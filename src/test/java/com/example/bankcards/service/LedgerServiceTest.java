@@ -0,0 +1,163 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BalanceSnapshot;
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.BalanceSnapshotRepository;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.support.PostgresTestSupport;
+import com.example.bankcards.support.TransferServicesConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Import(TransferServicesConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LedgerServiceTest extends PostgresTestSupport {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BankCardRepository cardRepository;
+
+    @Autowired
+    private LedgerEntryRepository entryRepository;
+
+    @Autowired
+    private BalanceSnapshotRepository snapshotRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void getBalance_SnapshotPlusTail_MatchesCardBalance() throws Exception {
+        // Arrange
+        User user = createUser();
+        BankCard first = createCard(user, 1000);
+        BankCard second = createCard(user, 0);
+        long entriesBefore = entryRepository.count();
+
+        // Act
+        transactionService.transferBetweenOwnCards(user.getId(), first.getId(), second.getId(), BigDecimal.valueOf(300));
+        Thread.sleep(5);
+        LocalDateTime afterFirstTransfer = LocalDateTime.now();
+        Thread.sleep(5);
+        assertTrue(ledgerService.refreshSnapshots() >= 2);
+        transactionService.transferBetweenOwnCards(user.getId(), second.getId(), first.getId(), BigDecimal.valueOf(100));
+
+        // Assert
+        assertEquals(entriesBefore + 4, entryRepository.count());
+        LocalDateTime now = LocalDateTime.now();
+        assertEquals(0, BigDecimal.valueOf(800).compareTo(ledgerService.getBalance(first.getId(), now)));
+        assertEquals(0, BigDecimal.valueOf(200).compareTo(ledgerService.getBalance(second.getId(), now)));
+        assertEquals(0, cardRepository.findById(first.getId()).orElseThrow().getBalance()
+                .compareTo(ledgerService.getBalance(first.getId(), now)));
+
+        // Исторический баланс восстанавливается по снимку и журналу
+        assertEquals(0, BigDecimal.valueOf(700).compareTo(ledgerService.getBalance(first.getId(), afterFirstTransfer)));
+        assertEquals(0, BigDecimal.valueOf(300).compareTo(ledgerService.getBalance(second.getId(), afterFirstTransfer)));
+    }
+
+    @Test
+    void refreshSnapshots_TransferCommittedAfterSnapshot_CountedInNextSnapshot() throws Exception {
+        // Arrange
+        User user = createUser();
+        BankCard first = createCard(user, 1000);
+        BankCard second = createCard(user, 0);
+        BankCard third = createCard(user, 1000);
+        BankCard fourth = createCard(user, 0);
+        transactionService.transferBetweenOwnCards(user.getId(), first.getId(), second.getId(), BigDecimal.valueOf(300));
+
+        // Перевод записывает проводки до снимка, а коммитится после него
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> lateTransfer = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            transactionService.transferBetweenOwnCards(user.getId(), third.getId(), fourth.getId(), BigDecimal.valueOf(100));
+            entryRepository.flush();
+            written.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        // Act
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+        ledgerService.refreshSnapshots();
+        release.countDown();
+        lateTransfer.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        BigDecimal beforeNextSnapshot = ledgerService.getBalance(third.getId(), LocalDateTime.now());
+        ledgerService.refreshSnapshots();
+
+        // Assert: незакоммиченный перевод не вошёл в первый снимок и не потерян вторым
+        LocalDateTime now = LocalDateTime.now();
+        assertEquals(0, BigDecimal.valueOf(700).compareTo(latestSnapshot(first, now).getBalance()));
+        assertEquals(0, BigDecimal.valueOf(900).compareTo(beforeNextSnapshot));
+        assertEquals(0, BigDecimal.valueOf(900).compareTo(latestSnapshot(third, now).getBalance()));
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(latestSnapshot(fourth, now).getBalance()));
+        assertEquals(0, BigDecimal.valueOf(900).compareTo(ledgerService.getBalance(third.getId(), now)));
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(ledgerService.getBalance(fourth.getId(), now)));
+    }
+
+    private BalanceSnapshot latestSnapshot(BankCard card, LocalDateTime at) {
+        return snapshotRepository.findFirstByCardIdAndAsOfLessThanEqualOrderByTxHorizonDesc(card.getId(), at)
+                .orElseThrow();
+    }
+
+    private User createUser() {
+        return userRepository.save(User.builder()
+                .username("ledger-" + UUID.randomUUID())
+                .password("password")
+                .role(Role.USER)
+                .build());
+    }
+
+    // Начальный баланс карты заводится снимком, как это делает миграция для существующих карт
+    private BankCard createCard(User user, long balance) {
+        BankCard card = cardRepository.save(BankCard.builder()
+                .encryptedNumber("encrypted")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(BankCard.CardStatus.ACTIVE)
+                .balance(BigDecimal.valueOf(balance))
+                .user(user)
+                .build());
+        snapshotRepository.save(BalanceSnapshot.builder()
+                .card(card)
+                .balance(BigDecimal.valueOf(balance))
+                .asOf(LocalDateTime.now().minusDays(1))
+                .txHorizon(0L)
+                .build());
+        return card;
+    }
+}
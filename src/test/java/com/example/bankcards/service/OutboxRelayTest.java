@@ -0,0 +1,143 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.OutboxEvent;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.OutboxEventRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.impl.OutboxServiceImpl;
+import com.example.bankcards.support.InMemoryOutboxSink;
+import com.example.bankcards.support.PostgresTestSupport;
+import com.example.bankcards.support.TransferServicesConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Import(TransferServicesConfig.class)
+@TestPropertySource(properties = "outbox.relay.batch-size=50")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxRelayTest extends PostgresTestSupport {
+
+    private static final int TRANSFERS = 400;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private InMemoryOutboxSink sink;
+
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BankCardRepository cardRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void drainOutbox() {
+        while (outboxService.relayBatch() > 0) {
+            // события предыдущих тестов
+        }
+        sink.clear();
+    }
+
+    @Test
+    void relayBatch_ConcurrentRelays_PublishEveryTransferExactlyOnce() throws Exception {
+        // Arrange
+        Long[] cards = createCards();
+        for (int i = 0; i < TRANSFERS; i++) {
+            transactionService.transferBetweenOwnCards(cards[0], cards[1], cards[2], BigDecimal.ONE);
+        }
+        double publishedBefore = meterRegistry.get("outbox.relay.published").counter().count();
+
+        // Act: несколько релеев одновременно, SKIP LOCKED раздаёт им разные пачки
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Void>> relays = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            relays.add(executor.submit(() -> {
+                while (outboxService.relayBatch() > 0) {
+                    // пока есть события
+                }
+                return null;
+            }));
+        }
+        for (Future<Void> relay : relays) {
+            relay.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        // Assert
+        Set<Long> transactionIds = new HashSet<>();
+        for (OutboxEvent event : sink.getPublished()) {
+            transactionIds.add(event.getTransactionId());
+        }
+        assertEquals(TRANSFERS, sink.getPublished().size());
+        assertEquals(TRANSFERS, transactionIds.size());
+        assertEquals(0, outboxRepository.count());
+        assertEquals(TRANSFERS, meterRegistry.get("outbox.relay.published").counter().count() - publishedBefore);
+    }
+
+    @Test
+    void relayBatch_SinkFails_KeepsEventsForRetry() {
+        // Arrange
+        Long[] cards = createCards();
+        transactionService.transferBetweenOwnCards(cards[0], cards[1], cards[2], BigDecimal.ONE);
+        OutboxService failingRelay = new OutboxServiceImpl(
+                outboxRepository, events -> { throw new IllegalStateException("broker is down"); }, meterRegistry, 50);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, failingRelay::relayBatch);
+        assertEquals(1, outboxRepository.count());
+        assertEquals(1, outboxService.relayBatch());
+        assertEquals(1, sink.getPublished().size());
+    }
+
+    private Long[] createCards() {
+        User user = userRepository.save(User.builder()
+                .username("outbox-" + UUID.randomUUID())
+                .password("password")
+                .role(Role.USER)
+                .build());
+        return new Long[]{user.getId(), createCard(user), createCard(user)};
+    }
+
+    private Long createCard(User user) {
+        return cardRepository.save(BankCard.builder()
+                .encryptedNumber("encrypted")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(BankCard.CardStatus.ACTIVE)
+                .balance(BigDecimal.valueOf(1_000_000))
+                .user(user)
+                .build()).getId();
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.ConcurrentTransferException;
+import com.example.bankcards.service.impl.CardLaneExecutor;
+import com.example.bankcards.service.impl.RetryingTransactionService;
+import com.example.bankcards.service.impl.TransactionServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RetryingTransactionServiceTest {
+
+    @Mock
+    private TransactionServiceImpl delegate;
+
+    @Mock
+    private CardOwnerCache ownerCache;
+
+    @Mock
+    private CardLaneExecutor laneExecutor;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RetryingTransactionService transactionService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        transactionService = new RetryingTransactionService(delegate, meterRegistry, Optional.empty(), Optional.empty(),
+                ownerCache);
+        lenient().when(delegate.getMode()).thenReturn(TransferMode.OPTIMISTIC);
+    }
+
+    @Test
+    void transferBetweenOwnCards_ConflictThenSuccess_Retries() {
+        // Arrange
+        Transaction transaction = new Transaction();
+        when(delegate.transferBetweenOwnCards(1L, 2L, BigDecimal.TEN))
+                .thenThrow(new ObjectOptimisticLockingFailureException("BankCard", 1L))
+                .thenReturn(transaction);
+
+        // Act
+        Transaction result = transactionService.transferBetweenOwnCards(1L, 2L, BigDecimal.TEN);
+
+        // Assert
+        assertSame(transaction, result);
+        verify(delegate, times(2)).transferBetweenOwnCards(1L, 2L, BigDecimal.TEN);
+        assertEquals(1.0, meterRegistry.get("transfers.optimistic.conflicts").counter().count());
+        assertEquals(1.0, meterRegistry.get("transfers.retries").counter().count());
+        assertEquals(1, meterRegistry.get("transfers.latency").tag("mode", "optimistic").timer().count());
+    }
+
+    @Test
+    void transferBetweenOwnCards_PersistentConflict_ThrowsAfterMaxAttempts() {
+        // Arrange
+        when(delegate.transferBetweenOwnCards(1L, 2L, BigDecimal.TEN))
+                .thenThrow(new ObjectOptimisticLockingFailureException("BankCard", 1L));
+
+        // Act & Assert
+        assertThrows(ConcurrentTransferException.class, () ->
+                transactionService.transferBetweenOwnCards(1L, 2L, BigDecimal.TEN));
+        verify(delegate, times(3)).transferBetweenOwnCards(1L, 2L, BigDecimal.TEN);
+        assertEquals(1.0, meterRegistry.get("transfers.retries.exhausted").counter().count());
+    }
+
+    @Test
+    void transferBetweenOwnCards_WithoutUserId_LaneChosenByCardOwner() {
+        // Arrange
+        useLanes();
+        Transaction transaction = new Transaction();
+        when(ownerCache.findOwnerId(1L)).thenReturn(Optional.of(7L));
+        when(delegate.transferBetweenOwnCards(1L, 2L, BigDecimal.TEN)).thenReturn(transaction);
+
+        // Act
+        Transaction result = transactionService.transferBetweenOwnCards(1L, 2L, BigDecimal.TEN);
+
+        // Assert: та же полоса, что и у перевода с userId = 7
+        assertSame(transaction, result);
+        verify(laneExecutor).execute(eq(7L), any());
+    }
+
+    @Test
+    void transferBatch_WithLanes_RunsInOwnerLane() {
+        // Arrange
+        useLanes();
+        List<TransferRequest> transfers = List.of(new TransferRequest());
+        List<BatchTransferResult> results = List.of();
+        when(delegate.transferBatch(7L, transfers, BatchTransferMode.ALL_OR_NOTHING)).thenReturn(results);
+
+        // Act
+        List<BatchTransferResult> result = transactionService.transferBatch(7L, transfers, BatchTransferMode.ALL_OR_NOTHING);
+
+        // Assert
+        assertSame(results, result);
+        verify(laneExecutor).execute(eq(7L), any());
+        verifyNoInteractions(ownerCache);
+    }
+
+    // Полоса исполняет работу в вызывающем потоке
+    private void useLanes() {
+        transactionService = new RetryingTransactionService(delegate, meterRegistry, Optional.empty(),
+                Optional.of(laneExecutor), ownerCache);
+        when(laneExecutor.execute(anyLong(), any())).thenAnswer(invocation -> {
+            Supplier<?> work = invocation.getArgument(1);
+            return work.get();
+        });
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.CardMonthlyRollup;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.impl.StatementRollupRebuildJob;
+import com.example.bankcards.support.PostgresTestSupport;
+import com.example.bankcards.support.TransferServicesConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Import({TransferServicesConfig.class, StatementRollupRebuildJob.class})
+@TestPropertySource(properties = {"statements.rebuild.chunk-size=2", "statements.rebuild.parallelism=3"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StatementRollupTest extends PostgresTestSupport {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private StatementService statementService;
+
+    @Autowired
+    private StatementRollupRebuildJob rebuildJob;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BankCardRepository cardRepository;
+
+    @Test
+    void transfers_UpdateCurrentMonthRollupInSameTransaction() {
+        // Arrange
+        User user = createUser();
+        Long first = createCard(user, 1_000);
+        Long second = createCard(user, 500);
+
+        // Act
+        transactionService.transferBetweenOwnCards(user.getId(), first, second, BigDecimal.valueOf(300));
+        transactionService.transferBetweenOwnCards(user.getId(), second, first, BigDecimal.valueOf(50));
+
+        // Assert: открывающий баланс — баланс до первого перевода месяца, закрывающий — текущий
+        CardMonthlyRollup rollup = statementService.getStatements(first).get(0);
+        assertEquals(LocalDate.now().withDayOfMonth(1), rollup.getMonth());
+        assertEquals(0, BigDecimal.valueOf(50).compareTo(rollup.getTotalIn()));
+        assertEquals(0, BigDecimal.valueOf(300).compareTo(rollup.getTotalOut()));
+        assertEquals(2, rollup.getTxCount());
+        assertEquals(0, BigDecimal.valueOf(1_000).compareTo(rollup.getOpeningBalance()));
+        assertEquals(0, BigDecimal.valueOf(750).compareTo(rollup.getClosingBalance()));
+    }
+
+    @Test
+    void rebuildAll_HistoryFromPreviousMonths_ChainsBalancesBackFromCurrent() {
+        // Arrange: переводы прошлых месяцев записаны мимо сервиса, как до появления итогов
+        User user = createUser();
+        Long first = createCard(user, 1_000);
+        Long second = createCard(user, 500);
+        LocalDate thisMonth = LocalDate.now().withDayOfMonth(1);
+        insertHistoricalTransfer(first, second, 100, thisMonth.minusMonths(2).plusDays(3));
+        insertHistoricalTransfer(second, first, 40, thisMonth.minusMonths(1).plusDays(5));
+        transactionService.transferBetweenOwnCards(user.getId(), first, second, BigDecimal.valueOf(10));
+
+        // Act
+        rebuildJob.rebuildAll();
+
+        // Assert: закрывающий баланс последнего месяца равен текущему, месяцы сцеплены по балансам
+        List<CardMonthlyRollup> statements = statementService.getStatements(first);
+        assertEquals(3, statements.size());
+        assertEquals(thisMonth, statements.get(0).getMonth());
+        assertEquals(0, BigDecimal.valueOf(930).compareTo(statements.get(0).getClosingBalance()));
+        assertEquals(0, BigDecimal.valueOf(940).compareTo(statements.get(0).getOpeningBalance()));
+        assertEquals(0, BigDecimal.valueOf(940).compareTo(statements.get(1).getClosingBalance()));
+        assertEquals(0, BigDecimal.valueOf(900).compareTo(statements.get(1).getOpeningBalance()));
+        assertEquals(0, BigDecimal.valueOf(900).compareTo(statements.get(2).getClosingBalance()));
+        assertEquals(0, BigDecimal.valueOf(1_000).compareTo(statements.get(2).getOpeningBalance()));
+    }
+
+    private void insertHistoricalTransfer(Long sender, Long receiver, long amount, LocalDate day) {
+        // Баланс карт двигаем так же, как двинул бы его перевод
+        jdbcTemplate.update("INSERT INTO transactions (id, amount, timestamp, sender_card_id, receiver_card_id) " +
+                "VALUES (nextval('transactions_seq'), ?, ?, ?, ?)", amount, day.atTime(12, 0), sender, receiver);
+        jdbcTemplate.update("UPDATE bank_cards SET balance = balance - ? WHERE id = ?", amount, sender);
+        jdbcTemplate.update("UPDATE bank_cards SET balance = balance + ? WHERE id = ?", amount, receiver);
+    }
+
+    private User createUser() {
+        return userRepository.save(User.builder()
+                .username("statements-" + UUID.randomUUID())
+                .password("password")
+                .role(Role.USER)
+                .build());
+    }
+
+    private Long createCard(User user, long balance) {
+        return cardRepository.save(BankCard.builder()
+                .encryptedNumber("encrypted")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(BankCard.CardStatus.ACTIVE)
+                .balance(BigDecimal.valueOf(balance))
+                .user(user)
+                .build()).getId();
+    }
+}
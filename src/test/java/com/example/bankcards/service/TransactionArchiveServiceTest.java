@@ -0,0 +1,178 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.repository.TransactionPartitionRepository;
+import com.example.bankcards.repository.TransactionSegmentRepository;
+import com.example.bankcards.repository.TransactionSegmentRepository.SegmentRow;
+import com.example.bankcards.service.impl.TransactionArchiveServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionArchiveServiceTest {
+
+    private static final YearMonth JANUARY = YearMonth.of(2023, 1);
+    private static final YearMonth FEBRUARY = YearMonth.of(2023, 2);
+
+    @Mock
+    private TransactionPartitionRepository partitionRepository;
+
+    @TempDir
+    private Path directory;
+
+    private TransactionSegmentRepository segmentRepository;
+    private TransactionArchiveServiceImpl archiveService;
+
+    @BeforeEach
+    void setUp() {
+        segmentRepository = new TransactionSegmentRepository(directory.toString());
+        archiveService = new TransactionArchiveServiceImpl(partitionRepository, segmentRepository);
+    }
+
+    @Test
+    void archiveMonth_ThenFindPage_RestoresTransfersNewestFirst() {
+        // Arrange: карты 1 и 2 принадлежат клиенту, карта 3 — чужая
+        archive(JANUARY, List.of(
+                transfer(10, LocalDateTime.of(2023, 1, 5, 10, 0), 1, 2, "100.00"),
+                transfer(11, LocalDateTime.of(2023, 1, 20, 8, 30, 15, 123_456_000), 2, 3, "0.01"),
+                transfer(12, LocalDateTime.of(2023, 1, 31, 23, 59), 3, 4, "7.50")));
+        archive(FEBRUARY, List.of(
+                transfer(20, LocalDateTime.of(2023, 2, 1, 0, 0), 3, 1, "42.00")));
+
+        // Act
+        List<TransactionDTO> page = archiveService.findPage(List.of(1L, 2L), null,
+                LocalDateTime.of(2024, 1, 1, 0, 0), Long.MIN_VALUE, 10);
+
+        // Assert: перевод 1 → 2 один раз, чужой перевод 3 → 4 не попал
+        assertEquals(List.of(20L, 11L, 10L), page.stream().map(TransactionDTO::getId).toList());
+        TransactionDTO incoming = page.get(0);
+        assertEquals(3L, incoming.getSenderCardId());
+        assertEquals(1L, incoming.getReceiverCardId());
+        assertEquals(new BigDecimal("42.00"), incoming.getAmount());
+        TransactionDTO outgoing = page.get(1);
+        assertEquals(2L, outgoing.getSenderCardId());
+        assertEquals(3L, outgoing.getReceiverCardId());
+        assertEquals(new BigDecimal("0.01"), outgoing.getAmount());
+        assertEquals(LocalDateTime.of(2023, 1, 20, 8, 30, 15, 123_456_000), outgoing.getTimestamp());
+    }
+
+    @Test
+    void findPage_CursorInsideArchive_ContinuesAfterCursor() {
+        // Arrange
+        List<Transfer> transfers = new ArrayList<>();
+        for (int i = 1; i <= 25; i++) {
+            transfers.add(transfer(i, LocalDateTime.of(2023, 1, 1, 0, 0).plusHours(i), 1, 2, "1.00"));
+        }
+        archive(JANUARY, transfers);
+
+        // Act: вторая страница по 10 после перевода 16
+        List<TransactionDTO> page = archiveService.findPage(List.of(1L), LocalDateTime.of(2023, 1, 1, 4, 0),
+                LocalDateTime.of(2023, 1, 1, 0, 0).plusHours(16), 16, 10);
+
+        // Assert: нижняя граница from отсекает переводы 1–3
+        assertEquals(List.of(15L, 14L, 13L, 12L, 11L, 10L, 9L, 8L, 7L, 6L),
+                page.stream().map(TransactionDTO::getId).toList());
+        assertEquals(5, archiveService.findPage(List.of(1L), LocalDateTime.of(2023, 1, 1, 4, 0),
+                LocalDateTime.of(2023, 1, 1, 0, 0).plusHours(9), 9, 10).size());
+    }
+
+    @Test
+    void streamAll_SeveralMonths_ReturnsEveryTransferOnceNewestFirst() {
+        // Arrange
+        archive(JANUARY, List.of(
+                transfer(10, LocalDateTime.of(2023, 1, 5, 10, 0), 1, 2, "100.00"),
+                transfer(12, LocalDateTime.of(2023, 1, 31, 23, 59), 3, 4, "7.50")));
+        archive(FEBRUARY, List.of(
+                transfer(20, LocalDateTime.of(2023, 2, 1, 0, 0), 3, 1, "42.00")));
+
+        // Act
+        List<TransactionDTO> all;
+        try (Stream<TransactionDTO> archived = archiveService.streamAll(List.of(1L, 2L))) {
+            all = archived.toList();
+        }
+
+        // Assert
+        assertEquals(List.of(20L, 10L), all.stream().map(TransactionDTO::getId).toList());
+    }
+
+    @Test
+    void archivedBefore_FollowsNewestWrittenSegment() {
+        // Arrange
+        LocalDateTime empty = archiveService.archivedBefore();
+        archive(JANUARY, List.of(transfer(10, LocalDateTime.of(2023, 1, 5, 10, 0), 1, 2, "1.00")));
+
+        // Act
+        LocalDateTime afterJanuary = archiveService.archivedBefore();
+
+        // Assert: пока сегментов нет, таблица читается целиком
+        assertTrue(empty.isBefore(JANUARY.atDay(1).atStartOfDay()));
+        assertEquals(FEBRUARY.atDay(1).atStartOfDay(), afterJanuary);
+    }
+
+    @Test
+    void archiveMonth_RowCountMismatch_LeavesNoSegment() {
+        // Arrange: в секции 2 перевода, а выгрузка отдала одну сторону одного
+        when(partitionRepository.countRows(JANUARY)).thenReturn(2L);
+        doAnswer(invocation -> {
+            Consumer<SegmentRow> consumer = invocation.getArgument(1);
+            consumer.accept(new SegmentRow(1, LocalDateTime.of(2023, 1, 2, 0, 0), 1, -100, 2));
+            return null;
+        }).when(partitionRepository).forEachSegmentRow(eq(JANUARY), any());
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> archiveService.archiveMonth(JANUARY));
+        assertFalse(segmentRepository.exists(JANUARY));
+        assertTrue(segmentRepository.findMonths().isEmpty());
+    }
+
+    // Подменяет выгрузку секции: обе стороны переводов в порядке (card_id, timestamp, id), как в SQL
+    private void archive(YearMonth month, List<Transfer> transfers) {
+        List<SegmentRow> rows = new ArrayList<>();
+        for (Transfer transfer : transfers) {
+            long cents = transfer.amount().movePointRight(2).longValueExact();
+            rows.add(new SegmentRow(transfer.sender(), transfer.timestamp(), transfer.id(), -cents, transfer.receiver()));
+            rows.add(new SegmentRow(transfer.receiver(), transfer.timestamp(), transfer.id(), cents, transfer.sender()));
+        }
+        rows.sort(Comparator.comparingLong(SegmentRow::cardId)
+                .thenComparing(SegmentRow::timestamp)
+                .thenComparingLong(SegmentRow::id));
+        when(partitionRepository.countRows(month)).thenReturn((long) transfers.size());
+        doAnswer(invocation -> {
+            Consumer<SegmentRow> consumer = invocation.getArgument(1);
+            rows.forEach(consumer);
+            return null;
+        }).when(partitionRepository).forEachSegmentRow(eq(month), any());
+
+        assertEquals(transfers.size(), archiveService.archiveMonth(month));
+    }
+
+    private static Transfer transfer(long id, LocalDateTime timestamp, long sender, long receiver, String amount) {
+        return new Transfer(id, timestamp, sender, receiver, new BigDecimal(amount));
+    }
+
+    private record Transfer(long id, LocalDateTime timestamp, long sender, long receiver, BigDecimal amount) {
+    }
+}
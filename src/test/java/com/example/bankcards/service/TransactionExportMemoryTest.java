@@ -0,0 +1,119 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.impl.TransactionExportServiceImpl;
+import com.example.bankcards.support.PostgresTestSupport;
+import com.example.bankcards.support.TransferServicesConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@Import({TransferServicesConfig.class, TransactionExportServiceImpl.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransactionExportMemoryTest extends PostgresTestSupport {
+
+    private static final int ROWS = 1_000_000;
+    private static final int PROBE_EVERY_ROWS = 100_000;
+    // Весь результат в памяти драйвера занял бы сотни мегабайт; потоковой выгрузке хватает буферов
+    private static final long MAX_HEAP_GROWTH_BYTES = 64L * 1024 * 1024;
+
+    @Autowired
+    private TransactionExportService exportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BankCardRepository cardRepository;
+
+    @Test
+    void export_MillionRows_HeapStaysFlat() throws IOException {
+        // Arrange: строки генерируются на стороне БД, чтобы не держать их в памяти теста
+        User user = userRepository.save(User.builder()
+                .username("export-" + UUID.randomUUID())
+                .password("password")
+                .role(Role.USER)
+                .build());
+        Long sender = createCard(user);
+        Long receiver = createCard(user);
+        jdbcTemplate.update("INSERT INTO transactions (id, amount, timestamp, sender_card_id, receiver_card_id) " +
+                "SELECT nextval('transactions_seq'), 1.00, CAST(? AS TIMESTAMP) - g * INTERVAL '1 second', ?, ? " +
+                "FROM generate_series(1, ?) g", LocalDateTime.now().minusMinutes(1), sender, receiver, ROWS);
+        long baseline = usedHeapAfterGc();
+        HeapProbe out = new HeapProbe();
+
+        // Act
+        long exported = exportService.export(user.getId(), TransactionExportFormat.CSV, out);
+
+        // Assert: заголовок плюс строка на каждый перевод
+        assertEquals(ROWS, exported);
+        assertEquals(ROWS + 1, out.lines);
+        long growth = out.maxUsedHeap - baseline;
+        assertTrue(growth < MAX_HEAP_GROWTH_BYTES, "heap grew by " + growth + " bytes during export");
+
+        log.info("Export of {} rows: {} bytes, heap growth {} KB", ROWS, out.bytes, growth / 1024);
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private Long createCard(User user) {
+        return cardRepository.save(BankCard.builder()
+                .encryptedNumber("encrypted")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(BankCard.CardStatus.ACTIVE)
+                .balance(BigDecimal.valueOf(1_000))
+                .user(user)
+                .build()).getId();
+    }
+
+    // Отбрасывает выгрузку, считает строки и периодически замеряет занятую кучу после сборки мусора
+    private static class HeapProbe extends OutputStream {
+        private long bytes;
+        private long lines;
+        private long maxUsedHeap;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+            if (b == '\n' && ++lines % PROBE_EVERY_ROWS == 0) {
+                maxUsedHeap = Math.max(maxUsedHeap, usedHeapAfterGc());
+            }
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                write(buffer[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.exception.UnsupportedExportFormatException;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.service.impl.TransactionExportServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionExportServiceTest {
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private TransactionArchiveService archiveService;
+
+    @Mock
+    private BankCardRepository cardRepository;
+
+    private TransactionExportServiceImpl exportService;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        exportService = new TransactionExportServiceImpl(transactionRepository, objectMapper, archiveService, cardRepository);
+    }
+
+    @Test
+    void export_Csv_WritesHeaderAndRows() throws IOException {
+        // Arrange
+        noArchive();
+        when(transactionRepository.streamDtosByUserId(eq(1L), any(), any())).thenReturn(Stream.of(
+                new TransactionDTO(2L, new BigDecimal("15.50"), LocalDateTime.of(2024, 3, 1, 12, 0, 30), 10L, 11L),
+                new TransactionDTO(1L, new BigDecimal("100.00"), LocalDateTime.of(2024, 2, 1, 9, 15, 0), 11L, 10L)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        long exported = exportService.export(1L, TransactionExportFormat.CSV, out);
+
+        // Assert
+        assertEquals(2, exported);
+        assertEquals("id,amount,timestamp,sender_card_id,receiver_card_id\n" +
+                "2,15.50,2024-03-01T12:00:30,10,11\n" +
+                "1,100.00,2024-02-01T09:15,11,10\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void export_Ndjson_WritesOneObjectPerLine() throws IOException {
+        // Arrange
+        noArchive();
+        when(transactionRepository.streamDtosByUserId(eq(1L), any(), any())).thenReturn(Stream.of(
+                new TransactionDTO(2L, new BigDecimal("15.50"), LocalDateTime.of(2024, 3, 1, 12, 0, 30), 10L, 11L)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        exportService.export(1L, TransactionExportFormat.NDJSON, out);
+
+        // Assert
+        assertEquals("{\"id\":2,\"amount\":15.50,\"timestamp\":\"2024-03-01T12:00:30\"," +
+                "\"senderCardId\":10,\"receiverCardId\":11}\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void export_ArchivedMonths_AppendedAfterTableRows() throws IOException {
+        // Arrange: всё до февраля 2024 уже в сегментах
+        LocalDateTime archivedBefore = LocalDateTime.of(2024, 2, 1, 0, 0);
+        when(archiveService.archivedBefore()).thenReturn(archivedBefore);
+        when(archiveService.isEmpty()).thenReturn(false);
+        when(cardRepository.findIdsByUserId(1L)).thenReturn(List.of(10L, 11L));
+        when(transactionRepository.streamDtosByUserId(eq(1L), eq(archivedBefore), any())).thenReturn(Stream.of(
+                new TransactionDTO(2L, new BigDecimal("15.50"), LocalDateTime.of(2024, 3, 1, 12, 0, 30), 10L, 11L)));
+        when(archiveService.streamAll(List.of(10L, 11L))).thenReturn(Stream.of(
+                new TransactionDTO(1L, new BigDecimal("100.00"), LocalDateTime.of(2021, 2, 1, 9, 15, 0), 11L, 10L)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        long exported = exportService.export(1L, TransactionExportFormat.CSV, out);
+
+        // Assert: месяцы старше срока хранения таблицы не теряются
+        assertEquals(2, exported);
+        assertEquals("id,amount,timestamp,sender_card_id,receiver_card_id\n" +
+                "2,15.50,2024-03-01T12:00:30,10,11\n" +
+                "1,100.00,2021-02-01T09:15,11,10\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void fromValue_UnknownFormat_ThrowsException() {
+        // Act & Assert
+        assertThrows(UnsupportedExportFormatException.class,
+                () -> TransactionExportFormat.fromValue("xml"));
+    }
+
+    private void noArchive() {
+        when(archiveService.isEmpty()).thenReturn(true);
+        when(archiveService.streamAll(List.of())).thenReturn(Stream.empty());
+    }
+}
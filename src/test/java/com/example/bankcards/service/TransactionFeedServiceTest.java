@@ -0,0 +1,266 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.service.impl.TransactionFeedServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionFeedServiceTest {
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    private final List<RecordingEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void publishAfterCommit_DeliversOnlyAfterCommit() throws Exception {
+        // Arrange
+        TransactionFeedServiceImpl feedService = feedService(16);
+        feedService.subscribe(1L, null);
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        feedService.publishAfterCommit(1L, List.of(transaction(7L)));
+
+        // Assert: до коммита ничего не отправлено
+        assertTrue(emitters.get(0).ids().isEmpty());
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        emitters.get(0).await(1);
+        assertEquals(List.of(7L), emitters.get(0).ids());
+    }
+
+    @Test
+    void publishAfterCommit_OtherUser_NotDelivered() throws Exception {
+        // Arrange
+        TransactionFeedServiceImpl feedService = feedService(16);
+        feedService.subscribe(1L, null);
+        feedService.subscribe(2L, null);
+
+        // Act
+        feedService.publishAfterCommit(2L, List.of(transaction(8L)));
+
+        // Assert
+        emitters.get(1).await(1);
+        assertEquals(List.of(8L), emitters.get(1).ids());
+        assertTrue(emitters.get(0).ids().isEmpty());
+    }
+
+    @Test
+    void subscribe_WithLastEventId_ReplaysMissedThenLiveWithoutDuplicates() throws Exception {
+        // Arrange
+        LocalDateTime lastSeen = LocalDateTime.now().minusMinutes(5);
+        when(transactionRepository.findDtosByUserIdSince(1L, lastSeen.minusSeconds(60), 501))
+                .thenReturn(List.of(dto(5L), dto(6L)));
+        TransactionFeedServiceImpl feedService = feedService(16);
+
+        // Act: перевод 6 закоммичен во время догрузки и приходит ещё и живым событием
+        feedService.subscribe(1L, new TransactionCursor(lastSeen, 4L).encode());
+        feedService.publishAfterCommit(1L, List.of(transaction(6L), transaction(7L)));
+
+        // Assert
+        emitters.get(0).await(3);
+        assertEquals(List.of(5L, 6L, 7L), emitters.get(0).ids());
+    }
+
+    @Test
+    void subscribe_LowerIdCommittedLater_ReplayedFromOverlap() throws Exception {
+        // Arrange: id 3 выдан раньше id 4 другим узлом, но закоммичен после того, как клиент получил 4
+        LocalDateTime lastSeen = LocalDateTime.now().minusMinutes(5);
+        when(transactionRepository.findDtosByUserIdSince(1L, lastSeen.minusSeconds(60), 501))
+                .thenReturn(List.of(dto(3L), dto(4L)));
+        TransactionFeedServiceImpl feedService = feedService(16);
+
+        // Act
+        feedService.subscribe(1L, new TransactionCursor(lastSeen, 4L).encode());
+
+        // Assert: продолжение не по id, перевод 3 не потерян
+        emitters.get(0).await(2);
+        assertEquals(List.of(3L, 4L), emitters.get(0).ids());
+    }
+
+    @Test
+    void subscribe_MissedMoreThanLimit_SendsResetInsteadOfPartialReplay() {
+        // Arrange
+        LocalDateTime lastSeen = LocalDateTime.now().minusMinutes(5);
+        when(transactionRepository.findDtosByUserIdSince(eq(1L), any(), eq(3)))
+                .thenReturn(List.of(dto(5L), dto(6L), dto(7L)));
+        TransactionFeedServiceImpl feedService = feedService(16, 2);
+
+        // Act
+        feedService.subscribe(1L, new TransactionCursor(lastSeen, 4L).encode());
+
+        // Assert
+        assertTrue(emitters.get(0).ids().isEmpty());
+        assertEquals(List.of("replay-limit-exceeded"), emitters.get(0).resets());
+    }
+
+    @Test
+    void subscribe_LastEventOutsideWindow_SendsResetWithoutQuery() {
+        // Arrange
+        TransactionFeedServiceImpl feedService = feedService(16);
+
+        // Act
+        feedService.subscribe(1L, new TransactionCursor(LocalDateTime.now().minusDays(2), 4L).encode());
+
+        // Assert
+        assertEquals(List.of("replay-window-exceeded"), emitters.get(0).resets());
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    void publishAfterCommit_SlowClientBufferFull_ClosesStream() throws Exception {
+        // Arrange: клиент не читает, первый send висит, очередь на одно событие
+        TransactionFeedServiceImpl feedService = feedService(1);
+        feedService.subscribe(1L, null);
+        RecordingEmitter emitter = emitters.get(0);
+        emitter.block();
+
+        // Act
+        feedService.publishAfterCommit(1L, List.of(transaction(1L)));
+        emitter.awaitBlocked();
+        feedService.publishAfterCommit(1L, List.of(transaction(2L), transaction(3L)));
+
+        // Assert: поток закрыт, клиент переподключится с Last-Event-ID
+        assertTrue(emitter.completed);
+        emitter.release();
+        assertEquals(0, feedService.sendHeartbeats());
+    }
+
+    private TransactionFeedServiceImpl feedService(int bufferSize) {
+        return feedService(bufferSize, 500);
+    }
+
+    private TransactionFeedServiceImpl feedService(int bufferSize, int replayLimit) {
+        return new TransactionFeedServiceImpl(transactionRepository, new SimpleMeterRegistry(),
+                bufferSize, 60_000, replayLimit, 24, 60) {
+            @Override
+            protected SseEmitter createEmitter(long timeoutMs) {
+                RecordingEmitter emitter = new RecordingEmitter();
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+    }
+
+    private static Transaction transaction(Long id) {
+        BankCard sender = new BankCard();
+        sender.setId(1L);
+        BankCard receiver = new BankCard();
+        receiver.setId(2L);
+        return Transaction.builder()
+                .id(id)
+                .amount(BigDecimal.TEN)
+                .timestamp(LocalDateTime.now())
+                .senderCard(sender)
+                .receiverCard(receiver)
+                .build();
+    }
+
+    private static TransactionDTO dto(Long id) {
+        return new TransactionDTO(id, BigDecimal.TEN, LocalDateTime.now(), 1L, 2L);
+    }
+
+    // Запоминает отправленные переводы вместо записи в ответ
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<Long> ids = new CopyOnWriteArrayList<>();
+        private final List<String> resets = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private volatile boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            // Событие reset: за текстом "event:reset\ndata:" идёт строка с причиной
+            List<Object> parts = builder.build().stream().map(DataWithMediaType::getData).toList();
+            for (int i = 1; i < parts.size(); i++) {
+                if (String.valueOf(parts.get(i - 1)).startsWith("event:reset")) {
+                    resets.add((String) parts.get(i));
+                }
+            }
+            builder.build().stream()
+                    .map(DataWithMediaType::getData)
+                    .filter(TransactionDTO.class::isInstance)
+                    .map(data -> ((TransactionDTO) data).getId())
+                    .forEach(id -> {
+                        blocked.countDown();
+                        awaitGate();
+                        ids.add(id);
+                    });
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        private List<Long> ids() {
+            return ids;
+        }
+
+        private List<String> resets() {
+            return resets;
+        }
+
+        private void await(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (ids.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+
+        private void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        private void awaitBlocked() throws InterruptedException {
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        }
+
+        private void release() {
+            gate.countDown();
+        }
+
+        private void awaitGate() {
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.CardAccessDeniedException;
+import com.example.bankcards.exception.InvalidCursorException;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.support.PostgresTestSupport;
+import com.example.bankcards.support.TransferServicesConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Import(TransferServicesConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransactionHistoryPaginationTest extends PostgresTestSupport {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BankCardRepository cardRepository;
+
+    @Test
+    void getUserTransactions_WalkAllPages_ReturnsEveryTransferOnceNewestFirst() {
+        // Arrange: 3 карты, переводы во все стороны
+        User user = createUser();
+        List<Long> cards = List.of(createCard(user), createCard(user), createCard(user));
+        for (int i = 0; i < 95; i++) {
+            transactionService.transferBetweenOwnCards(user.getId(),
+                    cards.get(i % 3), cards.get((i + 1) % 3), BigDecimal.ONE);
+        }
+
+        // Act
+        List<TransactionDTO> all = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            TransactionPage page = transactionService.getUserTransactions(user.getId(), null, null, null, cursor, 10);
+            all.addAll(page.getItems());
+            cursor = page.getNext();
+            pages++;
+        } while (cursor != null);
+
+        // Assert
+        assertEquals(10, pages);
+        assertEquals(95, all.size());
+        assertEquals(95, new HashSet<>(all.stream().map(TransactionDTO::getId).toList()).size());
+        for (int i = 1; i < all.size(); i++) {
+            TransactionDTO newer = all.get(i - 1);
+            TransactionDTO older = all.get(i);
+            int order = newer.getTimestamp().compareTo(older.getTimestamp());
+            assertTrue(order > 0 || (order == 0 && newer.getId() > older.getId()));
+        }
+    }
+
+    @Test
+    void getUserTransactions_CardFilterAndSizeCap_AppliesBoth() {
+        // Arrange
+        User user = createUser();
+        Long first = createCard(user);
+        Long second = createCard(user);
+        Long third = createCard(user);
+        for (int i = 0; i < 150; i++) {
+            transactionService.transferBetweenOwnCards(user.getId(), first, second, BigDecimal.ONE);
+        }
+        transactionService.transferBetweenOwnCards(user.getId(), second, third, BigDecimal.ONE);
+
+        // Act
+        TransactionPage capped = transactionService.getUserTransactions(user.getId(), first, null, null, null, 1000);
+        TransactionPage thirdCard = transactionService.getUserTransactions(user.getId(), third, null, null, null, 10);
+
+        // Assert
+        assertEquals(100, capped.getItems().size());
+        assertNotNull(capped.getNext());
+        assertEquals(1, thirdCard.getItems().size());
+        assertNull(thirdCard.getNext());
+    }
+
+    @Test
+    void getUserTransactions_ForeignCardOrBrokenCursor_Rejected() {
+        // Arrange
+        User owner = createUser();
+        User stranger = createUser();
+        Long card = createCard(owner);
+
+        // Act & Assert
+        assertThrows(CardAccessDeniedException.class, () ->
+                transactionService.getUserTransactions(stranger.getId(), card, null, null, null, 10));
+        assertThrows(InvalidCursorException.class, () ->
+                transactionService.getUserTransactions(owner.getId(), null, null, null, "not-a-cursor", 10));
+    }
+
+    private User createUser() {
+        return userRepository.save(User.builder()
+                .username("history-" + UUID.randomUUID())
+                .password("password")
+                .role(Role.USER)
+                .build());
+    }
+
+    private Long createCard(User user) {
+        return cardRepository.save(BankCard.builder()
+                .encryptedNumber("encrypted")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(BankCard.CardStatus.ACTIVE)
+                .balance(BigDecimal.valueOf(1_000))
+                .user(user)
+                .build()).getId();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.support.PostgresTestSupport;
+import com.example.bankcards.support.TransferServicesConfig;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@Import(TransferServicesConfig.class)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransactionHistoryQueryCountTest extends PostgresTestSupport {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BankCardRepository cardRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void getUserTransactions_ManyCardsAndTransfers_RunsTwoStatementsPerPage() {
+        // Arrange: переводы между своими картами попадают в обе стороны UNION
+        User user = userRepository.save(User.builder()
+                .username("history-count-" + UUID.randomUUID())
+                .password("password")
+                .role(Role.USER)
+                .build());
+        List<Long> cards = List.of(createCard(user), createCard(user), createCard(user), createCard(user));
+        for (int i = 0; i < 40; i++) {
+            transactionService.transferBetweenOwnCards(user.getId(),
+                    cards.get(i % 4), cards.get((i + 1) % 4), BigDecimal.ONE);
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // Act
+        TransactionPage page = transactionService.getUserTransactions(user.getId(), null, null, null, null, 50);
+
+        // Assert: id карт пользователя и сама страница, сущности не создаются
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertNull(page.getNext());
+        assertEquals(40, page.getItems().size());
+        assertEquals(40, page.getItems().stream().map(TransactionDTO::getId).distinct().count());
+    }
+
+    private Long createCard(User user) {
+        return cardRepository.save(BankCard.builder()
+                .encryptedNumber("encrypted")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(BankCard.CardStatus.ACTIVE)
+                .balance(BigDecimal.valueOf(1_000))
+                .user(user)
+                .build()).getId();
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.TransactionPartitionRepository;
+import com.example.bankcards.service.impl.TransactionPartitionServiceImpl;
+import liquibase.Contexts;
+import liquibase.LabelExpression;
+import liquibase.Liquibase;
+import liquibase.changelog.ChangeSet;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
+
+// Миграция 010 на данных, записанных до неё: PostgresTestSupport строит схему через Hibernate и её не выполняет.
+// Каждый тест получает свою базу: changelog применяется до 010, база заполняется, затем применяется остальное
+@ExtendWith(MockitoExtension.class)
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionPartitionMigrationTest {
+
+    private static final String CHANGELOG = "db/migration/changelog-master.yaml";
+    private static final String PARTITIONING_CHANGESET = "010-create-transaction-idempotency-keys";
+    private static final int OLD_MONTHS = 26;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:14");
+
+    @Mock
+    private TransactionArchiveService archiveService;
+
+    private final YearMonth current = YearMonth.now();
+    private final YearMonth oldest = current.minusMonths(OLD_MONTHS);
+
+    private String url;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionPartitionRepository partitionRepository;
+
+    @BeforeEach
+    void migrateSeededDatabase() throws Exception {
+        String database = "migration_" + UUID.randomUUID().toString().replace("-", "");
+        try (Connection connection = DriverManager.getConnection(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())) {
+            connection.createStatement().execute("CREATE DATABASE " + database);
+        }
+        url = "jdbc:postgresql://" + POSTGRES.getHost() + ":" + POSTGRES.getMappedPort(5432) + "/" + database;
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(url, POSTGRES.getUsername(), POSTGRES.getPassword()));
+        partitionRepository = new TransactionPartitionRepository(jdbcTemplate);
+
+        try (Liquibase liquibase = liquibase()) {
+            List<ChangeSet> changeSets = liquibase.getDatabaseChangeLog().getChangeSets();
+            int beforePartitioning = changeSets.stream().map(ChangeSet::getId).toList().indexOf(PARTITIONING_CHANGESET);
+            assertTrue(beforePartitioning > 0);
+            liquibase.update(beforePartitioning, new Contexts(), new LabelExpression());
+        }
+        seed();
+        try (Liquibase liquibase = liquibase()) {
+            liquibase.update(new Contexts(), new LabelExpression());
+        }
+    }
+
+    @Test
+    void migration_SeededTransactions_LandInMonthlyPartitions() {
+        // Assert: секции от месяца самого старого перевода до трёх месяцев вперёд
+        assertTrue(partitionRepository.isPartitioned());
+        assertEquals(Stream.iterate(oldest, month -> month.plusMonths(1)).limit(OLD_MONTHS + 4).toList(),
+                partitionRepository.findPartitionMonths());
+
+        // Строки разложены по месяцам, в секции по умолчанию ничего
+        assertEquals(2, partitionRepository.countRows(oldest));
+        assertEquals(3, partitionRepository.countRows(current.minusMonths(1)));
+        assertEquals(1, partitionRepository.countRows(current));
+        assertEquals(0, partitionRepository.countRows(oldest.plusMonths(1)));
+        assertEquals(6, count("SELECT COUNT(*) FROM transactions"));
+        assertNull(partitionRepository.findOldestDefaultTimestamp());
+
+        // Первичный ключ включает timestamp, внешний ключ проводок снят, проводка сохранилась
+        assertEquals(Set.of("id", "timestamp"), Set.copyOf(jdbcTemplate.queryForList(
+                "SELECT a.attname FROM pg_index i " +
+                        "JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = ANY(i.indkey) " +
+                        "WHERE i.indrelid = 'transactions'::regclass AND i.indisprimary", String.class)));
+        assertEquals(0, count("SELECT COUNT(*) FROM pg_constraint WHERE conname = 'fk_ledger_entries_transaction'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM ledger_entries WHERE transaction_id = 3"));
+
+        // Ключ идемпотентности переехал в отдельную таблицу
+        assertEquals(4L, jdbcTemplate.queryForObject(
+                "SELECT transaction_id FROM transaction_idempotency_keys WHERE idempotency_key = 'seeded-key'",
+                Long.class));
+    }
+
+    @Test
+    void partitionService_MigratedTable_CreatesAndDetachesPartitions() {
+        // Arrange
+        TransactionPartitionServiceImpl partitionService =
+                new TransactionPartitionServiceImpl(partitionRepository, archiveService, 24, 4, false);
+
+        // Act
+        int created = partitionService.createFuturePartitions();
+        insertTransaction(100, current.plusMonths(4), null);
+        int archived = partitionService.archiveExpiredPartitions();
+
+        // Assert: новый месяц получил свою секцию
+        assertEquals(1, created);
+        assertEquals(1, partitionRepository.countRows(current.plusMonths(4)));
+        assertNull(partitionRepository.findOldestDefaultTimestamp());
+
+        // Два месяца старше срока хранения отцеплены и переехали в архивную схему вместе со строками
+        assertEquals(2, archived);
+        verify(archiveService).archiveMonth(oldest);
+        verify(archiveService).archiveMonth(oldest.plusMonths(1));
+        List<YearMonth> months = partitionRepository.findPartitionMonths();
+        assertFalse(months.contains(oldest));
+        assertFalse(months.contains(oldest.plusMonths(1)));
+        assertEquals(current.minusMonths(24), months.get(0));
+        assertEquals(5, count("SELECT COUNT(*) FROM transactions"));
+        assertEquals(2, count("SELECT COUNT(*) FROM transactions_archive.transactions_p"
+                + oldest.format(DateTimeFormatter.ofPattern("yyyyMM"))));
+    }
+
+    private Liquibase liquibase() throws Exception {
+        Connection connection = DriverManager.getConnection(url, POSTGRES.getUsername(), POSTGRES.getPassword());
+        return new Liquibase(CHANGELOG, new ClassLoaderResourceAccessor(), new JdbcConnection(connection));
+    }
+
+    // Данные в схеме, какой она была до секционирования: переводы в трёх месяцах, проводка и ключ идемпотентности
+    private void seed() {
+        jdbcTemplate.update("INSERT INTO users (id, username, password, role) VALUES (1, 'migration', 'password', 'USER')");
+        jdbcTemplate.update("INSERT INTO bank_cards (id, encrypted_number, expiry_date, status, balance, user_id) " +
+                "VALUES (1, 'encrypted', CURRENT_DATE + 365, 'ACTIVE', 1000, 1), " +
+                "(2, 'encrypted', CURRENT_DATE + 365, 'ACTIVE', 0, 1)");
+        insertTransaction(1, oldest, null);
+        insertTransaction(2, oldest, null);
+        insertTransaction(3, current.minusMonths(1), null);
+        insertTransaction(4, current.minusMonths(1), "seeded-key");
+        insertTransaction(5, current.minusMonths(1), null);
+        insertTransaction(6, current, null);
+        jdbcTemplate.update("INSERT INTO ledger_entries (transaction_id, card_id, entry_type, amount, created_at) " +
+                "VALUES (3, 1, 'DEBIT', -1.00, ?)", LocalDateTime.now());
+    }
+
+    private void insertTransaction(long id, YearMonth month, String idempotencyKey) {
+        jdbcTemplate.update("INSERT INTO transactions (id, amount, timestamp, sender_card_id, receiver_card_id, idempotency_key) " +
+                "VALUES (?, 1.00, ?, 1, 2, ?)", id, month.atDay(1).atTime(12, 0), idempotencyKey);
+    }
+
+    private long count(String sql) {
+        Long rows = jdbcTemplate.queryForObject(sql, Long.class);
+        return rows != null ? rows : 0;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.TransactionPartitionRepository;
+import com.example.bankcards.service.impl.TransactionPartitionServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionPartitionServiceTest {
+
+    private static final int RETENTION_MONTHS = 24;
+    private static final int PREMAKE_MONTHS = 3;
+
+    @Mock
+    private TransactionPartitionRepository partitionRepository;
+
+    @Mock
+    private TransactionArchiveService archiveService;
+
+    @Test
+    void createFuturePartitions_MissingMonthsAhead_CreatesOnlyMissing() {
+        // Arrange
+        YearMonth current = YearMonth.now();
+        when(partitionRepository.isPartitioned()).thenReturn(true);
+        when(partitionRepository.findPartitionMonths()).thenReturn(List.of(current, current.plusMonths(1)));
+
+        // Act
+        int created = service().createFuturePartitions();
+
+        // Assert
+        assertEquals(2, created);
+        verify(partitionRepository).createPartition(current.plusMonths(2));
+        verify(partitionRepository).createPartition(current.plusMonths(3));
+        verify(partitionRepository, never()).createPartition(current);
+    }
+
+    @Test
+    void archiveExpiredPartitions_MonthsOlderThanRetention_Archived() {
+        // Arrange: месяц ровно на границе хранения остаётся
+        YearMonth current = YearMonth.now();
+        YearMonth oldestRetained = current.minusMonths(RETENTION_MONTHS);
+        when(partitionRepository.isPartitioned()).thenReturn(true);
+        when(partitionRepository.findPartitionMonths()).thenReturn(List.of(
+                oldestRetained.minusMonths(5), oldestRetained.minusMonths(1), oldestRetained, current));
+
+        // Act
+        int archived = service().archiveExpiredPartitions();
+
+        // Assert: сегмент пишется до того, как секция отцепляется и удаляется
+        assertEquals(2, archived);
+        InOrder order = inOrder(archiveService, partitionRepository);
+        order.verify(archiveService).archiveMonth(oldestRetained.minusMonths(5));
+        order.verify(partitionRepository).archivePartition(oldestRetained.minusMonths(5));
+        order.verify(partitionRepository).dropArchivedPartition(oldestRetained.minusMonths(5));
+        verify(archiveService).archiveMonth(oldestRetained.minusMonths(1));
+        verify(partitionRepository).archivePartition(oldestRetained.minusMonths(1));
+        verify(archiveService, never()).archiveMonth(oldestRetained);
+        verify(partitionRepository, never()).archivePartition(oldestRetained);
+    }
+
+    @Test
+    void archiveExpiredPartitions_DefaultPartitionHoldsOldRows_StopsBeforeThem() {
+        // Arrange: в секции по умолчанию остались переводы месяца, который иначе ушёл бы в архив вторым
+        YearMonth oldestRetained = YearMonth.now().minusMonths(RETENTION_MONTHS);
+        when(partitionRepository.isPartitioned()).thenReturn(true);
+        when(partitionRepository.findOldestDefaultTimestamp())
+                .thenReturn(oldestRetained.minusMonths(2).atDay(10).atStartOfDay());
+        when(partitionRepository.findPartitionMonths()).thenReturn(List.of(
+                oldestRetained.minusMonths(5), oldestRetained.minusMonths(1), oldestRetained));
+
+        // Act
+        int archived = service().archiveExpiredPartitions();
+
+        // Assert: граница архива не проходит мимо строк, которые читаются только из таблицы
+        assertEquals(1, archived);
+        verify(archiveService).archiveMonth(oldestRetained.minusMonths(5));
+        verify(archiveService, never()).archiveMonth(oldestRetained.minusMonths(1));
+    }
+
+    @Test
+    void maintenance_TableNotPartitioned_DoesNothing() {
+        // Arrange
+        when(partitionRepository.isPartitioned()).thenReturn(false);
+
+        // Act
+        int created = service().createFuturePartitions();
+        int archived = service().archiveExpiredPartitions();
+
+        // Assert
+        assertEquals(0, created + archived);
+        verify(partitionRepository, never()).createPartition(any());
+        verify(partitionRepository, never()).archivePartition(any());
+    }
+
+    @Test
+    void retainedFrom_StartsAtFirstDayOfOldestRetainedMonth() {
+        // Act & Assert
+        assertEquals(YearMonth.now().minusMonths(RETENTION_MONTHS).atDay(1).atStartOfDay(), service().retainedFrom());
+    }
+
+    private TransactionPartitionServiceImpl service() {
+        return new TransactionPartitionServiceImpl(partitionRepository, archiveService, RETENTION_MONTHS, PREMAKE_MONTHS, true);
+    }
+}
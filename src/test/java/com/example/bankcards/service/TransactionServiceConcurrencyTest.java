@@ -0,0 +1,154 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.ConcurrentTransferException;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.impl.RetryingTransactionService;
+import com.example.bankcards.service.impl.TransactionServiceImpl;
+import com.example.bankcards.support.PostgresTestSupport;
+import com.example.bankcards.support.TransferServicesConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Slf4j
+@Import({TransferServicesConfig.class, RetryingTransactionService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransactionServiceConcurrencyTest extends PostgresTestSupport {
+
+    private static final int CARDS = 4;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 500;
+    private static final BigDecimal INITIAL_BALANCE = BigDecimal.valueOf(1_000_000);
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionServiceImpl transactionServiceImpl;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BankCardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @ParameterizedTest
+    @EnumSource(TransferMode.class)
+    void concurrentOpposingTransfers_PreserveTotalBalance(TransferMode mode) throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(AopTestUtils.getTargetObject(transactionServiceImpl), "mode", mode);
+        List<Long> cardIds = createCards();
+        long transactionsBefore = transactionRepository.count();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<Future<Void>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    // Случайные пары в обе стороны: без упорядоченных блокировок здесь возникали бы deadlock'и
+                    int from = random.nextInt(CARDS);
+                    int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+                    long callStartedAt = System.nanoTime();
+                    try {
+                        transactionService.transferBetweenOwnCards(
+                                cardIds.get(from), cardIds.get(to), BigDecimal.valueOf(random.nextInt(1, 100)));
+                    } catch (ConcurrentTransferException ex) {
+                        // Допустимо только в режиме OPTIMISTIC, когда исчерпаны повторы
+                        rejected.incrementAndGet();
+                    }
+                    latencies.add(System.nanoTime() - callStartedAt);
+                }
+                return null;
+            }));
+        }
+
+        // Act
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<Void> worker : workers) {
+            worker.get(5, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - startedAt;
+        executor.shutdown();
+
+        // Assert
+        int totalTransfers = THREADS * TRANSFERS_PER_THREAD;
+        int completedTransfers = totalTransfers - rejected.get();
+        BigDecimal totalBalance = cardRepository.findAllById(cardIds).stream()
+                .map(BankCard::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        assertEquals(0, INITIAL_BALANCE.multiply(BigDecimal.valueOf(CARDS)).compareTo(totalBalance));
+        assertEquals(transactionsBefore + completedTransfers, transactionRepository.count());
+        if (mode == TransferMode.PESSIMISTIC) {
+            assertEquals(0, rejected.get());
+        }
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        long p99Micros = TimeUnit.NANOSECONDS.toMicros(sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1));
+        log.info("{} transfers: {} completed, {} rejected in {} ms ({} transfers/s, p99 {} us)",
+                mode,
+                completedTransfers,
+                rejected.get(),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                String.format("%.0f", completedTransfers / (elapsedNanos / 1_000_000_000.0)),
+                p99Micros);
+    }
+
+    private List<Long> createCards() {
+        User user = userRepository.save(User.builder()
+                .username("concurrency-" + UUID.randomUUID())
+                .password("password")
+                .role(Role.USER)
+                .build());
+
+        List<Long> cardIds = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            BankCard card = cardRepository.save(BankCard.builder()
+                    .encryptedNumber("encrypted-" + i)
+                    .expiryDate(LocalDate.now().plusYears(3))
+                    .status(BankCard.CardStatus.ACTIVE)
+                    .balance(INITIAL_BALANCE)
+                    .user(user)
+                    .build());
+            cardIds.add(card.getId());
+        }
+        return cardIds;
+    }
+}
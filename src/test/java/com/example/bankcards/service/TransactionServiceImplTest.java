@@ -1,21 +1,30 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.BankCard;
 import com.example.bankcards.entity.Transaction;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.CardAccessDeniedException;
 import com.example.bankcards.exception.InsufficientFundsException;
 import com.example.bankcards.exception.TransferException;
 import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.TransactionIdempotencyKeyRepository;
 import com.example.bankcards.repository.TransactionRepository;
 import com.example.bankcards.service.impl.TransactionServiceImpl;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -30,6 +39,27 @@ class TransactionServiceImplTest {
     @Mock
     private BankCardRepository cardRepository;
 
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private BalanceShardService balanceShardService;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private StatementService statementService;
+
+    @Mock
+    private TransactionIdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private TransactionArchiveService archiveService;
+
+    @Mock
+    private TransactionFeedService feedService;
+
     @InjectMocks
     private TransactionServiceImpl transactionService;
 
@@ -51,8 +81,8 @@ class TransactionServiceImplTest {
         receiverCard.setStatus(BankCard.CardStatus.ACTIVE);
         receiverCard.setUser(user);
 
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(senderCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(receiverCard));
+        when(cardRepository.findAllForTransferForUpdate(List.of(1L, 2L), List.of(1L)))
+                .thenReturn(List.of(senderCard, receiverCard));
         when(transactionRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
 
         // Act
@@ -70,6 +100,10 @@ class TransactionServiceImplTest {
         verify(cardRepository).save(senderCard);
         verify(cardRepository).save(receiverCard);
         verify(transactionRepository).save(transaction);
+        verify(ledgerService).record(List.of(transaction));
+        verify(statementService).record(List.of(transaction));
+        verify(outboxService).enqueue(List.of(transaction));
+        verify(feedService).publishAfterCommit(1L, List.of(transaction));
     }
 
     @Test
@@ -96,8 +130,8 @@ class TransactionServiceImplTest {
         receiverCard.setId(2L);
         receiverCard.setUser(user2);
 
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(senderCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(receiverCard));
+        when(cardRepository.findAllForTransferForUpdate(List.of(1L, 2L), List.of(1L)))
+                .thenReturn(List.of(senderCard, receiverCard));
 
         // Act & Assert
         assertThrows(TransferException.class, () ->
@@ -120,8 +154,8 @@ class TransactionServiceImplTest {
         receiverCard.setStatus(BankCard.CardStatus.ACTIVE);
         receiverCard.setUser(user);
 
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(senderCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(receiverCard));
+        when(cardRepository.findAllForTransferForUpdate(List.of(1L, 2L), List.of(1L)))
+                .thenReturn(List.of(senderCard, receiverCard));
 
         // Act & Assert
         assertThrows(TransferException.class, () ->
@@ -145,11 +179,318 @@ class TransactionServiceImplTest {
         receiverCard.setStatus(BankCard.CardStatus.ACTIVE);
         receiverCard.setUser(user);
 
+        when(cardRepository.findAllForTransferForUpdate(List.of(1L, 2L), List.of(1L)))
+                .thenReturn(List.of(senderCard, receiverCard));
+
+        // Act & Assert
+        assertThrows(InsufficientFundsException.class, () ->
+                transactionService.transferBetweenOwnCards(1L, 2L, BigDecimal.valueOf(200)));
+    }
+
+    @Test
+    void transferBetweenOwnCards_LocksCardsInAscendingIdOrder() {
+        // Arrange
+        User user = new User();
+        user.setId(1L);
+
+        BankCard senderCard = new BankCard();
+        senderCard.setId(5L);
+        senderCard.setBalance(BigDecimal.valueOf(1000));
+        senderCard.setStatus(BankCard.CardStatus.ACTIVE);
+        senderCard.setUser(user);
+
+        BankCard receiverCard = new BankCard();
+        receiverCard.setId(2L);
+        receiverCard.setBalance(BigDecimal.valueOf(500));
+        receiverCard.setStatus(BankCard.CardStatus.ACTIVE);
+        receiverCard.setUser(user);
+
+        when(cardRepository.findAllForTransferForUpdate(List.of(5L, 2L), List.of(5L)))
+                .thenReturn(List.of(receiverCard, senderCard));
+        when(transactionRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        transactionService.transferBetweenOwnCards(5L, 2L, BigDecimal.valueOf(100));
+
+        // Assert: обе карты блокируются одним запросом, порядок id задаёт ORDER BY в нём
+        verify(cardRepository).findAllForTransferForUpdate(List.of(5L, 2L), List.of(5L));
+        verify(cardRepository, never()).findByIdForUpdate(any());
+        verify(cardRepository, never()).findById(any());
+    }
+
+    @Test
+    void transferBetweenOwnCards_OptimisticMode_ReadsWithoutLocksAndFlushes() {
+        // Arrange
+        ReflectionTestUtils.setField(transactionService, "mode", TransferMode.OPTIMISTIC);
+
+        User user = new User();
+        user.setId(1L);
+
+        BankCard senderCard = new BankCard();
+        senderCard.setId(1L);
+        senderCard.setBalance(BigDecimal.valueOf(1000));
+        senderCard.setStatus(BankCard.CardStatus.ACTIVE);
+        senderCard.setUser(user);
+
+        BankCard receiverCard = new BankCard();
+        receiverCard.setId(2L);
+        receiverCard.setBalance(BigDecimal.valueOf(500));
+        receiverCard.setStatus(BankCard.CardStatus.ACTIVE);
+        receiverCard.setUser(user);
+
         when(cardRepository.findById(1L)).thenReturn(Optional.of(senderCard));
         when(cardRepository.findById(2L)).thenReturn(Optional.of(receiverCard));
+        when(transactionRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        transactionService.transferBetweenOwnCards(1L, 2L, BigDecimal.valueOf(300));
+
+        // Assert
+        assertEquals(BigDecimal.valueOf(700), senderCard.getBalance());
+        assertEquals(BigDecimal.valueOf(800), receiverCard.getBalance());
+        verify(cardRepository, never()).findByIdForUpdate(any());
+        verify(cardRepository).flush();
+    }
+
+    @Test
+    void transferBetweenOwnCards_ForeignCard_ThrowsAccessDenied() {
+        // Arrange
+        User owner = new User();
+        owner.setId(1L);
+
+        BankCard senderCard = new BankCard();
+        senderCard.setId(1L);
+        senderCard.setUser(owner);
+
+        BankCard receiverCard = new BankCard();
+        receiverCard.setId(2L);
+        receiverCard.setUser(owner);
+
+        when(cardRepository.findAllForTransferForUpdate(List.of(1L, 2L), List.of(1L)))
+                .thenReturn(List.of(senderCard, receiverCard));
+
+        // Act & Assert
+        assertThrows(CardAccessDeniedException.class, () ->
+                transactionService.transferBetweenOwnCards(7L, 1L, 2L, BigDecimal.valueOf(100)));
+        verify(cardRepository, never()).save(any());
+    }
+
+    @Test
+    void transferBetweenOwnCards_ConditionalMode_UpdatesWithoutLoadingCards() {
+        // Arrange
+        ReflectionTestUtils.setField(transactionService, "mode", TransferMode.CONDITIONAL);
+
+        BankCard senderReference = new BankCard();
+        senderReference.setId(2L);
+        BankCard receiverReference = new BankCard();
+        receiverReference.setId(1L);
+
+        when(cardRepository.creditIfAllowed(1L, 7L, BigDecimal.TEN)).thenReturn(1);
+        when(cardRepository.debitIfAllowed(2L, 7L, BigDecimal.TEN)).thenReturn(1);
+        when(cardRepository.getReferenceById(2L)).thenReturn(senderReference);
+        when(cardRepository.getReferenceById(1L)).thenReturn(receiverReference);
+        when(transactionRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        Transaction transaction = transactionService.transferBetweenOwnCards(7L, 2L, 1L, BigDecimal.TEN);
+
+        // Assert: строка с меньшим id обновляется первой, сущности карт не загружаются
+        assertEquals(senderReference, transaction.getSenderCard());
+        assertEquals(receiverReference, transaction.getReceiverCard());
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).creditIfAllowed(1L, 7L, BigDecimal.TEN);
+        inOrder.verify(cardRepository).debitIfAllowed(2L, 7L, BigDecimal.TEN);
+        verify(cardRepository, never()).findById(any());
+        verify(cardRepository, never()).findByIdForUpdate(any());
+    }
+
+    @Test
+    void transferBetweenOwnCards_ConditionalModeRejectedDebit_ThrowsInsufficientFunds() {
+        // Arrange
+        ReflectionTestUtils.setField(transactionService, "mode", TransferMode.CONDITIONAL);
+
+        BankCardRepository.TransferState state = mock(BankCardRepository.TransferState.class);
+        when(state.getUserId()).thenReturn(7L);
+        when(state.getStatus()).thenReturn(BankCard.CardStatus.ACTIVE);
+        when(state.getExpiryDate()).thenReturn(LocalDate.now().plusYears(1));
+
+        when(cardRepository.debitIfAllowed(1L, 7L, BigDecimal.TEN)).thenReturn(0);
+        when(cardRepository.findTransferState(1L)).thenReturn(Optional.of(state));
 
         // Act & Assert
         assertThrows(InsufficientFundsException.class, () ->
-                transactionService.transferBetweenOwnCards(1L, 2L, BigDecimal.valueOf(200)));
+                transactionService.transferBetweenOwnCards(7L, 1L, 2L, BigDecimal.TEN));
+        verify(cardRepository, never()).creditIfAllowed(any(), any(), any());
+        verify(transactionRepository, never()).save(any());
+    }
+
+    @Test
+    void transferBetweenOwnCards_ConditionalModeForeignCard_ThrowsAccessDenied() {
+        // Arrange
+        ReflectionTestUtils.setField(transactionService, "mode", TransferMode.CONDITIONAL);
+
+        BankCardRepository.TransferState state = mock(BankCardRepository.TransferState.class);
+        when(state.getUserId()).thenReturn(8L);
+
+        when(cardRepository.debitIfAllowed(1L, 7L, BigDecimal.TEN)).thenReturn(1);
+        when(cardRepository.creditIfAllowed(2L, 7L, BigDecimal.TEN)).thenReturn(0);
+        when(cardRepository.findTransferState(2L)).thenReturn(Optional.of(state));
+
+        // Act & Assert
+        assertThrows(CardAccessDeniedException.class, () ->
+                transactionService.transferBetweenOwnCards(7L, 1L, 2L, BigDecimal.TEN));
+        verify(transactionRepository, never()).save(any());
+    }
+
+    @Test
+    void transferBetweenOwnCards_ShardedReceiver_CreditsShardWithoutLocking() {
+        // Arrange: режим PESSIMISTIC, но карта получателя шардирована
+        BankCardRepository.TransferState state = activeState(7L, 8);
+        User user = new User();
+        user.setId(7L);
+        BankCard senderCard = activeCard(1L, user, 100);
+        // Шардированный получатель не попадает в выборку под блокировкой
+        when(cardRepository.findAllForTransferForUpdate(List.of(1L, 2L), List.of(1L))).thenReturn(List.of(senderCard));
+        when(cardRepository.debitIfAllowed(1L, 7L, BigDecimal.TEN)).thenReturn(1);
+        when(cardRepository.creditIfAllowed(2L, 7L, BigDecimal.TEN)).thenReturn(0);
+        when(cardRepository.findTransferState(2L)).thenReturn(Optional.of(state));
+        when(balanceShardService.credit(2L, 8, BigDecimal.TEN)).thenReturn(true);
+        when(transactionRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        transactionService.transferBetweenOwnCards(7L, 1L, 2L, BigDecimal.TEN);
+
+        // Assert
+        verify(balanceShardService).credit(2L, 8, BigDecimal.TEN);
+        verify(cardRepository, never()).findByIdForUpdate(any());
+        verify(cardRepository, never()).findById(any());
+    }
+
+    @Test
+    void transferBetweenOwnCards_ShardedSenderLowColumnBalance_SweepsShards() {
+        // Arrange
+        ReflectionTestUtils.setField(transactionService, "mode", TransferMode.CONDITIONAL);
+        BankCardRepository.TransferState state = activeState(7L, 4);
+        when(cardRepository.debitIfAllowed(1L, 7L, BigDecimal.TEN)).thenReturn(0);
+        when(cardRepository.findTransferState(1L)).thenReturn(Optional.of(state));
+        when(balanceShardService.debit(1L, BigDecimal.TEN)).thenReturn(true);
+        when(cardRepository.creditIfAllowed(2L, 7L, BigDecimal.TEN)).thenReturn(1);
+        when(transactionRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        transactionService.transferBetweenOwnCards(7L, 1L, 2L, BigDecimal.TEN);
+
+        // Assert
+        verify(balanceShardService).debit(1L, BigDecimal.TEN);
+        verify(transactionRepository).save(any());
+    }
+
+    @Test
+    void transferBatch_BestEffort_SkipsFailedItems() {
+        // Arrange
+        User user = new User();
+        user.setId(1L);
+        BankCard first = activeCard(1L, user, 100);
+        BankCard second = activeCard(2L, user, 0);
+        when(cardRepository.findAllForTransferForUpdate(any(), any())).thenReturn(List.of(first, second));
+
+        List<TransferRequest> transfers = List.of(
+                transferRequest(1L, 2L, 60),
+                transferRequest(1L, 2L, 60), // на карте осталось 40
+                transferRequest(2L, 1L, 10));
+
+        // Act
+        List<BatchTransferResult> results = transactionService.transferBatch(1L, transfers, BatchTransferMode.BEST_EFFORT);
+
+        // Assert
+        assertEquals(BatchTransferResult.Status.SUCCEEDED, results.get(0).getStatus());
+        assertEquals(BatchTransferResult.Status.FAILED, results.get(1).getStatus());
+        assertEquals("Insufficient funds on sender card", results.get(1).getError());
+        assertEquals(BatchTransferResult.Status.SUCCEEDED, results.get(2).getStatus());
+        assertEquals(0, BigDecimal.valueOf(50).compareTo(first.getBalance()));
+        assertEquals(0, BigDecimal.valueOf(50).compareTo(second.getBalance()));
+        verify(transactionRepository).saveAll(argThat(saved -> ((List<?>) saved).size() == 2));
+    }
+
+    @Test
+    void transferBatch_AllOrNothing_WritesNothingOnFailure() {
+        // Arrange
+        User user = new User();
+        user.setId(1L);
+        BankCard first = activeCard(1L, user, 100);
+        BankCard second = activeCard(2L, user, 0);
+        when(cardRepository.findAllForTransferForUpdate(any(), any())).thenReturn(List.of(first, second));
+
+        List<TransferRequest> transfers = List.of(
+                transferRequest(1L, 2L, 60),
+                transferRequest(1L, 3L, 10)); // карты 3 нет
+
+        // Act
+        List<BatchTransferResult> results = transactionService.transferBatch(1L, transfers, BatchTransferMode.ALL_OR_NOTHING);
+
+        // Assert
+        assertEquals(BatchTransferResult.Status.ROLLED_BACK, results.get(0).getStatus());
+        assertEquals(BatchTransferResult.Status.FAILED, results.get(1).getStatus());
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(first.getBalance()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(second.getBalance()));
+        verify(transactionRepository, never()).saveAll(any());
+        verify(ledgerService, never()).record(any());
+    }
+
+    @Test
+    void transferBatch_ShardedCards_MovesMoneyThroughShards() {
+        // Arrange: у отправителя деньги в слотах, получатель тоже шардирован и не блокируется
+        User user = new User();
+        user.setId(1L);
+        BankCard sender = activeCard(1L, user, 0);
+        sender.setShardCount(4);
+        BankCard receiver = activeCard(2L, user, 0);
+        receiver.setShardCount(8);
+        when(cardRepository.findAllForTransferForUpdate(any(), any())).thenReturn(List.of(sender));
+        when(cardRepository.findAllById(Set.of(2L))).thenReturn(List.of(receiver));
+        when(balanceShardService.getShardedBalances(List.of(1L))).thenReturn(Map.of(1L, BigDecimal.valueOf(100)));
+        when(balanceShardService.credit(2L, 8, BigDecimal.valueOf(70))).thenReturn(true);
+        when(balanceShardService.debit(1L, BigDecimal.valueOf(70))).thenReturn(true);
+
+        List<TransferRequest> transfers = List.of(
+                transferRequest(1L, 2L, 30),
+                transferRequest(1L, 2L, 40));
+
+        // Act
+        List<BatchTransferResult> results = transactionService.transferBatch(1L, transfers, BatchTransferMode.BEST_EFFORT);
+
+        // Assert: движения по карте суммируются, колонка баланса не меняется
+        assertTrue(results.stream().allMatch(result -> result.getStatus() == BatchTransferResult.Status.SUCCEEDED));
+        InOrder inOrder = inOrder(balanceShardService);
+        inOrder.verify(balanceShardService).credit(2L, 8, BigDecimal.valueOf(70));
+        inOrder.verify(balanceShardService).debit(1L, BigDecimal.valueOf(70));
+        assertEquals(0, BigDecimal.ZERO.compareTo(sender.getBalance()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(receiver.getBalance()));
+    }
+
+    private BankCardRepository.TransferState activeState(Long userId, int shardCount) {
+        BankCardRepository.TransferState state = mock(BankCardRepository.TransferState.class);
+        when(state.getUserId()).thenReturn(userId);
+        when(state.getStatus()).thenReturn(BankCard.CardStatus.ACTIVE);
+        when(state.getExpiryDate()).thenReturn(LocalDate.now().plusYears(1));
+        when(state.getShardCount()).thenReturn(shardCount);
+        return state;
+    }
+
+    private BankCard activeCard(Long id, User user, long balance) {
+        BankCard card = new BankCard();
+        card.setId(id);
+        card.setBalance(BigDecimal.valueOf(balance));
+        card.setStatus(BankCard.CardStatus.ACTIVE);
+        card.setUser(user);
+        return card;
+    }
+
+    private TransferRequest transferRequest(Long from, Long to, long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(from);
+        request.setToCardId(to);
+        request.setAmount(BigDecimal.valueOf(amount));
+        return request;
     }
 }
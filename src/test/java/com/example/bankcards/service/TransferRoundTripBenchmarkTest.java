@@ -0,0 +1,128 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.impl.RetryingTransactionService;
+import com.example.bankcards.service.impl.TransactionServiceImpl;
+import com.example.bankcards.support.PostgresTestSupport;
+import com.example.bankcards.support.TransferServicesConfig;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Сравнение числа SQL-запросов и задержки перевода в режимах PESSIMISTIC и CONDITIONAL
+@Slf4j
+@Import({TransferServicesConfig.class, RetryingTransactionService.class})
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransferRoundTripBenchmarkTest extends PostgresTestSupport {
+
+    private static final int WARMUP_TRANSFERS = 200;
+    private static final int MEASURED_TRANSFERS = 1_000;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionServiceImpl transactionServiceImpl;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BankCardRepository cardRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void conditionalTransfer_UsesFewerStatementsThanLockedTransfer() {
+        // Act
+        Result locked = measure(TransferMode.PESSIMISTIC);
+        Result conditional = measure(TransferMode.CONDITIONAL);
+
+        // Assert
+        assertTrue(conditional.statementsPerTransfer() < locked.statementsPerTransfer());
+
+        log.info("{}", locked);
+        log.info("{}", conditional);
+    }
+
+    private Result measure(TransferMode mode) {
+        ReflectionTestUtils.setField(AopTestUtils.getTargetObject(transactionServiceImpl), "mode", mode);
+
+        User user = userRepository.save(User.builder()
+                .username("benchmark-" + UUID.randomUUID())
+                .password("password")
+                .role(Role.USER)
+                .build());
+        Long first = createCard(user);
+        Long second = createCard(user);
+
+        for (int i = 0; i < WARMUP_TRANSFERS; i++) {
+            transfer(user.getId(), i, first, second);
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        long[] latencies = new long[MEASURED_TRANSFERS];
+        for (int i = 0; i < MEASURED_TRANSFERS; i++) {
+            long startedAt = System.nanoTime();
+            transfer(user.getId(), i, first, second);
+            latencies[i] = System.nanoTime() - startedAt;
+        }
+        long statements = statistics.getPrepareStatementCount();
+
+        Arrays.sort(latencies);
+        double averageMicros = Arrays.stream(latencies).average().orElse(0) / 1_000;
+        long p99Micros = TimeUnit.NANOSECONDS.toMicros(latencies[(int) Math.ceil(MEASURED_TRANSFERS * 0.99) - 1]);
+        return new Result(mode, (double) statements / MEASURED_TRANSFERS, averageMicros, p99Micros);
+    }
+
+    private void transfer(Long userId, int iteration, Long first, Long second) {
+        // Чередуем направление, чтобы баланс не заканчивался
+        if (iteration % 2 == 0) {
+            transactionService.transferBetweenOwnCards(userId, first, second, BigDecimal.ONE);
+        } else {
+            transactionService.transferBetweenOwnCards(userId, second, first, BigDecimal.ONE);
+        }
+    }
+
+    private Long createCard(User user) {
+        return cardRepository.save(BankCard.builder()
+                .encryptedNumber("encrypted")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(BankCard.CardStatus.ACTIVE)
+                .balance(BigDecimal.valueOf(1_000))
+                .user(user)
+                .build()).getId();
+    }
+
+    private record Result(TransferMode mode, double statementsPerTransfer, double averageMicros, long p99Micros) {
+        @Override
+        public String toString() {
+            return String.format("%s: %.1f statements/transfer, avg %.0f us, p99 %d us",
+                    mode, statementsPerTransfer, averageMicros, p99Micros);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.bankcards.support;
+
+import com.example.bankcards.entity.OutboxEvent;
+import com.example.bankcards.service.OutboxSink;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Приёмник outbox для тестов: просто накапливает отправленные события
+public class InMemoryOutboxSink implements OutboxSink {
+
+    private final List<OutboxEvent> published = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        published.addAll(events);
+    }
+
+    public List<OutboxEvent> getPublished() {
+        return published;
+    }
+
+    public void clear() {
+        published.clear();
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.bankcards.support;
+
+import com.example.bankcards.repository.TransactionPartitionRepository;
+import com.example.bankcards.repository.TransactionSegmentRepository;
+import com.example.bankcards.service.impl.BalanceShardServiceImpl;
+import com.example.bankcards.service.impl.CardOwnerCacheImpl;
+import com.example.bankcards.service.impl.LedgerServiceImpl;
+import com.example.bankcards.service.impl.OutboxServiceImpl;
+import com.example.bankcards.service.impl.StatementServiceImpl;
+import com.example.bankcards.service.impl.TransactionArchiveServiceImpl;
+import com.example.bankcards.service.impl.TransactionFeedServiceImpl;
+import com.example.bankcards.service.impl.TransactionPartitionServiceImpl;
+import com.example.bankcards.service.impl.TransactionServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+
+// Сервис переводов со всеми зависимостями для тестов на PostgresTestSupport
+@TestConfiguration
+@Import({TransactionServiceImpl.class, LedgerServiceImpl.class, BalanceShardServiceImpl.class, OutboxServiceImpl.class,
+        StatementServiceImpl.class, TransactionPartitionServiceImpl.class, TransactionPartitionRepository.class,
+        TransactionArchiveServiceImpl.class, TransactionSegmentRepository.class, TransactionFeedServiceImpl.class,
+        CardOwnerCacheImpl.class, InMemoryOutboxSink.class, SimpleMeterRegistry.class})
+public class TransferServicesConfig {
+}